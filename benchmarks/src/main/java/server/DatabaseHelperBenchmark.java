@@ -0,0 +1,337 @@
+package server;
+
+import model.Event;
+import model.Move;
+import model.PlayerStats;
+import model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the queries of {@link DatabaseHelper} against a database seeded with a given number
+ * of users and events, set with {@code -p users=...} and {@code -p events=...}.
+ * <p>
+ * Every fork seeds a new database file. Seeded events go through the statuses of a game in
+ * turn, so about a fifth of them are still in progress, and each has a logged game of
+ * {@value #SEED_MOVES} moves. Every user is seeded with results spread over the leaderboard.
+ * Queries taking a username or eventId walk through the seeded ones, one per invocation. {@link DatabaseHelper#truncateTables()} is
+ * not measured, since it would leave the other queries nothing to read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-benchmarks.xml")
+public class DatabaseHelperBenchmark {
+
+    /**
+     * The statuses given to seeded events in turn.
+     */
+    private static final Event.EventStatus[] SEED_STATUSES = {
+            Event.EventStatus.COMPLETED,
+            Event.EventStatus.ABORTED,
+            Event.EventStatus.COMPLETED,
+            Event.EventStatus.DECLINED,
+            Event.EventStatus.COMPLETED,
+            Event.EventStatus.ABORTED,
+            Event.EventStatus.COMPLETED,
+            Event.EventStatus.PENDING,
+            Event.EventStatus.ACCEPTED,
+            Event.EventStatus.PLAYING
+    };
+
+    /**
+     * Number of events updated together by {@link #updateEvents()}.
+     */
+    private static final int UPDATE_BATCH_SIZE = 32;
+
+    /**
+     * Number of moves logged for every seeded event.
+     */
+    private static final int SEED_MOVES = 7;
+
+    /**
+     * Number of moves appended together by {@link #insertMoves()}.
+     */
+    private static final int INSERT_BATCH_SIZE = 256;
+
+    /**
+     * Number of games or players read by the paged queries, as in a page of the default size.
+     */
+    private static final int PAGE_SIZE = 20;
+
+    /**
+     * Number of seeded users.
+     */
+    @Param("1000")
+    public int users;
+
+    /**
+     * Number of seeded events.
+     */
+    @Param("10000")
+    public int events;
+
+    /**
+     * The database under measurement.
+     */
+    private DatabaseHelper database;
+
+    /**
+     * Index of the seeded user or event used by the next invocation.
+     */
+    private int cursor;
+
+    /**
+     * Number of users and events created by the benchmarks, keeping them unique.
+     */
+    private int created;
+
+    /**
+     * Points the database at a new file and seeds it.
+     *
+     * @throws IOException if the database file cannot be created
+     * @throws SQLException if the database cannot be seeded
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        Path file = Files.createTempFile("dt3-database-" + users + "-" + events, ".db");
+        file.toFile().deleteOnExit();
+        System.setProperty("tictactoe.db", file.toString());
+        database = DatabaseHelper.getInstance();
+
+        for (int i = 0; i < users; i++) {
+            database.createUser(new User(username(i), "password", "User " + i, i % 2 == 0));
+        }
+        for (int i = 0; i < events; i++) {
+            Event.EventStatus status = SEED_STATUSES[i % SEED_STATUSES.length];
+            String turn = status == Event.EventStatus.PLAYING ? username(i) : null;
+            database.createEvent(new Event(0, username(i), username(i + 1), status, turn, -1));
+        }
+
+        List<Move> moves = new ArrayList<>(events * SEED_MOVES);
+        for (int i = 0; i < events; i++) {
+            for (int ply = 1; ply <= SEED_MOVES; ply++) {
+                String player = ply % 2 == 1 ? username(i) : username(i + 1);
+                moves.add(new Move(i + 1, ply, player, ply - 1, System.currentTimeMillis()));
+            }
+        }
+        database.insertMoves(moves);
+
+        List<PlayerStats> stats = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            stats.add(new PlayerStats(username(i), null, i % 97, i % 89, i % 13, i % 7));
+        }
+        database.addPlayerStats(stats);
+    }
+
+    /**
+     * Moves to the next seeded user or event.
+     *
+     * @return the index of the user or event to use
+     */
+    private int next() {
+        cursor = (cursor + 1) % Math.min(users, events);
+        return cursor;
+    }
+
+    /**
+     * Returns the username of a seeded user.
+     *
+     * @param index the index of the user, wrapping around the number of users
+     * @return the username
+     */
+    private String username(int index) {
+        return "user-" + (index % users);
+    }
+
+    @Benchmark
+    public boolean isUsernameExists() throws SQLException {
+        return database.isUsernameExists(username(next()));
+    }
+
+    @Benchmark
+    public User createUser() throws SQLException {
+        User user = new User("created-" + created++, "password", "Created", false);
+        database.createUser(user);
+        return user;
+    }
+
+    @Benchmark
+    public User getUser() throws SQLException {
+        return database.getUser(username(next()));
+    }
+
+    @Benchmark
+    public User updateUser() throws SQLException {
+        int index = next();
+        User user = new User(username(index), "password", "User " + index, cursor % 2 == 0);
+        database.updateUser(user);
+        return user;
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public List<User> getAvailableUsers() throws SQLException {
+        return database.getAvailableUsers(username(next()));
+    }
+
+    @Benchmark
+    public boolean isUserAvailable() throws SQLException {
+        return database.isUserAvailable(username(next()));
+    }
+
+    @Benchmark
+    public Event createEvent() throws SQLException {
+        int index = created++;
+        Event event = new Event(0, username(index), username(index + 1), Event.EventStatus.COMPLETED, null, -1);
+        database.createEvent(event);
+        return event;
+    }
+
+    @Benchmark
+    public Event getEvent() throws SQLException {
+        // Seeded eventIds start at 1
+        return database.getEvent(next() + 1);
+    }
+
+    @Benchmark
+    public Event updateEvent() throws SQLException {
+        int index = next();
+        Event event = new Event(index + 1, username(index), username(index + 1),
+                SEED_STATUSES[index % SEED_STATUSES.length], null, index % 9);
+        database.updateEvent(event);
+        return event;
+    }
+
+    @Benchmark
+    public List<Event> updateEvents() throws SQLException {
+        List<Event> batch = new ArrayList<>(UPDATE_BATCH_SIZE);
+        for (int i = 0; i < UPDATE_BATCH_SIZE; i++) {
+            int index = next();
+            batch.add(new Event(index + 1, username(index), username(index + 1),
+                    SEED_STATUSES[index % SEED_STATUSES.length], null, index % 9));
+        }
+        database.updateEvents(batch);
+        return batch;
+    }
+
+    @Benchmark
+    public List<Move> insertMoves() throws SQLException {
+        // Plies past the seeded ones keep every appended move unique
+        List<Move> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int i = 0; i < INSERT_BATCH_SIZE; i++) {
+            int index = next();
+            batch.add(new Move(index + 1, SEED_MOVES + 1 + created++, username(index), index % 9,
+                    System.currentTimeMillis()));
+        }
+        database.insertMoves(batch);
+        return batch;
+    }
+
+    @Benchmark
+    public List<Move> getMoves() throws SQLException {
+        return database.getMoves(next() + 1);
+    }
+
+    @Benchmark
+    public List<Event> getFinishedEvents() throws SQLException {
+        return database.getFinishedEvents(username(next()), Integer.MAX_VALUE, PAGE_SIZE + 1);
+    }
+
+    /**
+     * Reads a page of the leaderboard starting after the next user, so pages at every depth are measured.
+     *
+     * @return the players of the page
+     * @throws SQLException if database error occurs
+     */
+    @Benchmark
+    public List<PlayerStats> getLeaderboard() throws SQLException {
+        int index = next();
+        return database.getLeaderboard(index % 97, username(index), PAGE_SIZE + 1);
+    }
+
+    /**
+     * Records the result of a game between the next user and the one after.
+     *
+     * @return the changes recorded
+     * @throws SQLException if database error occurs
+     */
+    @Benchmark
+    public List<PlayerStats> addPlayerStats() throws SQLException {
+        int index = next();
+        List<PlayerStats> changes = List.of(
+                new PlayerStats(username(index), null, 1, 0, 0, 0),
+                new PlayerStats(username(index + 1), null, 0, 1, 0, 0));
+        database.addPlayerStats(changes);
+        return changes;
+    }
+
+    @Benchmark
+    public int getRating() throws SQLException {
+        return database.getRating(username(next()));
+    }
+
+    /**
+     * Sets the ratings of the next user and the one after, as after a rated game.
+     *
+     * @return the ratings set
+     * @throws SQLException if database error occurs
+     */
+    @Benchmark
+    public Map<String, Integer> setRatings() throws SQLException {
+        int index = next();
+        Map<String, Integer> ratings = Map.of(username(index), 1500 + index % 97, username(index + 1), 1500 - index % 97);
+        database.setRatings(ratings);
+        return ratings;
+    }
+
+    @Benchmark
+    public List<Event> getActiveEvents() throws SQLException {
+        return database.getActiveEvents();
+    }
+
+    /**
+     * Aborts the events of the next user. Only the first invocation for each user finds events
+     * still in progress, later ones measure the lookup alone.
+     *
+     * @return the username, consumed by JMH
+     * @throws SQLException if database error occurs
+     */
+    @Benchmark
+    public String abortAllUserEvents() throws SQLException {
+        String username = username(next());
+        database.abortAllUserEvents(username);
+        return username;
+    }
+
+    @Benchmark
+    public Event getUserInvitation() throws SQLException {
+        return database.getUserInvitation(username(next()));
+    }
+
+    @Benchmark
+    public Event getUserInvitationResponse() throws SQLException {
+        return database.getUserInvitationResponse(username(next()));
+    }
+}
@@ -0,0 +1,283 @@
+package server;
+
+import com.google.gson.Gson;
+import model.Event;
+import model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import socket.GsonProvider;
+import socket.PollOptions;
+import socket.Request;
+import socket.Request.RequestType;
+import socket.Response;
+import socket.Response.ResponseStatus;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ServerHandler#handleRequest(Request)} for every {@link RequestType}.
+ * <p>
+ * Two players, bench-a and bench-b, are logged in on handlers that are not bound to a socket,
+ * against a fresh database file for every fork. Requests that change the state of a game are
+ * measured in single shots: the invocation setup brings the players into the state the request
+ * expects, such as a pending invitation for ACCEPT_INVITATION, and the teardown undoes it, so
+ * every invocation handles the same request in the same state.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-benchmarks.xml")
+public class HandleRequestBenchmark {
+
+    /**
+     * The player sending invitations and moves.
+     */
+    private static final String PLAYER = "bench-a";
+
+    /**
+     * The player receiving invitations and moves.
+     */
+    private static final String OPPONENT = "bench-b";
+
+    /**
+     * The type of the measured request.
+     */
+    @Param
+    public RequestType type;
+
+    /**
+     * The Gson instance used to build request data.
+     */
+    private final Gson gson = GsonProvider.getInstance();
+
+    /**
+     * The handler of the player.
+     */
+    private ServerHandler player;
+
+    /**
+     * The handler of the opponent.
+     */
+    private ServerHandler opponent;
+
+    /**
+     * The handler the measured request is sent to.
+     */
+    private ServerHandler target;
+
+    /**
+     * The measured request.
+     */
+    private Request request;
+
+    /**
+     * Number of users registered by the REGISTER benchmark, keeping their usernames unique.
+     */
+    private int registrations;
+
+    /**
+     * Points the server at a new database file, then registers and logs in both players.
+     *
+     * @throws IOException if the database file cannot be created
+     * @throws SQLException if the players cannot be registered
+     */
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException, SQLException {
+        Path database = Files.createTempFile("dt3-handle-request", ".db");
+        database.toFile().deleteOnExit();
+        System.setProperty("tictactoe.db", database.toString());
+
+        for (String username : List.of(PLAYER, OPPONENT)) {
+            DatabaseHelper.getInstance().createUser(new User(username, "password", username, false));
+        }
+        EventStore.getInstance().startFlushing(1000);
+        MoveLog.getInstance().startFlushing(256, 200);
+        MatchQueue.getInstance().startMatching();
+        RatingStore.getInstance().startUpdating();
+
+        // Pushed moves are dropped, only the handling of the request is measured
+        player = new ServerHandler(frame -> { });
+        opponent = new ServerHandler(frame -> { });
+        expectSuccess(player, RequestType.LOGIN, gson.toJson(new User(PLAYER, "password", null, false)));
+        expectSuccess(opponent, RequestType.LOGIN, gson.toJson(new User(OPPONENT, "password", null, false)));
+
+        target = type == RequestType.ACCEPT_INVITATION || type == RequestType.DECLINE_INVITATION
+                || type == RequestType.REQUEST_MOVE ? opponent : player;
+        request = new Request(type, null);
+        switch (type) {
+            case LOGIN:
+                request.setData(gson.toJson(new User(PLAYER, "password", null, false)));
+                break;
+            case UPDATE_PAIRING:
+                request.setData(gson.toJson(new PollOptions()));
+                break;
+            case SEND_INVITATION:
+                request.setData(OPPONENT);
+                break;
+            case SEND_MOVE:
+                request.setData("4");
+                break;
+            case SET_PROTOCOL:
+                request.setData("JSON");
+                break;
+            case BATCH:
+                request.setData(gson.toJson(List.of(
+                        new Request(RequestType.UPDATE_PAIRING, gson.toJson(new PollOptions())),
+                        new Request(RequestType.REQUEST_MOVE, null))));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Brings the players into the state the measured request expects.
+     *
+     * @throws SQLException if the invitation cannot be found
+     */
+    @Setup(Level.Invocation)
+    public void setUpInvocation() throws SQLException {
+        switch (type) {
+            case REGISTER:
+                String username = "bench-register-" + registrations++;
+                request.setData(gson.toJson(new User(username, "password", username, false)));
+                break;
+            case ACCEPT_INVITATION:
+            case DECLINE_INVITATION:
+                request.setData(Integer.toString(invite()));
+                break;
+            case ACKNOWLEDGE_RESPONSE:
+                int eventId = invite();
+                expectSuccess(opponent, RequestType.ACCEPT_INVITATION, Integer.toString(eventId));
+                request.setData(Integer.toString(eventId));
+                break;
+            case REQUEST_MOVE:
+                // The server rejects a cell played twice, so every move is measured in a new game
+                startGame();
+                expectSuccess(player, RequestType.SEND_MOVE, "4");
+                break;
+            case SEND_MOVE:
+            case ABORT_GAME:
+            case COMPLETE_GAME:
+                startGame();
+                break;
+            case LEAVE_QUEUE:
+                expectSuccess(player, RequestType.JOIN_QUEUE, null);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Undoes the changes of the measured request.
+     */
+    @TearDown(Level.Invocation)
+    public void tearDownInvocation() {
+        switch (type) {
+            case SEND_INVITATION:
+                EventStore.getInstance().abortAllUserEvents(PLAYER);
+                break;
+            case ACCEPT_INVITATION:
+                expectSuccess(player, RequestType.ACKNOWLEDGE_RESPONSE, request.getData());
+                expectSuccess(player, RequestType.ABORT_GAME, null);
+                break;
+            case DECLINE_INVITATION:
+                expectSuccess(player, RequestType.ACKNOWLEDGE_RESPONSE, request.getData());
+                break;
+            case ACKNOWLEDGE_RESPONSE:
+                expectSuccess(player, RequestType.ABORT_GAME, null);
+                break;
+            case SEND_MOVE:
+            case REQUEST_MOVE:
+                expectSuccess(player, RequestType.ABORT_GAME, null);
+                break;
+            case JOIN_QUEUE:
+            case JOIN_RATED_QUEUE:
+                // The player is alone in the queue, so only joining is measured
+                expectSuccess(player, RequestType.LEAVE_QUEUE, null);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Closes both sessions.
+     */
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        player.close();
+        opponent.close();
+        MatchQueue.getInstance().stopMatching();
+        RatingStore.getInstance().stopUpdating();
+        EventStore.getInstance().flush();
+        MoveLog.getInstance().flush();
+    }
+
+    /**
+     * Handles the request of the benchmarked type.
+     *
+     * @return the response, consumed by JMH
+     */
+    @Benchmark
+    public Response handleRequest() {
+        return target.handleRequest(request);
+    }
+
+    /**
+     * Sends an invitation from the player to the opponent.
+     *
+     * @return the eventId of the invitation
+     * @throws SQLException if the invitation cannot be found
+     */
+    private int invite() throws SQLException {
+        expectSuccess(player, RequestType.SEND_INVITATION, OPPONENT);
+        Event invitation = EventStore.getInstance().getUserInvitation(OPPONENT);
+        return invitation.getEventId();
+    }
+
+    /**
+     * Starts a game between the player and the opponent.
+     *
+     * @throws SQLException if the invitation cannot be found
+     */
+    private void startGame() throws SQLException {
+        String eventId = Integer.toString(invite());
+        expectSuccess(opponent, RequestType.ACCEPT_INVITATION, eventId);
+        expectSuccess(player, RequestType.ACKNOWLEDGE_RESPONSE, eventId);
+    }
+
+    /**
+     * Handles a request of the setup, failing the benchmark if it does not succeed, since the
+     * measured request would then run in another state than intended.
+     *
+     * @param handler the handler of the sending player
+     * @param type the type of the request
+     * @param data the data of the request
+     */
+    private static void expectSuccess(ServerHandler handler, RequestType type, String data) {
+        Response response = handler.handleRequest(new Request(type, data));
+        if (response.getStatus() != ResponseStatus.SUCCESS) {
+            throw new IllegalStateException(type + " failed during setup: " + response.getMessage());
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package socket;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import model.Event;
+import model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the serialization and deserialization of every {@code socket.*} and {@code model.*}
+ * message, with the shared Gson instance of {@link GsonProvider} and with a reflective Gson
+ * instance for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-benchmarks.xml")
+public class GsonBenchmark {
+
+    /**
+     * The Gson instances that can be measured.
+     */
+    public enum Mapping {
+        /**
+         * The shared instance with the hand-written adapters.
+         */
+        ADAPTERS,
+
+        /**
+         * A Gson instance with the same settings, using reflection.
+         */
+        REFLECTIVE
+    }
+
+    /**
+     * The messages that can be measured.
+     */
+    public enum Message {
+        /**
+         * A SEND_MOVE {@link Request} with a correlation ID.
+         */
+        REQUEST,
+
+        /**
+         * A plain {@link Response}.
+         */
+        RESPONSE,
+
+        /**
+         * A {@link GamingResponse} carrying a move.
+         */
+        GAMING_RESPONSE,
+
+        /**
+         * A {@link PairingResponse} listing 32 available players.
+         */
+        PAIRING_RESPONSE,
+
+        /**
+         * A {@link BatchResponse} of two responses.
+         */
+        BATCH_RESPONSE,
+
+        /**
+         * Long-poll {@link PollOptions}.
+         */
+        POLL_OPTIONS,
+
+        /**
+         * A {@link User}.
+         */
+        USER,
+
+        /**
+         * An {@link Event} in play.
+         */
+        EVENT
+    }
+
+    /**
+     * The measured Gson instance.
+     */
+    @Param
+    public Mapping mapping;
+
+    /**
+     * The measured message.
+     */
+    @Param
+    public Message message;
+
+    /**
+     * The Gson instance in use.
+     */
+    private Gson gson;
+
+    /**
+     * The message to serialize.
+     */
+    private Object value;
+
+    /**
+     * The JSON of the message to deserialize.
+     */
+    private String json;
+
+    /**
+     * Builds the Gson instance and a message as sent during a game.
+     */
+    @Setup
+    public void setUp() {
+        gson = mapping == Mapping.ADAPTERS ? GsonProvider.getInstance() : new GsonBuilder().serializeNulls().create();
+        value = createMessage();
+        json = gson.toJson(value);
+    }
+
+    /**
+     * Serializes the message.
+     *
+     * @return the JSON, consumed by JMH
+     */
+    @Benchmark
+    public String toJson() {
+        return gson.toJson(value);
+    }
+
+    /**
+     * Deserializes the message.
+     *
+     * @return the message, consumed by JMH
+     */
+    @Benchmark
+    public Object fromJson() {
+        return gson.fromJson(json, value.getClass());
+    }
+
+    /**
+     * Serializes the message and deserializes the result.
+     *
+     * @return the message, consumed by JMH
+     */
+    @Benchmark
+    public Object roundTrip() {
+        return gson.fromJson(gson.toJson(value), value.getClass());
+    }
+
+    /**
+     * Creates the measured message, with the sizes of a lobby of a few dozen players.
+     *
+     * @return the message
+     */
+    private Object createMessage() {
+        User user = new User("player-1", "password", "Player 1", true);
+        Event event = new Event(42, "player-1", "player-2", Event.EventStatus.PLAYING, "player-1", 4);
+        switch (message) {
+            case REQUEST:
+                Request request = new Request(Request.RequestType.SEND_MOVE, "4");
+                request.setId(7);
+                return request;
+            case RESPONSE:
+                return new Response(Response.ResponseStatus.SUCCESS, "Move 4 received successfully");
+            case GAMING_RESPONSE:
+                GamingResponse gamingResponse = new GamingResponse(4, true);
+                gamingResponse.setStatus(Response.ResponseStatus.SUCCESS);
+                return gamingResponse;
+            case PAIRING_RESPONSE:
+                List<User> users = new ArrayList<>();
+                for (int i = 0; i < 32; i++) {
+                    users.add(new User("player-" + i, null, "Player " + i, true));
+                }
+                PairingResponse pairingResponse = new PairingResponse(users, event, null);
+                pairingResponse.setStatus(Response.ResponseStatus.SUCCESS);
+                pairingResponse.setRevision(12);
+                return pairingResponse;
+            case BATCH_RESPONSE:
+                BatchResponse batchResponse = new BatchResponse(List.of(
+                        GsonProvider.getInstance().toJson(new Response(Response.ResponseStatus.SUCCESS, "Move 4 received successfully")),
+                        GsonProvider.getInstance().toJson(new GamingResponse(4, true))));
+                batchResponse.setStatus(Response.ResponseStatus.SUCCESS);
+                return batchResponse;
+            case POLL_OPTIONS:
+                return new PollOptions(30_000, 12);
+            case USER:
+                return user;
+            default:
+                return event;
+        }
+    }
+}
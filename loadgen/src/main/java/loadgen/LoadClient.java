@@ -0,0 +1,181 @@
+package loadgen;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import socket.BinaryCodec;
+import socket.GsonProvider;
+import socket.JsonStreamCodec;
+import socket.Request;
+import socket.Request.RequestType;
+import socket.Response;
+import socket.Response.ResponseStatus;
+import socket.WireProtocol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * A connection of one simulated player to the server. Requests are sent one at a time and
+ * the latency of each one, from sending it to reading its response, is recorded in the
+ * {@link LoadStats}.
+ */
+public class LoadClient implements Closeable {
+
+    /**
+     * The Gson instance shared with the server classes.
+     */
+    private final Gson gson = GsonProvider.getInstance();
+
+    /**
+     * The connection to the server.
+     */
+    private final Socket socket;
+
+    /**
+     * Reads the responses of the server.
+     */
+    private final DataInputStream in;
+
+    /**
+     * Writes the requests to the server.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * The statistics the requests are recorded in.
+     */
+    private final LoadStats stats;
+
+    /**
+     * The protocol of the connection.
+     */
+    private WireProtocol protocol = WireProtocol.JSON;
+
+    /**
+     * Connects to the server.
+     *
+     * @param host the host of the server
+     * @param port the port of the server
+     * @param readTimeout the longest time in milliseconds to wait for a response, so a request
+     *                    the server never answers fails instead of blocking the player
+     * @param stats the statistics the requests are recorded in
+     * @throws IOException if the connection cannot be established
+     */
+    public LoadClient(String host, int port, int readTimeout, LoadStats stats) throws IOException {
+        this.socket = new Socket(host, port);
+        this.socket.setTcpNoDelay(true);
+        this.socket.setSoTimeout(readTimeout);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.stats = stats;
+    }
+
+    /**
+     * Switches the connection to another protocol with a SET_PROTOCOL request.
+     *
+     * @param protocol the protocol to use for every later request
+     * @throws IOException if the server does not accept the protocol
+     */
+    public void setProtocol(WireProtocol protocol) throws IOException {
+        if (protocol == this.protocol) {
+            return;
+        }
+
+        Response response = send(RequestType.SET_PROTOCOL, protocol.name(), Response.class);
+        if (response.getStatus() != ResponseStatus.SUCCESS) {
+            throw new IOException("Server refused protocol " + protocol + ": " + response.getMessage());
+        }
+        this.protocol = protocol;
+    }
+
+    /**
+     * Sends a request and waits for its response.
+     *
+     * @param type the type of the request
+     * @param data the data of the request
+     * @param responseType the class of the expected response
+     * @param <T> the type of the expected response
+     * @return the response
+     * @throws IOException if the request cannot be sent or the response cannot be read
+     */
+    public <T extends Response> T send(RequestType type, String data, Class<T> responseType) throws IOException {
+        Request request = new Request(type, data);
+        long start = System.nanoTime();
+        Response response;
+        try {
+            write(request);
+            response = read(responseType);
+        } catch (IOException | JsonParseException e) {
+            stats.recordRequestError(type);
+            throw e instanceof IOException ioException ? ioException : new IOException("Invalid response to " + type, e);
+        }
+
+        stats.recordRequest(type, System.nanoTime() - start, response != null && response.getStatus() == ResponseStatus.SUCCESS);
+        if (!responseType.isInstance(response)) {
+            throw new IOException("Unexpected response to " + type + ": " + (response == null ? null : response.getMessage()));
+        }
+        return responseType.cast(response);
+    }
+
+    /**
+     * Writes a request in the protocol of the connection.
+     *
+     * @param request the request
+     * @throws IOException if the request cannot be written
+     */
+    private void write(Request request) throws IOException {
+        switch (protocol) {
+            case JSON:
+                out.writeUTF(gson.toJson(request));
+                break;
+            case JSON_STREAM:
+                JsonStreamCodec.write(gson, request, out);
+                break;
+            default:
+                byte[] payload = BinaryCodec.encodeRequest(request);
+                out.writeInt(payload.length);
+                out.write(payload);
+                break;
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a response in the protocol of the connection.
+     *
+     * @param responseType the class of the expected response
+     * @return the response
+     * @throws IOException if the response cannot be read
+     */
+    private Response read(Class<? extends Response> responseType) throws IOException {
+        switch (protocol) {
+            case JSON:
+                return gson.fromJson(in.readUTF(), responseType);
+            case JSON_STREAM:
+                return JsonStreamCodec.read(gson, in, responseType);
+            default:
+                int length = in.readInt();
+                if (length < 0 || length > WireProtocol.MAX_PAYLOAD_SIZE) {
+                    throw new IOException("Invalid frame length: " + length);
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                return BinaryCodec.decodeResponse(payload, gson, responseType);
+        }
+    }
+
+    /**
+     * Closes the connection.
+     *
+     * @throws IOException if the connection cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,315 @@
+package loadgen;
+
+import org.apache.logging.log4j.LogManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import socket.Request.RequestType;
+import socket.WireProtocol;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A headless load generator that simulates players against a running {@code SocketServer}.
+ * <p>
+ * The players are paired up, and every pair plays a number of games through the full lobby
+ * flow, see {@link SimulatedPlayer}. With {@code --matchmaking}, every player rather plays its
+ * games against whoever the server's queue pairs it with. Every player runs on its own virtual thread with its own
+ * connection, so thousands of players can be simulated from one process. Progress is logged
+ * periodically, and the throughput, the latency percentiles of every request type, and the
+ * error counts are printed once every player is done.
+ * <p>
+ * The load is configured with command-line arguments:
+ * <ul>
+ *     <li>{@code --host=HOST} and {@code --port=PORT} of the server (default localhost:5000)</li>
+ *     <li>{@code --players=N} the number of players, rounded down to an even number (default 100)</li>
+ *     <li>{@code --games=N} the number of games played by every pair (default 10)</li>
+ *     <li>{@code --poll-interval=MILLISECONDS} between two polls of the lobby or of a move (default 100)</li>
+ *     <li>{@code --long-poll=MILLISECONDS} lets the server hold polls for up to this long instead
+ *     of polling at an interval (default 0, disabled)</li>
+ *     <li>{@code --think-time=MILLISECONDS} before every move (default 0)</li>
+ *     <li>{@code --ramp-up=MILLISECONDS} over which the players connect (default 5000)</li>
+ *     <li>{@code --timeout=MILLISECONDS} a player waits for its opponent before giving up (default 30000)</li>
+ *     <li>{@code --protocol=JSON|BINARY|JSON_STREAM} of every connection (default JSON)</li>
+ *     <li>{@code --report-interval=SECONDS} between two progress logs (default 5)</li>
+ *     <li>{@code --matchmaking} pairs the players with JOIN_QUEUE instead of invitations, or with
+ *     JOIN_RATED_QUEUE with {@code --matchmaking=rated} (default disabled)</li>
+ * </ul>
+ */
+public class LoadGenerator {
+
+    /**
+     * Logger for the load generator.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadGenerator.class);
+
+    /**
+     * The host of the server.
+     */
+    private String host = "localhost";
+
+    /**
+     * The port of the server.
+     */
+    private int port = 5000;
+
+    /**
+     * The number of simulated players.
+     */
+    private int players = 100;
+
+    /**
+     * The number of games played by every pair of players.
+     */
+    private int games = 10;
+
+    /**
+     * The time in milliseconds between two polls.
+     */
+    private long pollInterval = 100;
+
+    /**
+     * The time in milliseconds the server may hold a poll, or 0 to poll at {@link #pollInterval}.
+     */
+    private long longPollTimeout = 0;
+
+    /**
+     * The time in milliseconds a player thinks before every move.
+     */
+    private long thinkTime = 0;
+
+    /**
+     * The time in milliseconds over which the players connect.
+     */
+    private long rampUp = 5000;
+
+    /**
+     * The time in milliseconds a player waits for its opponent before giving up.
+     */
+    private long timeout = 30_000;
+
+    /**
+     * The protocol of every connection.
+     */
+    private WireProtocol protocol = WireProtocol.JSON;
+
+    /**
+     * The time in seconds between two progress logs.
+     */
+    private long reportInterval = 5;
+
+    /**
+     * The request the players join the server's queue with, or null if they invite each other.
+     */
+    private RequestType queueRequest = null;
+
+    /**
+     * The statistics of the load.
+     */
+    private final LoadStats stats = new LoadStats();
+
+    /**
+     * Parses the arguments, runs the load, and prints the report.
+     *
+     * @param args command-line arguments, see {@link LoadGenerator}
+     */
+    public static void main(String[] args) {
+        LoadGenerator generator = new LoadGenerator();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            String name = separator < 0 ? arg : arg.substring(0, separator);
+            String value = separator < 0 ? "" : arg.substring(separator + 1);
+            switch (name) {
+                case "--host":
+                    generator.host = value;
+                    break;
+                case "--port":
+                    generator.port = Integer.parseInt(value);
+                    break;
+                case "--players":
+                    generator.players = Integer.parseInt(value);
+                    break;
+                case "--games":
+                    generator.games = Integer.parseInt(value);
+                    break;
+                case "--poll-interval":
+                    generator.pollInterval = Long.parseLong(value);
+                    break;
+                case "--long-poll":
+                    generator.longPollTimeout = Long.parseLong(value);
+                    break;
+                case "--think-time":
+                    generator.thinkTime = Long.parseLong(value);
+                    break;
+                case "--ramp-up":
+                    generator.rampUp = Long.parseLong(value);
+                    break;
+                case "--timeout":
+                    generator.timeout = Long.parseLong(value);
+                    break;
+                case "--protocol":
+                    generator.protocol = WireProtocol.valueOf(value.toUpperCase());
+                    break;
+                case "--report-interval":
+                    generator.reportInterval = Long.parseLong(value);
+                    break;
+                case "--matchmaking":
+                    if (value.equalsIgnoreCase("rated")) {
+                        generator.queueRequest = RequestType.JOIN_RATED_QUEUE;
+                    } else if (value.isEmpty() || Boolean.parseBoolean(value)) {
+                        generator.queueRequest = RequestType.JOIN_QUEUE;
+                    }
+                    break;
+                default:
+                    LOGGER.warn("Ignoring unknown argument: {}", arg);
+                    break;
+            }
+        }
+
+        if (generator.players < 2) {
+            throw new IllegalArgumentException("At least 2 players are needed");
+        }
+        generator.run();
+        generator.stats.print(System.out);
+
+        // The logging configuration disables Log4j's shutdown hook, so the async appender is flushed here
+        LogManager.shutdown();
+    }
+
+    /**
+     * Starts every player, spread over the ramp-up time, and waits for all of them to finish.
+     */
+    public void run() {
+        int pairs = players / 2;
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        LOGGER.info("Simulating {} players playing {} games per {} against {}:{} over {}",
+                pairs * 2, games, queueRequest != null ? "player from the queue" : "pair", host, port, protocol);
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(this::logProgress, reportInterval, reportInterval, TimeUnit.SECONDS);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            long delay = pairs > 1 ? rampUp * 1_000_000 / (pairs - 1) : 0;
+            long start = System.nanoTime();
+            for (int pair = 0; pair < pairs; pair++) {
+                // Usernames are unique per run so every run can register its players
+                String inviter = "load-" + runId + "-" + (2 * pair);
+                String invitee = "load-" + runId + "-" + (2 * pair + 1);
+                executor.execute(new SimulatedPlayer(this, invitee, inviter, false));
+                executor.execute(new SimulatedPlayer(this, inviter, invitee, true));
+
+                long wait = start + (pair + 1) * delay - System.nanoTime();
+                if (wait > 0 && pair < pairs - 1) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted while starting players");
+        } finally {
+            reporter.shutdownNow();
+        }
+    }
+
+    /**
+     * Logs the progress of the load.
+     */
+    private void logProgress() {
+        double seconds = stats.getElapsedSeconds();
+        LOGGER.info("{} requests ({} req/s), {} errors, {} games completed",
+                stats.getRequestCount(), String.format("%.1f", stats.getRequestCount() / seconds),
+                stats.getErrorCount(), stats.getGamesCompleted());
+    }
+
+    /**
+     * Returns the host of the server.
+     *
+     * @return the host
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Returns the port of the server.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Returns the number of games played by every pair of players.
+     *
+     * @return the number of games
+     */
+    public int getGames() {
+        return games;
+    }
+
+    /**
+     * Returns the time between two polls.
+     *
+     * @return the poll interval in milliseconds
+     */
+    public long getPollInterval() {
+        return pollInterval;
+    }
+
+    /**
+     * Returns the time the server may hold a poll.
+     *
+     * @return the long-poll timeout in milliseconds, or 0 to poll at the poll interval
+     */
+    public long getLongPollTimeout() {
+        return longPollTimeout;
+    }
+
+    /**
+     * Returns the time a player thinks before every move.
+     *
+     * @return the think time in milliseconds
+     */
+    public long getThinkTime() {
+        return thinkTime;
+    }
+
+    /**
+     * Returns the time a player waits for its opponent before giving up.
+     *
+     * @return the timeout in milliseconds
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Returns the request the players join the server's queue with.
+     *
+     * @return JOIN_QUEUE or JOIN_RATED_QUEUE, or null if the players invite each other
+     */
+    public RequestType getQueueRequest() {
+        return queueRequest;
+    }
+
+    /**
+     * Returns the protocol of every connection.
+     *
+     * @return the protocol
+     */
+    public WireProtocol getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * Returns the statistics of the load.
+     *
+     * @return the statistics
+     */
+    public LoadStats getStats() {
+        return stats;
+    }
+}
@@ -0,0 +1,188 @@
+package loadgen;
+
+import server.LatencyHistogram;
+import socket.Request.RequestType;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the outcome of every request sent by the simulated players, and of the games they play.
+ */
+public class LoadStats {
+
+    /**
+     * The latencies of the requests of each type, in microseconds.
+     */
+    private final Map<RequestType, LatencyHistogram> latencies = new EnumMap<>(RequestType.class);
+
+    /**
+     * The number of failed requests of each type, either answered with a FAILURE status or not
+     * answered at all.
+     */
+    private final Map<RequestType, LongAdder> errors = new EnumMap<>(RequestType.class);
+
+    /**
+     * The number of games played to the end.
+     */
+    private final LongAdder gamesCompleted = new LongAdder();
+
+    /**
+     * The number of games that were given up because of an error or a timeout.
+     */
+    private final LongAdder gamesFailed = new LongAdder();
+
+    /**
+     * The number of times a player waited longer than the timeout for its opponent.
+     */
+    private final LongAdder timeouts = new LongAdder();
+
+    /**
+     * The number of players that could not connect to the server.
+     */
+    private final LongAdder connectionErrors = new LongAdder();
+
+    /**
+     * The time the load started at, in nanoseconds.
+     */
+    private final long startTime = System.nanoTime();
+
+    /**
+     * Creates empty statistics for every request type.
+     */
+    public LoadStats() {
+        for (RequestType type : RequestType.values()) {
+            latencies.put(type, new LatencyHistogram());
+            errors.put(type, new LongAdder());
+        }
+    }
+
+    /**
+     * Records an answered request.
+     *
+     * @param type the type of the request
+     * @param nanos the time from sending the request to receiving its response, in nanoseconds
+     * @param success whether the response has a SUCCESS status
+     */
+    public void recordRequest(RequestType type, long nanos, boolean success) {
+        latencies.get(type).record(nanos / 1000);
+        if (!success) {
+            errors.get(type).increment();
+        }
+    }
+
+    /**
+     * Records a request that was not answered because the connection failed.
+     *
+     * @param type the type of the request
+     */
+    public void recordRequestError(RequestType type) {
+        errors.get(type).increment();
+    }
+
+    /**
+     * Records a game played to the end.
+     */
+    public void recordGameCompleted() {
+        gamesCompleted.increment();
+    }
+
+    /**
+     * Records games given up.
+     *
+     * @param games the number of games
+     */
+    public void recordGamesFailed(int games) {
+        gamesFailed.add(games);
+    }
+
+    /**
+     * Records a wait for the opponent that timed out.
+     */
+    public void recordTimeout() {
+        timeouts.increment();
+    }
+
+    /**
+     * Records a player that could not connect.
+     */
+    public void recordConnectionError() {
+        connectionErrors.increment();
+    }
+
+    /**
+     * Returns the number of requests answered so far.
+     *
+     * @return the number of requests
+     */
+    public long getRequestCount() {
+        long count = 0;
+        for (LatencyHistogram histogram : latencies.values()) {
+            count += histogram.getCount();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of failed requests so far.
+     *
+     * @return the number of errors
+     */
+    public long getErrorCount() {
+        long count = 0;
+        for (LongAdder adder : errors.values()) {
+            count += adder.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of games played to the end so far.
+     *
+     * @return the number of games
+     */
+    public long getGamesCompleted() {
+        return gamesCompleted.sum();
+    }
+
+    /**
+     * Returns the time elapsed since the load started.
+     *
+     * @return the elapsed time in seconds
+     */
+    public double getElapsedSeconds() {
+        return (System.nanoTime() - startTime) / 1e9;
+    }
+
+    /**
+     * Prints the throughput, the latency percentiles of every request type that was sent, and
+     * the error counts.
+     *
+     * @param out the stream to print to
+     */
+    public void print(PrintStream out) {
+        double seconds = getElapsedSeconds();
+        out.printf("%-22s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+                "Request", "Count", "Errors", "Req/s", "Mean ms", "p50 ms", "p90 ms", "p99 ms", "Max ms");
+        for (RequestType type : RequestType.values()) {
+            LatencyHistogram histogram = latencies.get(type);
+            long errorCount = errors.get(type).sum();
+            if (histogram.getCount() == 0 && errorCount == 0) {
+                continue;
+            }
+
+            out.printf("%-22s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    type, histogram.getCount(), errorCount, histogram.getCount() / seconds,
+                    histogram.getMean() / 1000, histogram.getPercentile(50) / 1000.0,
+                    histogram.getPercentile(90) / 1000.0, histogram.getPercentile(99) / 1000.0,
+                    histogram.getMax() / 1000.0);
+        }
+
+        out.printf("%-22s %9d %7d %9.1f%n", "TOTAL", getRequestCount(), getErrorCount(), getRequestCount() / seconds);
+        out.printf("Elapsed: %.1f s, games completed: %d (%.1f/s), games failed: %d, timeouts: %d, connection errors: %d%n",
+                seconds, gamesCompleted.sum(), gamesCompleted.sum() / seconds, gamesFailed.sum(),
+                timeouts.sum(), connectionErrors.sum());
+    }
+}
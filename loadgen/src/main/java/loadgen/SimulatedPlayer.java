@@ -0,0 +1,371 @@
+package loadgen;
+
+import model.Board;
+import model.Event;
+import model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import socket.GamingResponse;
+import socket.GsonProvider;
+import socket.MatchResponse;
+import socket.PairingResponse;
+import socket.PollOptions;
+import socket.Request.RequestType;
+import socket.Response;
+import socket.Response.ResponseStatus;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+/**
+ * One simulated player, playing a number of games against the same opponent the way the
+ * client does: it registers and logs in, finds its opponent in the lobby through
+ * UPDATE_PAIRING, goes through the invitation handshake, and plays each game with SEND_MOVE and
+ * REQUEST_MOVE until a player wins or the board is full.
+ * <p>
+ * The inviter of each pair sends the invitations and the first move of every game. Moves are
+ * picked from the board sent back by the server, which completes a game on its last move. A
+ * player that meets an error or waits longer than the timeout for its opponent gives up its
+ * remaining games and disconnects.
+ * <p>
+ * When the load generator uses matchmaking, the player rather sends JOIN_QUEUE or
+ * JOIN_RATED_QUEUE before every game and plays whoever the server pairs it with, making the first move when it was queued first.
+ */
+public class SimulatedPlayer implements Runnable {
+
+    /**
+     * Logger for the simulated players.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SimulatedPlayer.class);
+
+    /**
+     * The password of every simulated player.
+     */
+    private static final String PASSWORD = "password";
+
+    /**
+     * The load generator running this player, holding the settings of the load.
+     */
+    private final LoadGenerator generator;
+
+    /**
+     * The username of this player.
+     */
+    private final String username;
+
+    /**
+     * The username of the opponent.
+     */
+    private final String opponent;
+
+    /**
+     * Whether this player sends the invitations.
+     */
+    private final boolean inviter;
+
+    /**
+     * The usernames of the players available in the lobby.
+     */
+    private final Set<String> lobby = new HashSet<>();
+
+    /**
+     * The last lobby revision received, or -1 before the full lobby was received.
+     */
+    private long lobbyRevision = -1;
+
+    /**
+     * The connection of this player.
+     */
+    private LoadClient client;
+
+    /**
+     * Creates a simulated player.
+     *
+     * @param generator the load generator running this player
+     * @param username the username of this player
+     * @param opponent the username of the opponent
+     * @param inviter whether this player sends the invitations
+     */
+    public SimulatedPlayer(LoadGenerator generator, String username, String opponent, boolean inviter) {
+        this.generator = generator;
+        this.username = username;
+        this.opponent = opponent;
+        this.inviter = inviter;
+    }
+
+    /**
+     * Connects, logs in, and plays every game.
+     */
+    @Override
+    public void run() {
+        LoadStats stats = generator.getStats();
+        try {
+            int readTimeout = (int) (generator.getTimeout() + generator.getLongPollTimeout());
+            client = new LoadClient(generator.getHost(), generator.getPort(), readTimeout, stats);
+        } catch (IOException e) {
+            LOGGER.warn("Player {} could not connect: {}", username, e.getMessage());
+            stats.recordConnectionError();
+            stats.recordGamesFailed(generator.getGames());
+            return;
+        }
+
+        int gamesPlayed = 0;
+        try {
+            client.setProtocol(generator.getProtocol());
+            String user = GsonProvider.getInstance().toJson(new User(username, PASSWORD, username, false));
+            expectSuccess(client.send(RequestType.REGISTER, user, Response.class));
+            expectSuccess(client.send(RequestType.LOGIN, user, Response.class));
+
+            while (gamesPlayed < generator.getGames()) {
+                if (generator.getQueueRequest() != null) {
+                    playFromQueue();
+                } else if (inviter) {
+                    playAsInviter();
+                } else {
+                    playAsInvitee();
+                }
+                gamesPlayed++;
+            }
+        } catch (TimeoutException e) {
+            LOGGER.warn("Player {} gave up: {}", username, e.getMessage());
+            stats.recordTimeout();
+            stats.recordGamesFailed(generator.getGames() - gamesPlayed);
+        } catch (IOException e) {
+            LOGGER.warn("Player {} gave up: {}", username, e.getMessage());
+            stats.recordGamesFailed(generator.getGames() - gamesPlayed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stats.recordGamesFailed(generator.getGames() - gamesPlayed);
+        } finally {
+            try {
+                client.close();
+            } catch (IOException e) {
+                LOGGER.debug("Error closing the connection of player {}", username, e);
+            }
+        }
+    }
+
+    /**
+     * Waits for the opponent in the lobby, invites them, and plays the game once they accept.
+     *
+     * @throws IOException if a request fails
+     * @throws TimeoutException if the opponent takes longer than the timeout
+     * @throws InterruptedException if the player is interrupted
+     */
+    private void playAsInviter() throws IOException, TimeoutException, InterruptedException {
+        awaitPairing(response -> lobby.contains(opponent), "opponent in lobby");
+        expectSuccess(client.send(RequestType.SEND_INVITATION, opponent, Response.class));
+
+        PairingResponse pairing = awaitPairing(response -> response.getInvitationResponse() != null, "invitation response");
+        Event invitationResponse = pairing.getInvitationResponse();
+        if (invitationResponse.getStatus() != Event.EventStatus.ACCEPTED) {
+            throw new IOException("Invitation was " + invitationResponse.getStatus());
+        }
+        expectSuccess(client.send(RequestType.ACKNOWLEDGE_RESPONSE, Integer.toString(invitationResponse.getEventId()), Response.class));
+
+        play(true);
+    }
+
+    /**
+     * Waits for the invitation of the opponent, accepts it, and plays the game.
+     *
+     * @throws IOException if a request fails
+     * @throws TimeoutException if the opponent takes longer than the timeout
+     * @throws InterruptedException if the player is interrupted
+     */
+    private void playAsInvitee() throws IOException, TimeoutException, InterruptedException {
+        PairingResponse pairing = awaitPairing(response -> response.getInvitation() != null
+                && opponent.equals(response.getInvitation().getSender()), "invitation");
+        expectSuccess(client.send(RequestType.ACCEPT_INVITATION, Integer.toString(pairing.getInvitation().getEventId()), Response.class));
+
+        play(false);
+    }
+
+    /**
+     * Joins the queue, waits for the server to pair this player with an opponent, and plays the game.
+     *
+     * @throws IOException if a request fails
+     * @throws TimeoutException if no opponent is found within the timeout
+     * @throws InterruptedException if the player is interrupted
+     */
+    private void playFromQueue() throws IOException, TimeoutException, InterruptedException {
+        long deadline = System.currentTimeMillis() + generator.getTimeout();
+        String options = generator.getLongPollTimeout() > 0
+                ? GsonProvider.getInstance().toJson(new PollOptions(generator.getLongPollTimeout())) : null;
+        while (true) {
+            MatchResponse response = client.send(generator.getQueueRequest(), options, MatchResponse.class);
+            expectSuccess(response);
+            if (response.getGame() != null) {
+                play(username.equals(response.getGame().getSender()));
+                return;
+            }
+
+            awaitNextPoll(deadline, "opponent in queue");
+        }
+    }
+
+    /**
+     * Plays a game, picking a random free cell for every move.
+     *
+     * @param myTurn whether this player makes the first move
+     * @throws IOException if a request fails
+     * @throws TimeoutException if the opponent takes longer than the timeout
+     * @throws InterruptedException if the player is interrupted
+     */
+    private void play(boolean myTurn) throws IOException, TimeoutException, InterruptedException {
+        int board = Board.EMPTY;
+        while (true) {
+            if (myTurn) {
+                if (generator.getThinkTime() > 0) {
+                    Thread.sleep(generator.getThinkTime());
+                }
+
+                int cell = pickFreeCell(board);
+                GamingResponse move = client.send(RequestType.SEND_MOVE, Integer.toString(cell), GamingResponse.class);
+                expectSuccess(move);
+                if (!move.getActive()) {
+                    // The move won the game or filled the board, and the server completed it
+                    generator.getStats().recordGameCompleted();
+                    return;
+                }
+                board = move.getBoard();
+            } else {
+                GamingResponse move = awaitMove();
+                if (!move.getActive()) {
+                    return;
+                }
+                board = move.getBoard();
+            }
+            myTurn = !myTurn;
+        }
+    }
+
+    /**
+     * Sends UPDATE_PAIRING requests until the pairing information matches a condition.
+     *
+     * @param condition the condition to wait for, checked after the lobby is updated
+     * @param description what is waited for, used in the timeout message
+     * @return the pairing information matching the condition
+     * @throws IOException if a request fails
+     * @throws TimeoutException if the condition is not met within the timeout
+     * @throws InterruptedException if the player is interrupted
+     */
+    private PairingResponse awaitPairing(Predicate<PairingResponse> condition, String description)
+            throws IOException, TimeoutException, InterruptedException {
+        long deadline = System.currentTimeMillis() + generator.getTimeout();
+        while (true) {
+            PollOptions options = new PollOptions(generator.getLongPollTimeout(), lobbyRevision);
+            PairingResponse response = client.send(RequestType.UPDATE_PAIRING,
+                    GsonProvider.getInstance().toJson(options), PairingResponse.class);
+            expectSuccess(response);
+            updateLobby(response);
+            if (condition.test(response)) {
+                return response;
+            }
+
+            awaitNextPoll(deadline, description);
+        }
+    }
+
+    /**
+     * Sends REQUEST_MOVE requests until the opponent moves or the game ends.
+     *
+     * @return the response carrying the move, or telling the game is no longer active
+     * @throws IOException if a request fails
+     * @throws TimeoutException if the opponent does not move within the timeout
+     * @throws InterruptedException if the player is interrupted
+     */
+    private GamingResponse awaitMove() throws IOException, TimeoutException, InterruptedException {
+        long deadline = System.currentTimeMillis() + generator.getTimeout();
+        String options = generator.getLongPollTimeout() > 0
+                ? GsonProvider.getInstance().toJson(new PollOptions(generator.getLongPollTimeout())) : null;
+        while (true) {
+            GamingResponse response = client.send(RequestType.REQUEST_MOVE, options, GamingResponse.class);
+            expectSuccess(response);
+            if (response.getMove() != -1 || !response.getActive()) {
+                return response;
+            }
+
+            awaitNextPoll(deadline, "opponent move");
+        }
+    }
+
+    /**
+     * Waits for the poll interval before polling again, unless the server already held the poll.
+     *
+     * @param deadline the time the wait times out at, in milliseconds
+     * @param description what is waited for, used in the timeout message
+     * @throws TimeoutException if the deadline has passed
+     * @throws InterruptedException if the player is interrupted
+     */
+    private void awaitNextPoll(long deadline, String description) throws TimeoutException, InterruptedException {
+        if (System.currentTimeMillis() >= deadline) {
+            throw new TimeoutException("Timed out waiting for " + description);
+        }
+        if (generator.getLongPollTimeout() == 0) {
+            Thread.sleep(generator.getPollInterval());
+        }
+    }
+
+    /**
+     * Applies the lobby sent by the server, either in full or as changes since the last revision.
+     *
+     * @param response the pairing information
+     */
+    private void updateLobby(PairingResponse response) {
+        if (response.getAvailableUsers() != null) {
+            lobby.clear();
+            for (User user : response.getAvailableUsers()) {
+                lobby.add(user.getUsername());
+            }
+        }
+        if (response.getAddedUsers() != null) {
+            for (User user : response.getAddedUsers()) {
+                lobby.add(user.getUsername());
+            }
+        }
+        if (response.getRemovedUsers() != null) {
+            lobby.removeAll(response.getRemovedUsers());
+        }
+        lobbyRevision = response.getRevision();
+    }
+
+    /**
+     * Picks a random free cell.
+     *
+     * @param board the board, packed as described by {@link Board}
+     * @return the index of the cell
+     */
+    private static int pickFreeCell(int board) {
+        int free = 0;
+        for (int cell = 0; cell < Board.CELLS; cell++) {
+            if (Board.isFree(board, cell)) {
+                free++;
+            }
+        }
+
+        int pick = ThreadLocalRandom.current().nextInt(free);
+        for (int cell = 0; cell < Board.CELLS; cell++) {
+            if (Board.isFree(board, cell) && pick-- == 0) {
+                return cell;
+            }
+        }
+        throw new IllegalStateException("Board is full");
+    }
+
+    /**
+     * Gives up when the server refuses a request.
+     *
+     * @param response the response of the server
+     * @throws IOException if the response does not have a SUCCESS status
+     */
+    private static void expectSuccess(Response response) throws IOException {
+        if (response.getStatus() != ResponseStatus.SUCCESS) {
+            throw new IOException("Request failed: " + response.getMessage());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package model;
+
+/**
+ * The board of a TicTacToe game, packed into a single int so it can be stored on an
+ * {@link Event} and in a single database column.
+ * <p>
+ * The board is made of two 9-bit bitboards: bits 0 to 8 hold the cells played by the sender of
+ * the game invitation and bits 9 to 17 the cells played by the opponent. Bit {@code n} of a
+ * bitboard stands for cell {@code n}, numbered from top to bottom, left to right:
+ * <pre>
+ * 0 | 1 | 2
+ * --+---+--
+ * 3 | 4 | 5
+ * --+---+--
+ * 6 | 7 | 8
+ * </pre>
+ * Whether the cells of a player win the game is looked up in a table computed once from the
+ * masks of the eight winning lines, so checking a move for a win or a draw is a constant-time
+ * operation without any loop.
+ */
+public final class Board {
+
+    /**
+     * The empty board.
+     */
+    public static final int EMPTY = 0;
+
+    /**
+     * The number of cells of the board, and the width of each bitboard.
+     */
+    public static final int CELLS = 9;
+
+    /**
+     * The mask of every cell of a bitboard.
+     */
+    private static final int ALL_CELLS = (1 << CELLS) - 1;
+
+    /**
+     * The masks of the lines of three cells that win a game: the rows, the columns and the diagonals.
+     */
+    private static final int[] LINES = {
+            0b000_000_111, 0b000_111_000, 0b111_000_000,
+            0b001_001_001, 0b010_010_010, 0b100_100_100,
+            0b100_010_001, 0b001_010_100
+    };
+
+    /**
+     * Whether a bitboard holds a winning line, indexed by the bitboard.
+     */
+    private static final boolean[] WINNING = new boolean[1 << CELLS];
+
+    static {
+        for (int cells = 0; cells < WINNING.length; cells++) {
+            for (int line : LINES) {
+                if ((cells & line) == line) {
+                    WINNING[cells] = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * A private constructor, the board only has static methods
+     */
+    private Board() {
+    }
+
+    /**
+     * Checks whether a move designates a cell of the board.
+     *
+     * @param cell the cell of the move
+     * @return true if the cell is between 0 and 8
+     */
+    public static boolean isCell(int cell) {
+        return cell >= 0 && cell < CELLS;
+    }
+
+    /**
+     * Checks whether a cell has not been played by either player.
+     *
+     * @param board the board
+     * @param cell the cell, between 0 and 8
+     * @return true if the cell is free
+     */
+    public static boolean isFree(int board, int cell) {
+        return ((board | board >>> CELLS) & (1 << cell)) == 0;
+    }
+
+    /**
+     * Plays a cell for a player.
+     *
+     * @param board the board
+     * @param cell the free cell to play, between 0 and 8
+     * @param sender true for the sender of the invitation, false for the opponent
+     * @return the board with the cell played
+     */
+    public static int play(int board, int cell, boolean sender) {
+        return board | 1 << (sender ? cell : cell + CELLS);
+    }
+
+    /**
+     * Returns the bitboard of the cells played by a player.
+     *
+     * @param board the board
+     * @param sender true for the sender of the invitation, false for the opponent
+     * @return the cells of the player, one bit per cell
+     */
+    public static int cellsOf(int board, boolean sender) {
+        return (sender ? board : board >>> CELLS) & ALL_CELLS;
+    }
+
+    /**
+     * Checks whether a player has three cells in a line.
+     *
+     * @param board the board
+     * @param sender true for the sender of the invitation, false for the opponent
+     * @return true if the player won the game
+     */
+    public static boolean hasWon(int board, boolean sender) {
+        return WINNING[cellsOf(board, sender)];
+    }
+
+    /**
+     * Checks whether every cell has been played.
+     *
+     * @param board the board
+     * @return true if the board is full
+     */
+    public static boolean isFull(int board) {
+        return ((board | board >>> CELLS) & ALL_CELLS) == ALL_CELLS;
+    }
+
+    /**
+     * Checks whether a game is over, because a player won or the board is full.
+     *
+     * @param board the board
+     * @return true if no move can be played anymore
+     */
+    public static boolean isOver(int board) {
+        return WINNING[cellsOf(board, true)] || WINNING[cellsOf(board, false)] || isFull(board);
+    }
+
+    /**
+     * Returns the board as seen by a player: the cells of the player in bits 0 to 8 and the
+     * cells of the other player in bits 9 to 17. This is how the board is sent to clients,
+     * which do not need to know whether they sent the invitation.
+     *
+     * @param board the board
+     * @param sender true for the sender of the invitation, false for the opponent
+     * @return the board seen by the player
+     */
+    public static int seenBy(int board, boolean sender) {
+        return sender ? board : cellsOf(board, false) | cellsOf(board, true) << CELLS;
+    }
+}
@@ -45,6 +45,11 @@ public class Event {
      */
     private int move;
 
+    /**
+     * The cells played by both players, packed as described by {@link Board}
+     */
+    private int board;
+
     /**
      * Default constructor that creates an Event with default values.
      * Used for initialization before populating with database values.
@@ -65,12 +70,38 @@ public class Event {
      * @param move the integer representing the last move made in the game
      */
     public Event(int eventId, String sender, String opponent, EventStatus status, String turn, int move) {
+        this(eventId, sender, opponent, status, turn, move, Board.EMPTY);
+    }
+
+    /**
+     * Creates a complete Event with all attributes, including the board of a game in progress.
+     * Used when constructing events from database records.
+     *
+     * @param eventId the globally unique identifier autogenerated by the database
+     * @param sender the username of the player sending the invitation
+     * @param opponent the username of the player receiving the invitation
+     * @param status the current status of the game lifecycle
+     * @param turn the username of the player who made the last move
+     * @param move the integer representing the last move made in the game
+     * @param board the cells played by both players, packed as described by {@link Board}
+     */
+    public Event(int eventId, String sender, String opponent, EventStatus status, String turn, int move, int board) {
         this.eventId = eventId;
         this.sender = sender;
         this.opponent = opponent;
         this.status = status;
         this.turn = turn;
         this.move = move;
+        this.board = board;
+    }
+
+    /**
+     * Creates a copy of another Event, so it can be changed without affecting the original.
+     *
+     * @param event the event to copy
+     */
+    public Event(Event event) {
+        this(event.eventId, event.sender, event.opponent, event.status, event.turn, event.move, event.board);
     }
 
     /**
@@ -127,6 +158,15 @@ public class Event {
         return move;
     }
 
+    /**
+     * Returns the cells played by both players.
+     *
+     * @return the board, packed as described by {@link Board}
+     */
+    public int getBoard() {
+        return board;
+    }
+
     /**
      * Sets the globally unique event identifier. Typically set by the database
      * when a new invitation is created.
@@ -183,6 +223,15 @@ public class Event {
         this.move = move;
     }
 
+    /**
+     * Updates the cells played by both players after a move.
+     *
+     * @param board the board, packed as described by {@link Board}
+     */
+    public void setBoard(int board) {
+        this.board = board;
+    }
+
     /**
      * Compares this event to the specified object for equality. Two events are
      * considered equal if they have the same eventId, as this is the globally
@@ -232,8 +281,9 @@ public class Event {
         PLAYING,
 
         /**
-         * Status set when a client sends a request indicating game completion.
-         * Represents a game that has been completed normally with a winner.
+         * Status set by the server when a move wins the game or fills the board, or when a
+         * client sends a request indicating game completion.
+         * Represents a game that has been completed normally with a winner or a draw.
          */
         COMPLETED,
 
@@ -0,0 +1,150 @@
+package model;
+
+/**
+ * Models a single move of a TicTacToe game, as recorded in the append-only 'Move' table of
+ * the central database. Unlike {@link Event}, which only holds the current state of a game,
+ * the moves of a game are never changed once recorded, so a finished game can be replayed
+ * move by move.
+ */
+public class Move {
+
+    /**
+     * The eventId of the game the move was played in
+     */
+    private int eventId;
+
+    /**
+     * The number of the move in its game, starting at 1 for the first move
+     */
+    private int ply;
+
+    /**
+     * The username of the player who made the move
+     */
+    private String player;
+
+    /**
+     * The cell played, from 0 to 8
+     */
+    private int cell;
+
+    /**
+     * The time the server accepted the move, in milliseconds since the epoch
+     */
+    private long timestamp;
+
+    /**
+     * Default constructor that creates a Move with default values.
+     * Used for initialization before populating with database values.
+     */
+    public Move() {
+        this(0, 0, null, 0, 0);
+    }
+
+    /**
+     * Creates a complete Move with all attributes.
+     *
+     * @param eventId the eventId of the game the move was played in
+     * @param ply the number of the move in its game, starting at 1
+     * @param player the username of the player who made the move
+     * @param cell the cell played, from 0 to 8
+     * @param timestamp the time the server accepted the move, in milliseconds since the epoch
+     */
+    public Move(int eventId, int ply, String player, int cell, long timestamp) {
+        this.eventId = eventId;
+        this.ply = ply;
+        this.player = player;
+        this.cell = cell;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Returns the eventId of the game the move was played in.
+     *
+     * @return the eventId
+     */
+    public int getEventId() {
+        return eventId;
+    }
+
+    /**
+     * Returns the number of the move in its game.
+     *
+     * @return the ply, starting at 1 for the first move
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * Returns the username of the player who made the move.
+     *
+     * @return the player's username
+     */
+    public String getPlayer() {
+        return player;
+    }
+
+    /**
+     * Returns the cell played.
+     *
+     * @return an integer from 0-8 representing the cell position
+     */
+    public int getCell() {
+        return cell;
+    }
+
+    /**
+     * Returns the time the server accepted the move.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Sets the eventId of the game the move was played in.
+     *
+     * @param eventId the eventId to set
+     */
+    public void setEventId(int eventId) {
+        this.eventId = eventId;
+    }
+
+    /**
+     * Sets the number of the move in its game.
+     *
+     * @param ply the ply to set, starting at 1 for the first move
+     */
+    public void setPly(int ply) {
+        this.ply = ply;
+    }
+
+    /**
+     * Sets the username of the player who made the move.
+     *
+     * @param player the player's username to set
+     */
+    public void setPlayer(String player) {
+        this.player = player;
+    }
+
+    /**
+     * Sets the cell played.
+     *
+     * @param cell an integer from 0-8 representing the cell position
+     */
+    public void setCell(int cell) {
+        this.cell = cell;
+    }
+
+    /**
+     * Sets the time the server accepted the move.
+     *
+     * @param timestamp the time in milliseconds since the epoch
+     */
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+}
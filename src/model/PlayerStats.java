@@ -0,0 +1,224 @@
+package model;
+
+/**
+ * Models the game results of a player, as kept in the 'UserStats' table of the central
+ * database and shown on the leaderboard.
+ * <p>
+ * The results are counted as games end instead of being computed from the 'Event' table, so
+ * reading them costs the same however many games have been played. The same class carries
+ * the changes made to a player's results by a single game.
+ * <p>
+ * The Elo rating of the player is kept alongside the results, and used to pair players of
+ * similar strength in the rated matchmaking queue.
+ */
+public class PlayerStats {
+
+    /**
+     * The rating of a player who has not finished a rated game yet
+     */
+    public static final int INITIAL_RATING = 1500;
+
+    /**
+     * The username of the player
+     */
+    private String username;
+
+    /**
+     * The display name of the player, shown on the leaderboard
+     */
+    private String displayName;
+
+    /**
+     * The number of games the player won
+     */
+    private int wins;
+
+    /**
+     * The number of games the player lost
+     */
+    private int losses;
+
+    /**
+     * The number of games that ended with a full board and no winner
+     */
+    private int draws;
+
+    /**
+     * The number of games the player aborted while they were in progress
+     */
+    private int aborts;
+
+    /**
+     * The Elo rating of the player
+     */
+    private int rating;
+
+    /**
+     * Default constructor that creates PlayerStats with default values.
+     * Used for initialization before populating with database values.
+     */
+    public PlayerStats() {
+        this(null, null, 0, 0, 0, 0);
+    }
+
+    /**
+     * Creates PlayerStats with the initial rating, such as the changes made by a single game.
+     *
+     * @param username the username of the player
+     * @param displayName the display name of the player
+     * @param wins the number of games won
+     * @param losses the number of games lost
+     * @param draws the number of games drawn
+     * @param aborts the number of games aborted by the player
+     */
+    public PlayerStats(String username, String displayName, int wins, int losses, int draws, int aborts) {
+        this(username, displayName, wins, losses, draws, aborts, INITIAL_RATING);
+    }
+
+    /**
+     * Creates complete PlayerStats with all attributes.
+     *
+     * @param username the username of the player
+     * @param displayName the display name of the player
+     * @param wins the number of games won
+     * @param losses the number of games lost
+     * @param draws the number of games drawn
+     * @param aborts the number of games aborted by the player
+     * @param rating the Elo rating of the player
+     */
+    public PlayerStats(String username, String displayName, int wins, int losses, int draws, int aborts, int rating) {
+        this.username = username;
+        this.displayName = displayName;
+        this.wins = wins;
+        this.losses = losses;
+        this.draws = draws;
+        this.aborts = aborts;
+        this.rating = rating;
+    }
+
+    /**
+     * Returns the username of the player.
+     *
+     * @return the username
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Returns the display name of the player.
+     *
+     * @return the display name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Returns the number of games the player won.
+     *
+     * @return the number of wins
+     */
+    public int getWins() {
+        return wins;
+    }
+
+    /**
+     * Returns the number of games the player lost.
+     *
+     * @return the number of losses
+     */
+    public int getLosses() {
+        return losses;
+    }
+
+    /**
+     * Returns the number of games that ended without a winner.
+     *
+     * @return the number of draws
+     */
+    public int getDraws() {
+        return draws;
+    }
+
+    /**
+     * Returns the number of games the player aborted.
+     *
+     * @return the number of aborted games
+     */
+    public int getAborts() {
+        return aborts;
+    }
+
+    /**
+     * Returns the Elo rating of the player.
+     *
+     * @return the rating
+     */
+    public int getRating() {
+        return rating;
+    }
+
+    /**
+     * Sets the username of the player.
+     *
+     * @param username the username to set
+     */
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    /**
+     * Sets the display name of the player.
+     *
+     * @param displayName the display name to set
+     */
+    public void setDisplayName(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Sets the number of games the player won.
+     *
+     * @param wins the number of wins to set
+     */
+    public void setWins(int wins) {
+        this.wins = wins;
+    }
+
+    /**
+     * Sets the number of games the player lost.
+     *
+     * @param losses the number of losses to set
+     */
+    public void setLosses(int losses) {
+        this.losses = losses;
+    }
+
+    /**
+     * Sets the number of games that ended without a winner.
+     *
+     * @param draws the number of draws to set
+     */
+    public void setDraws(int draws) {
+        this.draws = draws;
+    }
+
+    /**
+     * Sets the number of games the player aborted.
+     *
+     * @param aborts the number of aborted games to set
+     */
+    public void setAborts(int aborts) {
+        this.aborts = aborts;
+    }
+
+    /**
+     * Sets the Elo rating of the player.
+     *
+     * @param rating the rating to set
+     */
+    public void setRating(int rating) {
+        this.rating = rating;
+    }
+}
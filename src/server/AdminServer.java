@@ -0,0 +1,111 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A small HTTP listener serving the operational state of the server to local tools. It only
+ * listens on the loopback interface.
+ * <p>
+ * {@code GET /stats} returns the {@link ServerMetrics} report as plain text, and
+ * {@code GET /metrics} returns the live counters of the server in the Prometheus text format,
+ * formatted by a {@link PrometheusExporter}.
+ */
+public class AdminServer {
+
+    /**
+     * Logger for the admin server.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdminServer.class);
+
+    /**
+     * The port the admin server listens on.
+     */
+    private final int port;
+
+    /**
+     * Formats the metrics served on {@code /metrics}.
+     */
+    private final PrometheusExporter exporter;
+
+    /**
+     * The HTTP server, or null if it has not been started.
+     */
+    private HttpServer httpServer;
+
+    /**
+     * Creates an admin server.
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @param exporter formats the metrics served on {@code /metrics}
+     */
+    public AdminServer(int port, PrometheusExporter exporter) {
+        this.port = port;
+        this.exporter = exporter;
+    }
+
+    /**
+     * Starts listening on the loopback interface.
+     *
+     * @throws IOException if the port cannot be bound
+     */
+    public void start() throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext("/stats", exchange -> respond(exchange, "text/plain; charset=utf-8",
+                ServerMetrics.getInstance().report()));
+        httpServer.createContext("/metrics", exchange -> respond(exchange, PrometheusExporter.CONTENT_TYPE,
+                exporter.scrape()));
+        httpServer.start();
+        LOGGER.info("Admin server listening on {}", httpServer.getAddress());
+    }
+
+    /**
+     * Stops listening.
+     */
+    public void stop() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+        }
+    }
+
+    /**
+     * Returns the port the admin server listens on.
+     *
+     * @return the bound port, or the configured port if it has not been started
+     */
+    public int getPort() {
+        return httpServer == null ? port : httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Sends a text response to a GET request, or a 405 status to any other method.
+     *
+     * @param exchange the HTTP exchange
+     * @param contentType the content type of the response
+     * @param body the body of the response
+     * @throws IOException if the response cannot be sent
+     */
+    private static void respond(HttpExchange exchange, String contentType, String body) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lets request handlers park until some state identified by a key changes, such as a user's
+ * pairing information or a game {@link model.Event}. Used to implement long-polling so a
+ * waiting client is only answered when there is something new to tell it.
+ * <p>
+ * Every change is stamped with a version taken from a single increasing sequence, so a
+ * version read before computing a response can later be compared against the key's current
+ * version to tell whether anything changed in between. Waiting uses locks and conditions
+ * rather than {@code synchronized} so parked virtual threads release their carrier thread.
+ *
+ * @param <K> the type of key identifying the watched state
+ */
+public class ChangeNotifier<K> {
+
+    /**
+     * The sequence that stamps every change.
+     */
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    /**
+     * The signals of the keys currently being watched.
+     */
+    private final Map<K, Signal> signals = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the version of the state identified by the key.
+     *
+     * @param key the key of the watched state
+     * @return the version of the last change to the key
+     */
+    public long getVersion(K key) {
+        return signals.computeIfAbsent(key, k -> new Signal()).version;
+    }
+
+    /**
+     * Records a change to the state identified by the key and wakes its waiters.
+     *
+     * @param key the key of the changed state
+     */
+    public void signal(K key) {
+        Signal signal = signals.get(key);
+        if (signal != null) {
+            signal.fire();
+        }
+    }
+
+    /**
+     * Records a change to every watched state and wakes all waiters.
+     */
+    public void signalAll() {
+        for (Signal signal : signals.values()) {
+            signal.fire();
+        }
+    }
+
+    /**
+     * Stops watching the state identified by the key, waking any remaining waiters.
+     *
+     * @param key the key of the state that is no longer watched
+     */
+    public void remove(K key) {
+        Signal signal = signals.remove(key);
+        if (signal != null) {
+            signal.fire();
+        }
+    }
+
+    /**
+     * Blocks until the state identified by the key changes after the given version or the
+     * timeout elapses.
+     *
+     * @param key the key of the watched state
+     * @param sinceVersion the version the caller has already seen
+     * @param timeoutMillis the maximum time to wait in milliseconds
+     * @return true if the state changed, false if the timeout elapsed first
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public boolean await(K key, long sinceVersion, long timeoutMillis) throws InterruptedException {
+        return signals.computeIfAbsent(key, k -> new Signal()).await(sinceVersion, timeoutMillis);
+    }
+
+    /**
+     * The version and waiters of a single key.
+     */
+    private static final class Signal {
+
+        /**
+         * Guards waiting on and firing the signal.
+         */
+        private final Lock lock = new ReentrantLock();
+
+        /**
+         * Signalled whenever the version changes.
+         */
+        private final Condition changed = lock.newCondition();
+
+        /**
+         * The version of the last change.
+         */
+        private volatile long version = SEQUENCE.get();
+
+        /**
+         * Stamps a new version and wakes every waiter.
+         */
+        void fire() {
+            lock.lock();
+            try {
+                version = SEQUENCE.incrementAndGet();
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Blocks until the version moves past the given version or the timeout elapses.
+         *
+         * @param sinceVersion the version the caller has already seen
+         * @param timeoutMillis the maximum time to wait in milliseconds
+         * @return true if the version changed, false if the timeout elapsed first
+         * @throws InterruptedException if the waiting thread is interrupted
+         */
+        boolean await(long sinceVersion, long timeoutMillis) throws InterruptedException {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            lock.lock();
+            try {
+                while (version <= sinceVersion) {
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    remaining = changed.awaitNanos(remaining);
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -1,14 +1,33 @@
 package server;
 
 import model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Gives access to the SQLite database of the TicTacToe server.
+ * <p>
+ * SQLite allows a single writer at a time, so all writes go through one writer connection
+ * guarded by a lock, while reads borrow one of several reader connections from a pool and
+ * can run in parallel. Every connection caches its prepared statements, and every result
+ * set is closed as soon as it has been read.
+ * <p>
+ * The database runs in WAL journal mode so readers never block on the writer, and the
+ * Event table is indexed on the columns every lobby query filters on. The schema is brought
+ * up to date at startup by the {@link SchemaMigrator}.
+ */
 public class DatabaseHelper {
 
     /**
@@ -71,86 +90,423 @@ public class DatabaseHelper {
      */
     private final String COL_MOVE = "move";
 
+    /**
+     * Column name for event's board
+     */
+    private final String COL_BOARD = "board";
+
+    /**
+     * Table name for moves
+     */
+    private final String TABLE_MOVE = "Move";
+
+    /**
+     * Column name for move's number in its game
+     */
+    private final String COL_PLY = "ply";
+
+    /**
+     * Column name for move's player
+     */
+    private final String COL_PLAYER = "player";
+
+    /**
+     * Column name for move's cell
+     */
+    private final String COL_CELL = "cell";
+
+    /**
+     * Column name for move's time
+     */
+    private final String COL_TIMESTAMP = "timestamp";
+
+    /**
+     * Table name for players' game results
+     */
+    private final String TABLE_STATS = "UserStats";
+
+    /**
+     * Column name for player's number of wins
+     */
+    private final String COL_WINS = "wins";
+
+    /**
+     * Column name for player's number of losses
+     */
+    private final String COL_LOSSES = "losses";
+
+    /**
+     * Column name for player's number of draws
+     */
+    private final String COL_DRAWS = "draws";
+
+    /**
+     * Column name for player's number of aborted games
+     */
+    private final String COL_ABORTS = "aborts";
+
+    /**
+     * Column name for player's Elo rating
+     */
+    private final String COL_RATING = "rating";
+
+    /**
+     * The condition matching finished events, written as literals so queries can use the
+     * partial indexes built on it
+     */
+    private final String FINISHED_EVENT = COL_STATUS + " IN ('" + Event.EventStatus.COMPLETED.name()
+            + "', '" + Event.EventStatus.ABORTED.name() + "')";
+
+
+    /**
+     * The database file path, TicTacToe.db unless set with the {@code tictactoe.db} system property
+     */
+    private static final String DB_PATH = "jdbc:sqlite:" + System.getProperty("tictactoe.db", "TicTacToe.db");
+
+    /**
+     * Number of reader connections in the pool
+     */
+    private static final int READER_POOL_SIZE = 4;
+
+    /**
+     * Longest time in milliseconds to wait for a pooled connection or a locked database
+     */
+    private static final int BUSY_TIMEOUT = 5000;
+
+    /**
+     * Page cache size of each connection in KiB
+     */
+    private static final int CACHE_SIZE_KB = 16 * 1024;
+
+    /**
+     * Maximum number of bytes of the database file each connection memory-maps
+     */
+    private static final long MMAP_SIZE = 256L * 1024 * 1024;
+
+    /**
+     * Store the connection used for every write
+     */
+    private PooledConnection writer;
+
+    /**
+     * Makes sure only one thread uses the writer connection at a time
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * Store the idle reader connections
+     */
+    private final BlockingQueue<PooledConnection> readers = new ArrayBlockingQueue<>(READER_POOL_SIZE);
 
     /**
-     * Stores the only class instance
+     * The number of threads waiting for an idle reader connection
      */
-    private static DatabaseHelper instance;
+    private final AtomicInteger waitingReaders = new AtomicInteger();
 
     /**
-     * Store the database connection
+     * Logger for database errors
      */
-    private Connection connection;
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseHelper.class);
+
+    /**
+     * Lazily holds the only class instance. The JVM initializes the holder class once on first
+     * use, so {@link #getInstance()} needs no lock and never pins a virtual thread.
+     */
+    private static class InstanceHolder {
+        private static final DatabaseHelper INSTANCE = new DatabaseHelper();
+    }
 
     /**
      * A getter for the singleton class
      * @return An instance of DatabaseHelper class
      */
-    public static synchronized DatabaseHelper getInstance() {
-        if(instance == null){
-            instance = new DatabaseHelper();
-        }
-        return instance;
+    public static DatabaseHelper getInstance() {
+        return InstanceHolder.INSTANCE;
     }
 
     /**
      * A private constructor
      */
     private DatabaseHelper() {
-        Logger logger = Logger.getLogger(DatabaseHelper.class.getName());
         try {
             //Connect to the database or create a new db file
-            String DB_PATH = "jdbc:sqlite:TicTacToe.db";
-            connection = DriverManager.getConnection(DB_PATH);
-            createTables();
-            logger.log(Level.INFO, "Database Has Been Created");
+            writer = openConnection();
+            enableWriteAheadLog();
+            new SchemaMigrator(writer.getConnection(), getMigrations()).migrate();
+            for (int i = 0; i < READER_POOL_SIZE; i++) {
+                readers.add(openConnection());
+            }
+            LOGGER.info("Database Has Been Created");
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, "A SQL Exception Has Occurred", e);
+            LOGGER.error("A SQL Exception Has Occurred", e);
         } catch (Exception e) {
-            logger.log(Level.SEVERE, "An Unknown DB Exception Has Occurred", e);
+            LOGGER.error("An Unknown DB Exception Has Occurred", e);
+        }
+
+    }
+
+    /**
+     * Opens a new connection to the database
+     * @return the new connection
+     * @throws SQLException if database error occurs
+     */
+    private PooledConnection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(DB_PATH);
+        try (Statement statement = connection.createStatement()) {
+            // Wait for the writer instead of failing when the database is locked
+            statement.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT + ";");
+            // In WAL mode, syncing at checkpoints only is safe against corruption and much faster
+            statement.execute("PRAGMA synchronous = NORMAL;");
+            // A negative cache size is in KiB rather than pages
+            statement.execute("PRAGMA cache_size = -" + CACHE_SIZE_KB + ";");
+            statement.execute("PRAGMA mmap_size = " + MMAP_SIZE + ";");
+        }
+        return new PooledConnection(connection);
+    }
+
+    /**
+     * A unit of database work run on a pooled connection
+     * @param <T> the type of the result
+     */
+    private interface SqlWork<T> {
+        T run(PooledConnection connection) throws SQLException;
+    }
+
+    /**
+     * Runs read-only work on a reader connection borrowed from the pool, and records the time it
+     * took, including the wait for a connection, in the {@link ServerMetrics}
+     * @param method the name of the method running the work
+     * @param work the work to run
+     * @return the result of the work
+     * @throws SQLException if database error occurs or no connection is available
+     */
+    private <T> T read(String method, SqlWork<T> work) throws SQLException {
+        if (writer == null) {
+            throw new SQLException("Database is not available");
+        }
+
+        long start = System.nanoTime();
+        PooledConnection connection = readers.poll();
+        if (connection == null) {
+            waitingReaders.incrementAndGet();
+            try {
+                connection = readers.poll(BUSY_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            } finally {
+                waitingReaders.decrementAndGet();
+            }
+        }
+        if (connection == null) {
+            throw new SQLException("Timed out waiting for a database connection");
         }
 
+        try {
+            return work.run(connection);
+        } finally {
+            readers.add(connection);
+            ServerMetrics.getInstance().recordDatabase(method, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Runs work that changes the database on the writer connection, and records the time it
+     * took, including the wait for the writer, in the {@link ServerMetrics}
+     * @param method the name of the method running the work
+     * @param work the work to run
+     * @return the result of the work
+     * @throws SQLException if database error occurs
+     */
+    private <T> T write(String method, SqlWork<T> work) throws SQLException {
+        if (writer == null) {
+            throw new SQLException("Database is not available");
+        }
+
+        long start = System.nanoTime();
+        writeLock.lock();
+        try {
+            return work.run(writer);
+        } finally {
+            writeLock.unlock();
+            ServerMetrics.getInstance().recordDatabase(method, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns the number of reader connections in the pool
+     * @return the size of the reader pool
+     */
+    public int getReaderPoolSize() {
+        return READER_POOL_SIZE;
     }
 
+    /**
+     * Returns the number of reader connections not borrowed at the moment
+     * @return the number of idle reader connections
+     */
+    public int getIdleReaderCount() {
+        return readers.size();
+    }
+
+    /**
+     * Returns the number of threads waiting for an idle reader connection
+     * @return the number of waiting readers
+     */
+    public int getWaitingReaderCount() {
+        return waitingReaders.get();
+    }
+
+    /**
+     * Returns an estimate of the number of threads waiting for the writer connection
+     * @return the number of waiting writers
+     */
+    public int getWaitingWriterCount() {
+        return writeLock.getQueueLength();
+    }
+
+    /**
+     * Builds an {@link Event} from the current row of a result set
+     * @param rs the result set positioned on an event row
+     * @return an object of {@link Event} class
+     * @throws SQLException if database error occurs
+     */
+    private Event toEvent(ResultSet rs) throws SQLException {
+        return new Event(
+                rs.getInt(COL_EVENT_ID),
+                rs.getString(COL_SENDER),
+                rs.getString(COL_OPPONENT),
+                Event.EventStatus.valueOf(rs.getString(COL_STATUS)),
+                rs.getString(COL_TURN),
+                rs.getInt(COL_MOVE),
+                rs.getInt(COL_BOARD)
+        );
+    }
 
     /**
      * Truncate Database data
      */
     public void truncateTables() throws SQLException {
-        //Truncate User table
-        String sql  = "DELETE FROM " + TABLE_USER + ";";
-        connection.createStatement().executeUpdate(sql);
+        write("truncateTables", connection -> {
+            try (Statement statement = connection.getConnection().createStatement()) {
+                //Truncate User table
+                statement.executeUpdate("DELETE FROM " + TABLE_USER + ";");
+
+                //Truncate UserStats table
+                statement.executeUpdate("DELETE FROM " + TABLE_STATS + ";");
 
-        //Truncate Event table
-        sql  = "DELETE FROM " + TABLE_EVENT + ";";
-        connection.createStatement().executeUpdate(sql);
+                //Truncate Move table
+                statement.executeUpdate("DELETE FROM " + TABLE_MOVE + ";");
+
+                //Truncate Event table
+                statement.executeUpdate("DELETE FROM " + TABLE_EVENT + ";");
+            }
+            return null;
+        });
     }
 
     /**
-     * Create Database Tables if they do not already exist
+     * Returns every schema migration, in version order. The first migration creates the tables
+     * with {@code IF NOT EXISTS} so databases created before versioning are adopted as version 1.
+     * @return the list of {@link Migration}
      */
-    private void createTables() throws SQLException {
-        //Creating User table
-        String sql  = "CREATE TABLE IF NOT EXISTS " + TABLE_USER + " ("
-                + COL_USERNAME + " TEXT PRIMARY KEY, "
-                + COL_PASSWORD + " TEXT, "
-                + COL_DISPLAY_NAME + " TEXT, "
-                + COL_ONLINE + " TEXT" +
-                ");";
-        connection.createStatement().executeUpdate(sql);
+    private List<Migration> getMigrations() {
+        return List.of(
+                new Migration(1, "Create User and Event tables",
+                        "CREATE TABLE IF NOT EXISTS " + TABLE_USER + " ("
+                                + COL_USERNAME + " TEXT PRIMARY KEY, "
+                                + COL_PASSWORD + " TEXT, "
+                                + COL_DISPLAY_NAME + " TEXT, "
+                                + COL_ONLINE + " TEXT" +
+                                ");",
+                        "CREATE TABLE IF NOT EXISTS " + TABLE_EVENT + " ("
+                                + COL_EVENT_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                                + COL_SENDER + " TEXT, "
+                                + COL_OPPONENT + " TEXT, "
+                                + COL_STATUS + " TEXT, "
+                                + COL_TURN + " TEXT, "
+                                + COL_MOVE + " INTEGER, "
+                                + "FOREIGN KEY(" + COL_SENDER + ") REFERENCES " + TABLE_USER + "(" + COL_USERNAME + "),"
+                                + "FOREIGN KEY(" + COL_OPPONENT + ") REFERENCES " + TABLE_USER + "(" + COL_USERNAME + ")"
+                                + ");"),
+                new Migration(2, "Index Event by opponent and sender status and User by online status",
+                        //Invitations received and availability as opponent
+                        "CREATE INDEX IF NOT EXISTS idx_event_opponent_status ON "
+                                + TABLE_EVENT + "(" + COL_OPPONENT + ", " + COL_STATUS + ");",
+                        //Invitation responses and availability as sender
+                        "CREATE INDEX IF NOT EXISTS idx_event_sender_status ON "
+                                + TABLE_EVENT + "(" + COL_SENDER + ", " + COL_STATUS + ");",
+                        //Online users, a small fraction of all registered users
+                        "CREATE INDEX IF NOT EXISTS idx_user_online ON "
+                                + TABLE_USER + "(" + COL_ONLINE + ");"),
+                new Migration(3, "Store User online status as INTEGER",
+                        //SQLite cannot change a column type, so the table is rebuilt
+                        "CREATE TABLE " + TABLE_USER + "_new ("
+                                + COL_USERNAME + " TEXT PRIMARY KEY, "
+                                + COL_PASSWORD + " TEXT, "
+                                + COL_DISPLAY_NAME + " TEXT, "
+                                + COL_ONLINE + " INTEGER NOT NULL DEFAULT 0" +
+                                ");",
+                        "INSERT INTO " + TABLE_USER + "_new"
+                                + " SELECT " + COL_USERNAME + ", " + COL_PASSWORD + ", " + COL_DISPLAY_NAME + ", "
+                                + "CASE WHEN " + COL_ONLINE + " IN (1, '1', 'true') THEN 1 ELSE 0 END"
+                                + " FROM " + TABLE_USER + ";",
+                        "DROP TABLE " + TABLE_USER + ";",
+                        "ALTER TABLE " + TABLE_USER + "_new RENAME TO " + TABLE_USER + ";",
+                        "CREATE INDEX IF NOT EXISTS idx_user_online ON "
+                                + TABLE_USER + "(" + COL_ONLINE + ");"),
+                new Migration(4, "Stop persisting User online status",
+                        //Presence is kept in memory by PresenceRegistry, stale rows would never be cleared
+                        "UPDATE " + TABLE_USER + " SET " + COL_ONLINE + " = 0;",
+                        "DROP INDEX IF EXISTS idx_user_online;"),
+                new Migration(5, "Store the board of Event",
+                        //Games in progress before the upgrade keep an empty board and cannot be validated
+                        "ALTER TABLE " + TABLE_EVENT + " ADD COLUMN " + COL_BOARD + " INTEGER NOT NULL DEFAULT 0;"),
+                new Migration(6, "Create Move table",
+                        //Append-only, the moves of a game are read back in order by its primary key
+                        "CREATE TABLE IF NOT EXISTS " + TABLE_MOVE + " ("
+                                + COL_EVENT_ID + " INTEGER NOT NULL, "
+                                + COL_PLY + " INTEGER NOT NULL, "
+                                + COL_PLAYER + " TEXT NOT NULL, "
+                                + COL_CELL + " INTEGER NOT NULL, "
+                                + COL_TIMESTAMP + " INTEGER NOT NULL, "
+                                + "PRIMARY KEY(" + COL_EVENT_ID + ", " + COL_PLY + "),"
+                                + "FOREIGN KEY(" + COL_EVENT_ID + ") REFERENCES " + TABLE_EVENT + "(" + COL_EVENT_ID + ")"
+                                + ") WITHOUT ROWID;"),
+                new Migration(7, "Create UserStats table and index finished Event by player",
+                        "CREATE TABLE IF NOT EXISTS " + TABLE_STATS + " ("
+                                + COL_USERNAME + " TEXT PRIMARY KEY, "
+                                + COL_WINS + " INTEGER NOT NULL DEFAULT 0, "
+                                + COL_LOSSES + " INTEGER NOT NULL DEFAULT 0, "
+                                + COL_DRAWS + " INTEGER NOT NULL DEFAULT 0, "
+                                + COL_ABORTS + " INTEGER NOT NULL DEFAULT 0, "
+                                + "FOREIGN KEY(" + COL_USERNAME + ") REFERENCES " + TABLE_USER + "(" + COL_USERNAME + ")"
+                                + ") WITHOUT ROWID;",
+                        //Leaderboard pages, read in index order
+                        "CREATE INDEX IF NOT EXISTS idx_stats_wins ON "
+                                + TABLE_STATS + "(" + COL_WINS + " DESC, " + COL_USERNAME + ");",
+                        //History pages as sender and as opponent, read in index order
+                        "CREATE INDEX IF NOT EXISTS idx_event_sender_finished ON "
+                                + TABLE_EVENT + "(" + COL_SENDER + ", " + COL_EVENT_ID + ") WHERE " + FINISHED_EVENT + ";",
+                        "CREATE INDEX IF NOT EXISTS idx_event_opponent_finished ON "
+                                + TABLE_EVENT + "(" + COL_OPPONENT + ", " + COL_EVENT_ID + ") WHERE " + FINISHED_EVENT + ";"),
+                new Migration(8, "Add rating column to UserStats",
+                        "ALTER TABLE " + TABLE_STATS + " ADD COLUMN " + COL_RATING
+                                + " INTEGER NOT NULL DEFAULT " + PlayerStats.INITIAL_RATING + ";")
+        );
+    }
 
-        //Creating Event table
-        sql  = "CREATE TABLE IF NOT EXISTS " + TABLE_EVENT + " ("
-                + COL_EVENT_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
-                + COL_SENDER + " TEXT, "
-                + COL_OPPONENT + " TEXT, "
-                + COL_STATUS + " TEXT, "
-                + COL_TURN + " TEXT, "
-                + COL_MOVE + " INTEGER, "
-                + "FOREIGN KEY(" + COL_SENDER + ") REFERENCES " + TABLE_USER + "(" + COL_USERNAME + "),"
-                + "FOREIGN KEY(" + COL_OPPONENT + ") REFERENCES " + TABLE_USER + "(" + COL_USERNAME + ")"
-                +");";
-        connection.createStatement().executeUpdate(sql);
+    /**
+     * Switch the database to WAL journal mode so reads do not block on writes.
+     * The journal mode is stored in the database file, so this only changes it once.
+     */
+    private void enableWriteAheadLog() throws SQLException {
+        try (Statement statement = writer.getConnection().createStatement();
+             ResultSet rs = statement.executeQuery("PRAGMA journal_mode = WAL;")) {
+            if (rs.next() && !"wal".equalsIgnoreCase(rs.getString(1))) {
+                LOGGER.warn("Could not enable WAL journal mode, using {}", rs.getString(1));
+            }
+        }
     }
 
     /**
@@ -160,14 +516,17 @@ public class DatabaseHelper {
      * @throws SQLException if database error occurs
      */
     public boolean isUsernameExists(String username) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement("SELECT " + COL_USERNAME
-                + " FROM " + TABLE_USER
-                + " WHERE " + COL_USERNAME
-                + " = ?;");
+        return read("isUsernameExists", connection -> {
+            PreparedStatement statement = connection.prepare("SELECT " + COL_USERNAME
+                    + " FROM " + TABLE_USER
+                    + " WHERE " + COL_USERNAME
+                    + " = ?;");
 
-        statement.setString(1, username);
-        ResultSet rs = statement.executeQuery();
-        return rs.next();
+            statement.setString(1, username);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next();
+            }
+        });
     }
 
     /**
@@ -176,15 +535,17 @@ public class DatabaseHelper {
      * @throws SQLException if database error occurs
      */
     public void createUser(User user) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(
-                "INSERT INTO " + TABLE_USER +
-                        "(" + COL_USERNAME + "," + COL_PASSWORD + "," + COL_DISPLAY_NAME + "," + COL_ONLINE + ") " +
-                        "VALUES(?, ?, ?, ?);");
-        statement.setString(1, user.getUsername());
-        statement.setString(2, user.getPassword());
-        statement.setString(3, user.getDisplayName());
-        statement.setBoolean(4, user.isOnline());
-        statement.executeUpdate();
+        write("createUser", connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "INSERT INTO " + TABLE_USER +
+                            "(" + COL_USERNAME + "," + COL_PASSWORD + "," + COL_DISPLAY_NAME + "," + COL_ONLINE + ") " +
+                            "VALUES(?, ?, ?, ?);");
+            statement.setString(1, user.getUsername());
+            statement.setString(2, user.getPassword());
+            statement.setString(3, user.getDisplayName());
+            statement.setBoolean(4, user.isOnline());
+            return statement.executeUpdate();
+        });
     }
 
     /**
@@ -194,23 +555,26 @@ public class DatabaseHelper {
      * @throws SQLException if database error occurs
      */
     public User getUser(String username) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(
-                "SELECT * FROM " + TABLE_USER
-                        + " WHERE " + COL_USERNAME + " = ?;"
-        );
-
-        statement.setString(1, username);
-        ResultSet rs = statement.executeQuery();
-        if(rs.next()) {
-            return new User(
-                    rs.getString(COL_USERNAME),
-                    rs.getString(COL_PASSWORD),
-                    rs.getString(COL_DISPLAY_NAME),
-                    rs.getBoolean(COL_ONLINE)
+        return read("getUser", connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "SELECT * FROM " + TABLE_USER
+                            + " WHERE " + COL_USERNAME + " = ?;"
             );
-        }else{
-            return null;
-        }
+
+            statement.setString(1, username);
+            try (ResultSet rs = statement.executeQuery()) {
+                if(rs.next()) {
+                    return new User(
+                            rs.getString(COL_USERNAME),
+                            rs.getString(COL_PASSWORD),
+                            rs.getString(COL_DISPLAY_NAME),
+                            rs.getBoolean(COL_ONLINE)
+                    );
+                }else{
+                    return null;
+                }
+            }
+        });
     }
 
     /**
@@ -219,18 +583,20 @@ public class DatabaseHelper {
      * @throws SQLException if database error occurs
      */
     public void updateUser(User user) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(
-                "UPDATE " + TABLE_USER + " SET "
-                        + COL_PASSWORD + " = ?, "
-                        + COL_DISPLAY_NAME + " = ?, "
-                        + COL_ONLINE + " = ? " +
-                        "WHERE " + COL_USERNAME +" = ?;"
-        );
-        statement.setString(1, user.getPassword());
-        statement.setString(2, user.getDisplayName());
-        statement.setBoolean(3, user.isOnline());
-        statement.setString(4, user.getUsername());
-        statement.executeUpdate();
+        write("updateUser", connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "UPDATE " + TABLE_USER + " SET "
+                            + COL_PASSWORD + " = ?, "
+                            + COL_DISPLAY_NAME + " = ?, "
+                            + COL_ONLINE + " = ? " +
+                            "WHERE " + COL_USERNAME +" = ?;"
+            );
+            statement.setString(1, user.getPassword());
+            statement.setString(2, user.getDisplayName());
+            statement.setBoolean(3, user.isOnline());
+            statement.setString(4, user.getUsername());
+            return statement.executeUpdate();
+        });
     }
 
     /**
@@ -242,35 +608,42 @@ public class DatabaseHelper {
      * @param username the username of the user looking for available users
      * @return a list of {@link User}
      * @throws SQLException if database error occurs
+     * @deprecated the online status is no longer persisted, use {@link PresenceRegistry#getAvailableUsers(String)}
      */
+    @Deprecated
     public List<User> getAvailableUsers(String username) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(
-                "SELECT * FROM " + TABLE_USER
-                        + " WHERE " + COL_USERNAME + " != ?"
-                        + " AND " + COL_ONLINE + " = ?"
-                        + " AND (SELECT COUNT() FROM " + TABLE_EVENT
-                        + " WHERE (" + COL_OPPONENT + " = " + COL_USERNAME
-                        + " OR " + COL_SENDER + " = "+ COL_USERNAME + ") "
-                        + " AND " + COL_STATUS + " IN (?,?)"
-                        + ") = ?;"
-        );
+        return read("getAvailableUsers", connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "SELECT * FROM " + TABLE_USER + " u"
+                            + " WHERE u." + COL_USERNAME + " != ?"
+                            + " AND u." + COL_ONLINE + " = ?"
+                            + " AND NOT EXISTS (SELECT 1 FROM " + TABLE_EVENT
+                            + " WHERE " + COL_OPPONENT + " = u." + COL_USERNAME
+                            + " AND " + COL_STATUS + " IN (?,?))"
+                            + " AND NOT EXISTS (SELECT 1 FROM " + TABLE_EVENT
+                            + " WHERE " + COL_SENDER + " = u." + COL_USERNAME
+                            + " AND " + COL_STATUS + " IN (?,?));"
+            );
 
-        statement.setString(1, username);
-        statement.setBoolean(2, true);
-        statement.setString(3, Event.EventStatus.PLAYING.name());
-        statement.setString(4, Event.EventStatus.ACCEPTED.name());
-        statement.setInt(5, 0);
-        ResultSet rs = statement.executeQuery();
-        List<User> users = new ArrayList<>();
-        while(rs.next()) {
-            users.add(new User(
-                    rs.getString(COL_USERNAME),
-                    "",//Hidden
-                    rs.getString(COL_DISPLAY_NAME),
-                    rs.getBoolean(COL_ONLINE)
-            ));
-        }
-        return users;
+            statement.setString(1, username);
+            statement.setBoolean(2, true);
+            statement.setString(3, Event.EventStatus.PLAYING.name());
+            statement.setString(4, Event.EventStatus.ACCEPTED.name());
+            statement.setString(5, Event.EventStatus.PLAYING.name());
+            statement.setString(6, Event.EventStatus.ACCEPTED.name());
+            try (ResultSet rs = statement.executeQuery()) {
+                List<User> users = new ArrayList<>();
+                while(rs.next()) {
+                    users.add(new User(
+                            rs.getString(COL_USERNAME),
+                            "",//Hidden
+                            rs.getString(COL_DISPLAY_NAME),
+                            rs.getBoolean(COL_ONLINE)
+                    ));
+                }
+                return users;
+            }
+        });
     }
 
     /**
@@ -283,36 +656,89 @@ public class DatabaseHelper {
      * @throws SQLException if database error occurs
      */
     public boolean isUserAvailable(String username) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(
-                "SELECT * FROM " + TABLE_EVENT
-                        + " WHERE (" + COL_OPPONENT + " = ? OR " + COL_SENDER + " = ?) "
-                        + " AND " + COL_STATUS + " IN (?,?);"
-        );
+        return read("isUserAvailable", connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "SELECT 1 FROM " + TABLE_EVENT
+                            + " WHERE (" + COL_OPPONENT + " = ? OR " + COL_SENDER + " = ?) "
+                            + " AND " + COL_STATUS + " IN (?,?) LIMIT 1;"
+            );
 
-        statement.setString(1, username);
-        statement.setString(2, username);
-        statement.setString(3, Event.EventStatus.PLAYING.name());
-        statement.setString(4, Event.EventStatus.ACCEPTED.name());
-        ResultSet rs = statement.executeQuery();
-        return !rs.next();
+            statement.setString(1, username);
+            statement.setString(2, username);
+            statement.setString(3, Event.EventStatus.PLAYING.name());
+            statement.setString(4, Event.EventStatus.ACCEPTED.name());
+            try (ResultSet rs = statement.executeQuery()) {
+                return !rs.next();
+            }
+        });
     }
 
     /**
-     * Creates a new event in the database
+     * Creates a new event in the database and sets its autogenerated eventId
      * @param event The event to create
      * @throws SQLException if database error occurs
      */
     public void createEvent(Event event) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(("INSERT INTO " + TABLE_EVENT
-                + "(" + COL_SENDER + "," + COL_OPPONENT + ","
-                +  COL_STATUS + "," +  COL_TURN + "," +  COL_MOVE + ") " +
-                "VALUES(?, ?, ?, ?, ?);"));
-        statement.setString(1, event.getSender());
-        statement.setString(2, event.getOpponent());
-        statement.setString(3, event.getStatus().name());
-        statement.setString(4, event.getTurn());
-        statement.setInt(5, event.getMove());
-        statement.executeUpdate();
+        write("createEvent", connection -> {
+            PreparedStatement statement = connection.prepare(("INSERT INTO " + TABLE_EVENT
+                    + "(" + COL_SENDER + "," + COL_OPPONENT + ","
+                    +  COL_STATUS + "," +  COL_TURN + "," +  COL_MOVE + "," +  COL_BOARD + ") " +
+                    "VALUES(?, ?, ?, ?, ?, ?) RETURNING " + COL_EVENT_ID + ";"));
+            statement.setString(1, event.getSender());
+            statement.setString(2, event.getOpponent());
+            statement.setString(3, event.getStatus().name());
+            statement.setString(4, event.getTurn());
+            statement.setInt(5, event.getMove());
+            statement.setInt(6, event.getBoard());
+
+            // The SQLite driver does not return generated keys, the eventId is read with RETURNING
+            try (ResultSet keys = statement.executeQuery()) {
+                if(keys.next()) {
+                    event.setEventId(keys.getInt(1));
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Creates several events in a single transaction and sets their autogenerated eventIds
+     * @param events The events to create
+     * @throws SQLException if database error occurs
+     */
+    public void createEvents(List<Event> events) throws SQLException {
+        write("createEvents", connection -> {
+            PreparedStatement statement = connection.prepare(("INSERT INTO " + TABLE_EVENT
+                    + "(" + COL_SENDER + "," + COL_OPPONENT + ","
+                    +  COL_STATUS + "," +  COL_TURN + "," +  COL_MOVE + "," +  COL_BOARD + ") " +
+                    "VALUES(?, ?, ?, ?, ?, ?) RETURNING " + COL_EVENT_ID + ";"));
+
+            // RETURNING cannot be batched, the inserts are rather grouped in one transaction
+            Connection transaction = connection.getConnection();
+            transaction.setAutoCommit(false);
+            try {
+                for (Event event : events) {
+                    statement.setString(1, event.getSender());
+                    statement.setString(2, event.getOpponent());
+                    statement.setString(3, event.getStatus().name());
+                    statement.setString(4, event.getTurn());
+                    statement.setInt(5, event.getMove());
+                    statement.setInt(6, event.getBoard());
+                    try (ResultSet keys = statement.executeQuery()) {
+                        if (keys.next()) {
+                            event.setEventId(keys.getInt(1));
+                        }
+                    }
+                }
+                transaction.commit();
+            } catch (SQLException e) {
+                transaction.rollback();
+                throw e;
+            } finally {
+                transaction.setAutoCommit(true);
+            }
+            return null;
+        });
     }
 
     /**
@@ -322,25 +748,17 @@ public class DatabaseHelper {
      * @throws SQLException if database error occurs
      */
     public Event getEvent(int eventId) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(
-                "SELECT * FROM " + TABLE_EVENT
-                        + " WHERE " + COL_EVENT_ID + " = ?;"
-        );
-
-        statement.setInt(1, eventId);
-        ResultSet rs = statement.executeQuery();
-        if(rs.next()) {
-            return new Event(
-                    rs.getInt(COL_EVENT_ID),
-                    rs.getString(COL_SENDER),
-                    rs.getString(COL_OPPONENT),
-                    Event.EventStatus.valueOf(rs.getString(COL_STATUS)),
-                    rs.getString(COL_TURN),
-                    rs.getInt(COL_MOVE)
+        return read("getEvent", connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "SELECT * FROM " + TABLE_EVENT
+                            + " WHERE " + COL_EVENT_ID + " = ?;"
             );
-        }else{
-            return null;
-        }
+
+            statement.setInt(1, eventId);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? toEvent(rs) : null;
+            }
+        });
     }
 
     /**
@@ -349,18 +767,93 @@ public class DatabaseHelper {
      * @throws SQLException if database error occurs
      */
     public void updateEvent(Event event) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(
-                "UPDATE " + TABLE_EVENT + " SET "
-                        + COL_STATUS + " = ?, "
-                        + COL_TURN + " = ?, "
-                        + COL_MOVE + " = ? " +
-                        "WHERE " + COL_EVENT_ID +" = ?;"
-        );
-        statement.setString(1, event.getStatus().name());
-        statement.setString(2, event.getTurn());
-        statement.setInt(3, event.getMove());
-        statement.setInt(4, event.getEventId());
-        statement.executeUpdate();
+        write("updateEvent", connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "UPDATE " + TABLE_EVENT + " SET "
+                            + COL_STATUS + " = ?, "
+                            + COL_TURN + " = ?, "
+                            + COL_MOVE + " = ?, "
+                            + COL_BOARD + " = ? " +
+                            "WHERE " + COL_EVENT_ID +" = ?;"
+            );
+            statement.setString(1, event.getStatus().name());
+            statement.setString(2, event.getTurn());
+            statement.setInt(3, event.getMove());
+            statement.setInt(4, event.getBoard());
+            statement.setInt(5, event.getEventId());
+            return statement.executeUpdate();
+        });
+    }
+
+    /**
+     * Updates several events in a single transaction. All attributes are updated except eventId
+     * @param events The events to update
+     * @throws SQLException if database error occurs
+     */
+    public void updateEvents(Collection<Event> events) throws SQLException {
+        write("updateEvents", connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "UPDATE " + TABLE_EVENT + " SET "
+                            + COL_STATUS + " = ?, "
+                            + COL_TURN + " = ?, "
+                            + COL_MOVE + " = ?, "
+                            + COL_BOARD + " = ? " +
+                            "WHERE " + COL_EVENT_ID +" = ?;"
+            );
+            for (Event event : events) {
+                statement.setString(1, event.getStatus().name());
+                statement.setString(2, event.getTurn());
+                statement.setInt(3, event.getMove());
+                statement.setInt(4, event.getBoard());
+                statement.setInt(5, event.getEventId());
+                statement.addBatch();
+            }
+
+            Connection transaction = connection.getConnection();
+            transaction.setAutoCommit(false);
+            try {
+                statement.executeBatch();
+                transaction.commit();
+            } catch (SQLException e) {
+                statement.clearBatch();
+                transaction.rollback();
+                throw e;
+            } finally {
+                transaction.setAutoCommit(true);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Gets all events that are not finished yet.
+     * That is event with {@link Event.EventStatus} equal to:
+     * - {@link Event.EventStatus#PENDING}
+     * - {@link Event.EventStatus#ACCEPTED}
+     * - {@link Event.EventStatus#DECLINED}
+     * - {@link Event.EventStatus#PLAYING}
+     * @return a list of {@link Event}
+     * @throws SQLException if database error occurs
+     */
+    public List<Event> getActiveEvents() throws SQLException {
+        return read("getActiveEvents", connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "SELECT * FROM " + TABLE_EVENT
+                            + " WHERE " + COL_STATUS + " IN (?,?,?,?);"
+            );
+
+            statement.setString(1, Event.EventStatus.PENDING.name());
+            statement.setString(2, Event.EventStatus.ACCEPTED.name());
+            statement.setString(3, Event.EventStatus.DECLINED.name());
+            statement.setString(4, Event.EventStatus.PLAYING.name());
+            try (ResultSet rs = statement.executeQuery()) {
+                List<Event> events = new ArrayList<>();
+                while(rs.next()) {
+                    events.add(toEvent(rs));
+                }
+                return events;
+            }
+        });
     }
 
     /**
@@ -374,21 +867,23 @@ public class DatabaseHelper {
      * @throws SQLException if database error occurs
      */
     public void abortAllUserEvents(String username) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(
-                "UPDATE " + TABLE_EVENT +
-                        " SET " + COL_STATUS + " = ?" +
-                        " WHERE (" + COL_SENDER +" = ?" +
-                        " OR " + COL_OPPONENT +" = ?)" +
-                        " AND " + COL_STATUS + " IN (?,?,?,?);"
-        );
-        statement.setString(1, Event.EventStatus.ABORTED.name());
-        statement.setString(2, username);
-        statement.setString(3, username);
-        statement.setString(4, Event.EventStatus.PENDING.name());
-        statement.setString(5, Event.EventStatus.ACCEPTED.name());
-        statement.setString(6, Event.EventStatus.DECLINED.name());
-        statement.setString(7, Event.EventStatus.PLAYING.name());
-        statement.executeUpdate();
+        write("abortAllUserEvents", connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "UPDATE " + TABLE_EVENT +
+                            " SET " + COL_STATUS + " = ?" +
+                            " WHERE (" + COL_SENDER +" = ?" +
+                            " OR " + COL_OPPONENT +" = ?)" +
+                            " AND " + COL_STATUS + " IN (?,?,?,?);"
+            );
+            statement.setString(1, Event.EventStatus.ABORTED.name());
+            statement.setString(2, username);
+            statement.setString(3, username);
+            statement.setString(4, Event.EventStatus.PENDING.name());
+            statement.setString(5, Event.EventStatus.ACCEPTED.name());
+            statement.setString(6, Event.EventStatus.DECLINED.name());
+            statement.setString(7, Event.EventStatus.PLAYING.name());
+            return statement.executeUpdate();
+        });
     }
 
     /**
@@ -398,26 +893,19 @@ public class DatabaseHelper {
      * @throws SQLException if database error occurs
      */
     public Event getUserInvitation(String username) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(
-                "SELECT * FROM " + TABLE_EVENT
-                        + " WHERE " + COL_OPPONENT + " = ?"
-                        + " AND " + COL_STATUS + " = ?;"
-        );
-
-        statement.setString(1, username);
-        statement.setString(2, Event.EventStatus.PENDING.name());
-        ResultSet rs = statement.executeQuery();
-        if(rs.next()) {
-            return new Event(
-                    rs.getInt(COL_EVENT_ID),
-                    rs.getString(COL_SENDER),
-                    rs.getString(COL_OPPONENT),
-                    Event.EventStatus.valueOf(rs.getString(COL_STATUS)),
-                    rs.getString(COL_TURN),
-                    rs.getInt(COL_MOVE)
+        return read("getUserInvitation", connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "SELECT * FROM " + TABLE_EVENT
+                            + " WHERE " + COL_OPPONENT + " = ?"
+                            + " AND " + COL_STATUS + " = ?;"
             );
-        }
-        return null;
+
+            statement.setString(1, username);
+            statement.setString(2, Event.EventStatus.PENDING.name());
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? toEvent(rs) : null;
+            }
+        });
     }
 
     /**
@@ -427,26 +915,270 @@ public class DatabaseHelper {
      * @throws SQLException if database error occurs
      */
     public Event getUserInvitationResponse(String username) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(
-                "SELECT * FROM " + TABLE_EVENT
-                        + " WHERE " + COL_SENDER + " = ?"
-                        + " AND " + COL_STATUS + " IN (?,?);"
-        );
+        return read("getUserInvitationResponse", connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "SELECT * FROM " + TABLE_EVENT
+                            + " WHERE " + COL_SENDER + " = ?"
+                            + " AND " + COL_STATUS + " IN (?,?);"
+            );
+
+            statement.setString(1, username);
+            statement.setString(2, Event.EventStatus.ACCEPTED.name());
+            statement.setString(3, Event.EventStatus.DECLINED.name());
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? toEvent(rs) : null;
+            }
+        });
+    }
+
+    /**
+     * Appends moves to the move log in a single transaction. Moves already recorded are
+     * skipped, so a batch can safely be written again after a failure.
+     * @param moves The moves to append
+     * @throws SQLException if database error occurs
+     */
+    public void insertMoves(Collection<Move> moves) throws SQLException {
+        write("insertMoves", connection -> {
+            PreparedStatement statement = connection.prepare("INSERT OR IGNORE INTO " + TABLE_MOVE
+                    + "(" + COL_EVENT_ID + "," + COL_PLY + "," + COL_PLAYER + ","
+                    + COL_CELL + "," + COL_TIMESTAMP + ") " +
+                    "VALUES(?, ?, ?, ?, ?);");
+            for (Move move : moves) {
+                statement.setInt(1, move.getEventId());
+                statement.setInt(2, move.getPly());
+                statement.setString(3, move.getPlayer());
+                statement.setInt(4, move.getCell());
+                statement.setLong(5, move.getTimestamp());
+                statement.addBatch();
+            }
 
-        statement.setString(1, username);
-        statement.setString(2, Event.EventStatus.ACCEPTED.name());
-        statement.setString(3, Event.EventStatus.DECLINED.name());
-        ResultSet rs = statement.executeQuery();
-        if(rs.next()) {
-            return new Event(
-                    rs.getInt(COL_EVENT_ID),
-                    rs.getString(COL_SENDER),
-                    rs.getString(COL_OPPONENT),
-                    Event.EventStatus.valueOf(rs.getString(COL_STATUS)),
-                    rs.getString(COL_TURN),
-                    rs.getInt(COL_MOVE)
+            Connection transaction = connection.getConnection();
+            transaction.setAutoCommit(false);
+            try {
+                statement.executeBatch();
+                transaction.commit();
+            } catch (SQLException e) {
+                statement.clearBatch();
+                transaction.rollback();
+                throw e;
+            } finally {
+                transaction.setAutoCommit(true);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Gets the moves of a game in the order they were played
+     * @param eventId The eventId of the game
+     * @return a list of {@link Move}, empty if no move was recorded
+     * @throws SQLException if database error occurs
+     */
+    public List<Move> getMoves(int eventId) throws SQLException {
+        return read("getMoves", connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "SELECT * FROM " + TABLE_MOVE
+                            + " WHERE " + COL_EVENT_ID + " = ?"
+                            + " ORDER BY " + COL_PLY + ";"
             );
-        }
-        return null;
+
+            statement.setInt(1, eventId);
+            try (ResultSet rs = statement.executeQuery()) {
+                List<Move> moves = new ArrayList<>();
+                while (rs.next()) {
+                    moves.add(new Move(
+                            rs.getInt(COL_EVENT_ID),
+                            rs.getInt(COL_PLY),
+                            rs.getString(COL_PLAYER),
+                            rs.getInt(COL_CELL),
+                            rs.getLong(COL_TIMESTAMP)
+                    ));
+                }
+                return moves;
+            }
+        });
+    }
+
+    /**
+     * Gets a page of the finished events of a user, most recent first. Pages are chained by
+     * eventId: the next page starts below the lowest eventId of the previous one, so every
+     * page is read straight from the indexes however deep it is.
+     * @param username The username of the user, as sender or opponent
+     * @param beforeEventId Only events with a lower eventId are returned
+     * @param limit The maximum number of events to return
+     * @return a list of {@link Event} with status {@link Event.EventStatus#COMPLETED} or
+     * {@link Event.EventStatus#ABORTED}, by decreasing eventId
+     * @throws SQLException if database error occurs
+     */
+    public List<Event> getFinishedEvents(String username, int beforeEventId, int limit) throws SQLException {
+        return read("getFinishedEvents", connection -> {
+            // Each side of the union reads at most a page from its partial index
+            PreparedStatement statement = connection.prepare(
+                    "SELECT * FROM (SELECT * FROM " + TABLE_EVENT
+                            + " WHERE " + COL_SENDER + " = ? AND " + FINISHED_EVENT + " AND " + COL_EVENT_ID + " < ?"
+                            + " ORDER BY " + COL_EVENT_ID + " DESC LIMIT ?)"
+                            + " UNION ALL"
+                            + " SELECT * FROM (SELECT * FROM " + TABLE_EVENT
+                            + " WHERE " + COL_OPPONENT + " = ? AND " + FINISHED_EVENT + " AND " + COL_EVENT_ID + " < ?"
+                            + " ORDER BY " + COL_EVENT_ID + " DESC LIMIT ?)"
+                            + " ORDER BY " + COL_EVENT_ID + " DESC LIMIT ?;"
+            );
+
+            statement.setString(1, username);
+            statement.setInt(2, beforeEventId);
+            statement.setInt(3, limit);
+            statement.setString(4, username);
+            statement.setInt(5, beforeEventId);
+            statement.setInt(6, limit);
+            statement.setInt(7, limit);
+            try (ResultSet rs = statement.executeQuery()) {
+                List<Event> events = new ArrayList<>();
+                while (rs.next()) {
+                    events.add(toEvent(rs));
+                }
+                return events;
+            }
+        });
+    }
+
+    /**
+     * Adds the results of finished games to the results of their players in a single
+     * transaction, creating the results of players who had none.
+     * @param changes The results to add, one per player
+     * @throws SQLException if database error occurs
+     */
+    public void addPlayerStats(Collection<PlayerStats> changes) throws SQLException {
+        write("addPlayerStats", connection -> {
+            PreparedStatement statement = connection.prepare("INSERT INTO " + TABLE_STATS
+                    + "(" + COL_USERNAME + "," + COL_WINS + "," + COL_LOSSES + ","
+                    + COL_DRAWS + "," + COL_ABORTS + ") " +
+                    "VALUES(?, ?, ?, ?, ?) ON CONFLICT(" + COL_USERNAME + ") DO UPDATE SET "
+                    + COL_WINS + " = " + COL_WINS + " + excluded." + COL_WINS + ", "
+                    + COL_LOSSES + " = " + COL_LOSSES + " + excluded." + COL_LOSSES + ", "
+                    + COL_DRAWS + " = " + COL_DRAWS + " + excluded." + COL_DRAWS + ", "
+                    + COL_ABORTS + " = " + COL_ABORTS + " + excluded." + COL_ABORTS + ";");
+            for (PlayerStats change : changes) {
+                statement.setString(1, change.getUsername());
+                statement.setInt(2, change.getWins());
+                statement.setInt(3, change.getLosses());
+                statement.setInt(4, change.getDraws());
+                statement.setInt(5, change.getAborts());
+                statement.addBatch();
+            }
+
+            Connection transaction = connection.getConnection();
+            transaction.setAutoCommit(false);
+            try {
+                statement.executeBatch();
+                transaction.commit();
+            } catch (SQLException e) {
+                statement.clearBatch();
+                transaction.rollback();
+                throw e;
+            } finally {
+                transaction.setAutoCommit(true);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Gets a page of the leaderboard: the players ranked by decreasing number of wins, ties
+     * broken by username. Pages are chained by the wins and username of the last player of
+     * the previous page, so every page is read straight from the index however deep it is.
+     * @param afterWins The number of wins of the last player of the previous page, or
+     *                  {@link Integer#MAX_VALUE} for the first page
+     * @param afterUsername The username of the last player of the previous page, or an empty
+     *                      string for the first page
+     * @param limit The maximum number of players to return
+     * @return a list of {@link PlayerStats} with display names, best first
+     * @throws SQLException if database error occurs
+     */
+    public List<PlayerStats> getLeaderboard(int afterWins, String afterUsername, int limit) throws SQLException {
+        return read("getLeaderboard", connection -> {
+            // The first condition bounds the index range, the second skips the previous page's ties
+            PreparedStatement statement = connection.prepare(
+                    "SELECT s.*, u." + COL_DISPLAY_NAME + " FROM " + TABLE_STATS + " s"
+                            + " JOIN " + TABLE_USER + " u ON u." + COL_USERNAME + " = s." + COL_USERNAME
+                            + " WHERE s." + COL_WINS + " <= ?"
+                            + " AND (s." + COL_WINS + " < ? OR s." + COL_USERNAME + " > ?)"
+                            + " ORDER BY s." + COL_WINS + " DESC, s." + COL_USERNAME
+                            + " LIMIT ?;"
+            );
+
+            statement.setInt(1, afterWins);
+            statement.setInt(2, afterWins);
+            statement.setString(3, afterUsername);
+            statement.setInt(4, limit);
+            try (ResultSet rs = statement.executeQuery()) {
+                List<PlayerStats> players = new ArrayList<>();
+                while (rs.next()) {
+                    players.add(new PlayerStats(
+                            rs.getString(COL_USERNAME),
+                            rs.getString(COL_DISPLAY_NAME),
+                            rs.getInt(COL_WINS),
+                            rs.getInt(COL_LOSSES),
+                            rs.getInt(COL_DRAWS),
+                            rs.getInt(COL_ABORTS),
+                            rs.getInt(COL_RATING)
+                    ));
+                }
+                return players;
+            }
+        });
+    }
+
+    /**
+     * Gets the Elo rating of a player
+     * @param username The username of the player
+     * @return the rating, or {@link PlayerStats#INITIAL_RATING} if the player has no results yet
+     * @throws SQLException if database error occurs
+     */
+    public int getRating(String username) throws SQLException {
+        return read("getRating", connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "SELECT " + COL_RATING + " FROM " + TABLE_STATS
+                            + " WHERE " + COL_USERNAME + " = ?;"
+            );
+
+            statement.setString(1, username);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : PlayerStats.INITIAL_RATING;
+            }
+        });
+    }
+
+    /**
+     * Sets the Elo ratings of players in a single transaction, creating the results of players
+     * who had none.
+     * @param ratings The new ratings, keyed by username
+     * @throws SQLException if database error occurs
+     */
+    public void setRatings(Map<String, Integer> ratings) throws SQLException {
+        write("setRatings", connection -> {
+            PreparedStatement statement = connection.prepare("INSERT INTO " + TABLE_STATS
+                    + "(" + COL_USERNAME + "," + COL_RATING + ") " +
+                    "VALUES(?, ?) ON CONFLICT(" + COL_USERNAME + ") DO UPDATE SET "
+                    + COL_RATING + " = excluded." + COL_RATING + ";");
+            for (Map.Entry<String, Integer> rating : ratings.entrySet()) {
+                statement.setString(1, rating.getKey());
+                statement.setInt(2, rating.getValue());
+                statement.addBatch();
+            }
+
+            Connection transaction = connection.getConnection();
+            transaction.setAutoCommit(false);
+            try {
+                statement.executeBatch();
+                transaction.commit();
+            } catch (SQLException e) {
+                statement.clearBatch();
+                transaction.rollback();
+                throw e;
+            } finally {
+                transaction.setAutoCommit(true);
+            }
+            return null;
+        });
     }
 }
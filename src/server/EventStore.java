@@ -0,0 +1,531 @@
+package server;
+
+import model.Board;
+import model.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * The authoritative, in-memory copy of every {@link Event} that is still in progress.
+ * All reads and changes made by {@link ServerHandler} go through this store, which writes
+ * the changes behind to the database in batches, one transaction per flush.
+ * <p>
+ * Only creating an event touches the database synchronously, since the database generates
+ * the eventId. Moves and status changes are flushed asynchronously every flush interval,
+ * which bounds how long a status change may remain only in memory. Finished events
+ * ({@link Event.EventStatus#COMPLETED} and {@link Event.EventStatus#ABORTED}) are evicted
+ * once they have been flushed, and are read back from the database if requested again.
+ * <p>
+ * Stored events are never changed in place: callers always receive copies, and every change
+ * replaces the stored event, so readers never observe a half-applied change.
+ */
+public class EventStore {
+
+    /**
+     * Logger for the event store.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventStore.class);
+
+    /**
+     * Lazily holds the only class instance.
+     */
+    private static class InstanceHolder {
+        private static final EventStore INSTANCE = new EventStore();
+    }
+
+    /**
+     * The events held in memory, keyed by eventId.
+     */
+    private final Map<Integer, Event> events = new ConcurrentHashMap<>();
+
+    /**
+     * The eventIds of the events held in memory, keyed by the username of both players.
+     */
+    private final Map<String, Set<Integer>> eventsByUser = new ConcurrentHashMap<>();
+
+    /**
+     * The eventIds of the events changed since the last flush.
+     */
+    private final Set<Integer> dirtyEvents = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Makes sure only one flush writes to the database at a time.
+     */
+    private final Lock flushLock = new ReentrantLock();
+
+    /**
+     * Runs the periodic flush, or null if flushing has not been started.
+     */
+    private ScheduledExecutorService flusher;
+
+    /**
+     * A getter for the singleton class
+     * @return An instance of EventStore class
+     */
+    public static EventStore getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * A private constructor that loads the events still in progress from the database
+     */
+    private EventStore() {
+        try {
+            for (Event event : DatabaseHelper.getInstance().getActiveEvents()) {
+                put(event);
+            }
+            LOGGER.info("Loaded {} events in progress", events.size());
+        } catch (SQLException e) {
+            LOGGER.error("Database error while loading events in progress", e);
+        } catch (Exception e) {
+            LOGGER.error("Unexpected error while loading events in progress", e);
+        }
+    }
+
+    /**
+     * Starts flushing changed events to the database periodically. Does nothing if flushing
+     * has already been started.
+     *
+     * @param flushIntervalMillis the time in milliseconds between two flushes, which is the
+     *                            longest a change can remain only in memory
+     */
+    public synchronized void startFlushing(long flushIntervalMillis) {
+        if (flusher != null) {
+            return;
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-store-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        LOGGER.info("Flushing events to the database every {} ms", flushIntervalMillis);
+    }
+
+    /**
+     * Stops the periodic flush and writes every pending change in a final flush.
+     */
+    public synchronized void stopFlushing() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher = null;
+        }
+        flush();
+    }
+
+    /**
+     * Writes every changed event to the database in a single transaction, then evicts the
+     * flushed events that are finished. Events that fail to be written are kept for the next flush.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            if (dirtyEvents.isEmpty()) {
+                return;
+            }
+
+            List<Event> batch = new ArrayList<>();
+            for (Integer eventId : dirtyEvents) {
+                if (dirtyEvents.remove(eventId)) {
+                    Event event = events.get(eventId);
+                    if (event != null) {
+                        batch.add(event);
+                    }
+                }
+            }
+
+            try {
+                DatabaseHelper.getInstance().updateEvents(batch);
+            } catch (SQLException e) {
+                LOGGER.error("Database error while flushing {} events", batch.size(), e);
+                batch.forEach(event -> dirtyEvents.add(event.getEventId()));
+                return;
+            }
+
+            // Finished events are no longer needed in memory, unless they were replaced meanwhile
+            for (Event event : batch) {
+                if (isFinished(event)) {
+                    events.computeIfPresent(event.getEventId(), (eventId, current) -> current == event ? null : current);
+                    if (!events.containsKey(event.getEventId())) {
+                        unindex(event);
+                    }
+                }
+            }
+            LOGGER.debug("Flushed {} events", batch.size());
+        } catch (Exception e) {
+            LOGGER.error("Unexpected error while flushing events", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Creates a new event in the database, which sets its eventId, and keeps it in memory.
+     *
+     * @param event the event to create
+     * @throws SQLException if database error occurs
+     */
+    public void createEvent(Event event) throws SQLException {
+        DatabaseHelper.getInstance().createEvent(event);
+        put(new Event(event));
+    }
+
+    /**
+     * Creates several events in the database in a single transaction, which sets their
+     * eventIds, and keeps them in memory.
+     *
+     * @param events the events to create
+     * @throws SQLException if database error occurs, in which case none of the events is created
+     */
+    public void createEvents(List<Event> events) throws SQLException {
+        DatabaseHelper.getInstance().createEvents(events);
+        for (Event event : events) {
+            put(new Event(event));
+        }
+    }
+
+    /**
+     * Gets an event given an eventId. Events that are not held in memory are read from the database.
+     *
+     * @param eventId the eventId of the event
+     * @return a copy of the {@link Event}, or null if it does not exist
+     * @throws SQLException if database error occurs
+     */
+    public Event getEvent(int eventId) throws SQLException {
+        Event event = events.get(eventId);
+        if (event != null) {
+            return new Event(event);
+        }
+        return DatabaseHelper.getInstance().getEvent(eventId);
+    }
+
+    /**
+     * Plays a move on the board of an event and schedules the event to be written to the
+     * database. The move is checked against the stored event and played in the same atomic
+     * step, so two moves sent at the same time cannot both be played, and a game aborted
+     * meanwhile stays aborted. A move that wins the game or fills the board completes the game.
+     *
+     * @param eventId the eventId of the event
+     * @param username the username of the player making the move
+     * @param move the cell the player plays
+     * @param clearMove whether the move is delivered to the opponent another way than through
+     *                  the event, in which case the move of the stored event is set to -1
+     * @return a copy of the event after the move, or null if the move was not played because
+     * the event is not in PLAYING status, the player made the last move or the cell is taken
+     */
+    public Event playMove(int eventId, String username, int move, boolean clearMove) {
+        Event[] played = {null};
+        events.computeIfPresent(eventId, (id, event) -> {
+            if (event.getStatus() != Event.EventStatus.PLAYING || username.equals(event.getTurn())
+                    || !Board.isCell(move) || !Board.isFree(event.getBoard(), move)) {
+                return event;
+            }
+            played[0] = new Event(event);
+            played[0].setBoard(Board.play(event.getBoard(), move, username.equals(event.getSender())));
+            played[0].setMove(clearMove ? -1 : move);
+            played[0].setTurn(username);
+            if (Board.isOver(played[0].getBoard())) {
+                played[0].setStatus(Event.EventStatus.COMPLETED);
+            }
+            return played[0];
+        });
+        if (played[0] == null) {
+            return null;
+        }
+        dirtyEvents.add(eventId);
+        return new Event(played[0]);
+    }
+
+    /**
+     * Sets the move of an event, unless another move has been played since, and schedules the
+     * event to be written to the database. Nothing else of the stored event is changed, so a
+     * game aborted meanwhile stays aborted.
+     *
+     * @param eventId the eventId of the event
+     * @param board the board the move was played on, which the stored event must still have
+     * @param move the move to set, or -1 once the move has been delivered to the opponent
+     * @return true if the move was set
+     */
+    public boolean setMove(int eventId, int board, int move) {
+        boolean[] set = {false};
+        events.computeIfPresent(eventId, (id, event) -> {
+            if (event.getBoard() != board || event.getMove() == move) {
+                return event;
+            }
+            Event changed = new Event(event);
+            changed.setMove(move);
+            set[0] = true;
+            return changed;
+        });
+        if (set[0]) {
+            dirtyEvents.add(eventId);
+        }
+        return set[0];
+    }
+
+    /**
+     * Changes the status of an event, if it still has the expected status, and schedules the
+     * event to be written to the database. The status is checked and changed in the same atomic
+     * step, so a change made since the caller read the event, such as the opponent aborting it
+     * or a move being played, is never overwritten.
+     *
+     * @param eventId the eventId of the event
+     * @param expected the status the event must have
+     * @param status the new status of the event
+     * @return a copy of the changed event, or null if the event is not held in memory or its
+     * status is no longer the expected one
+     */
+    public Event transition(int eventId, Event.EventStatus expected, Event.EventStatus status) {
+        Event[] changed = {null};
+        events.computeIfPresent(eventId, (id, event) -> {
+            if (event.getStatus() != expected) {
+                return event;
+            }
+            changed[0] = new Event(event);
+            changed[0].setStatus(status);
+            return changed[0];
+        });
+        if (changed[0] == null) {
+            return null;
+        }
+        dirtyEvents.add(eventId);
+        return new Event(changed[0]);
+    }
+
+    /**
+     * Aborts all events of a user that are not finished.
+     *
+     * @param username the username of the user
+     * @return the usernames of the other players of the aborted events
+     */
+    public Set<String> abortAllUserEvents(String username) {
+        return abortAllUserEvents(username, -1);
+    }
+
+    /**
+     * Aborts all events of a user that are not finished, except one, such as the invitation
+     * the user just accepted.
+     *
+     * @param username the username of the user
+     * @param keptEventId the eventId of the event to keep, or -1 to abort every event
+     * @return the usernames of the other players of the aborted events
+     */
+    public Set<String> abortAllUserEvents(String username, int keptEventId) {
+        Set<String> otherPlayers = new HashSet<>();
+        for (Integer eventId : eventsOf(username)) {
+            if (eventId == keptEventId) {
+                continue;
+            }
+            Event[] aborted = {null};
+            events.computeIfPresent(eventId, (id, event) -> {
+                if (isFinished(event)) {
+                    return event;
+                }
+                aborted[0] = new Event(event);
+                aborted[0].setStatus(Event.EventStatus.ABORTED);
+                return aborted[0];
+            });
+            if (aborted[0] != null) {
+                dirtyEvents.add(eventId);
+                otherPlayers.add(username.equals(aborted[0].getSender()) ? aborted[0].getOpponent() : aborted[0].getSender());
+            }
+        }
+        return otherPlayers;
+    }
+
+    /**
+     * Aborts every event held in memory that is not finished, for when no game can go on
+     * because the server is stopping or has just restarted. The aborted events are written by
+     * the next flush, all in the same transaction.
+     *
+     * @return the number of aborted events
+     */
+    public int abortAll() {
+        int abortedCount = 0;
+        for (Integer eventId : events.keySet()) {
+            boolean[] aborted = {false};
+            events.computeIfPresent(eventId, (id, event) -> {
+                if (isFinished(event)) {
+                    return event;
+                }
+                Event abortedEvent = new Event(event);
+                abortedEvent.setStatus(Event.EventStatus.ABORTED);
+                aborted[0] = true;
+                return abortedEvent;
+            });
+            if (aborted[0]) {
+                dirtyEvents.add(eventId);
+                abortedCount++;
+            }
+        }
+        return abortedCount;
+    }
+
+    /**
+     * Gets the game invitation sent to a user (i.e {@link Event#getOpponent()}) that is still pending.
+     *
+     * @param username the username of the user
+     * @return a copy of the invitation, or null if there is none
+     */
+    public Event getUserInvitation(String username) {
+        return findFirst(username, event -> username.equals(event.getOpponent())
+                && event.getStatus() == Event.EventStatus.PENDING);
+    }
+
+    /**
+     * Gets the response to a game invitation earlier sent by a user (i.e {@link Event#getSender()}).
+     *
+     * @param username the username of the user
+     * @return a copy of the invitation response, or null if there is none
+     */
+    public Event getUserInvitationResponse(String username) {
+        return findFirst(username, event -> username.equals(event.getSender())
+                && (event.getStatus() == Event.EventStatus.ACCEPTED || event.getStatus() == Event.EventStatus.DECLINED));
+    }
+
+    /**
+     * Checks if a user is available to play a game, that is when the user does not have an
+     * event with status {@link Event.EventStatus#PLAYING} or {@link Event.EventStatus#ACCEPTED}.
+     *
+     * @param username the username of the user
+     * @return true if the user is available, otherwise false
+     */
+    public boolean isUserAvailable(String username) {
+        return findFirst(username, event -> event.getStatus() == Event.EventStatus.PLAYING
+                || event.getStatus() == Event.EventStatus.ACCEPTED) == null;
+    }
+
+    /**
+     * Returns the number of events held in memory.
+     *
+     * @return the number of events
+     */
+    public int size() {
+        return events.size();
+    }
+
+    /**
+     * Counts the events held in memory by status. Finished events are only counted until they
+     * are flushed and evicted.
+     *
+     * @return the number of events of every status, including the statuses without events
+     */
+    public Map<Event.EventStatus, Integer> countByStatus() {
+        Map<Event.EventStatus, Integer> counts = new EnumMap<>(Event.EventStatus.class);
+        for (Event.EventStatus status : Event.EventStatus.values()) {
+            counts.put(status, 0);
+        }
+        for (Event event : events.values()) {
+            counts.merge(event.getStatus(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the number of events changed since the last flush.
+     *
+     * @return the number of events waiting to be flushed
+     */
+    public int getPendingFlushCount() {
+        return dirtyEvents.size();
+    }
+
+    /**
+     * Finds the event of a user with the lowest eventId matching a condition, the same event
+     * the equivalent database query would return.
+     *
+     * @param username the username of the user
+     * @param condition the condition the event must match
+     * @return a copy of the matching event, or null if there is none
+     */
+    private Event findFirst(String username, Predicate<Event> condition) {
+        Event found = null;
+        for (Integer eventId : eventsOf(username)) {
+            Event event = events.get(eventId);
+            if (event != null && condition.test(event) && (found == null || event.getEventId() < found.getEventId())) {
+                found = event;
+            }
+        }
+        return found == null ? null : new Event(found);
+    }
+
+    /**
+     * Returns the eventIds of the events of a user held in memory.
+     *
+     * @param username the username of the user
+     * @return the eventIds, possibly empty
+     */
+    private Set<Integer> eventsOf(String username) {
+        return eventsByUser.getOrDefault(username, Set.of());
+    }
+
+    /**
+     * Stores an event and indexes it under both players.
+     *
+     * @param event the event to store
+     */
+    private void put(Event event) {
+        events.put(event.getEventId(), event);
+        index(event.getSender(), event.getEventId());
+        index(event.getOpponent(), event.getEventId());
+    }
+
+    /**
+     * Indexes an event under a player. The eventId is added while the map entry is locked, so
+     * a concurrent {@link #unindex(Event)} cannot drop the set it is added to.
+     *
+     * @param username the username of the player
+     * @param eventId the eventId of the event
+     */
+    private void index(String username, int eventId) {
+        if (username != null) {
+            eventsByUser.compute(username, (key, eventIds) -> {
+                Set<Integer> indexed = eventIds == null ? ConcurrentHashMap.newKeySet() : eventIds;
+                indexed.add(eventId);
+                return indexed;
+            });
+        }
+    }
+
+    /**
+     * Removes an evicted event from the index of both players.
+     *
+     * @param event the evicted event
+     */
+    private void unindex(Event event) {
+        for (String username : new String[]{event.getSender(), event.getOpponent()}) {
+            if (username != null) {
+                eventsByUser.computeIfPresent(username, (key, eventIds) -> {
+                    eventIds.remove(event.getEventId());
+                    return eventIds.isEmpty() ? null : eventIds;
+                });
+            }
+        }
+    }
+
+    /**
+     * Checks whether an event has reached a final status.
+     *
+     * @param event the event to check
+     * @return true if the event is completed or aborted
+     */
+    private static boolean isFinished(Event event) {
+        return event.getStatus() == Event.EventStatus.COMPLETED || event.getStatus() == Event.EventStatus.ABORTED;
+    }
+}
@@ -0,0 +1,689 @@
+package server;
+
+import model.Event;
+import model.PlayerStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pairs the players who sent JOIN_QUEUE or JOIN_RATED_QUEUE, as an alternative to picking an
+ * opponent in the lobby and going through the invitation handshake.
+ * <p>
+ * Joining only adds a {@link Ticket} to a lock-free queue, so handlers never wait on each other
+ * or on the database to join. A single matcher thread takes the tickets in the order they
+ * joined, pairs them two by two, and starts the game of every pair directly in PLAYING status.
+ * The events of the pairs taken together are created in a single transaction. Since only the
+ * matcher pairs players, and a ticket is claimed before its game is created, a player is never
+ * given two games at once: a player leaving the queue or accepting an invitation meanwhile
+ * cancels its ticket, which the matcher then skips.
+ * <p>
+ * Players of the rated queue are only paired with players of a similar rating. Waiting rated
+ * players are kept sorted by rating, so the closest opponent of a new player is found in
+ * O(log n). The two are paired if their ratings are within the window of either player, which
+ * starts at {@value #INITIAL_WINDOW} rating points and widens by {@value #WINDOW_GROWTH} every
+ * second the player waits. The matcher widens the windows of the waiting players every
+ * {@value #WIDEN_INTERVAL} ms, pairing the players of neighbouring ratings whose windows now meet.
+ */
+public class MatchQueue {
+
+    /**
+     * Logger for the match queue.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MatchQueue.class);
+
+    /**
+     * Largest number of tickets taken from the queue at once, whose games are created in the
+     * same transaction.
+     */
+    private static final int MAX_BATCH_SIZE = 512;
+
+    /**
+     * Largest difference of rating, in rating points, between a rated player who just joined
+     * and their opponent.
+     */
+    private static final int INITIAL_WINDOW = 50;
+
+    /**
+     * Rating points the window of a rated player widens by for every second of waiting.
+     */
+    private static final int WINDOW_GROWTH = 50;
+
+    /**
+     * Time in milliseconds between two passes widening the windows of the waiting rated players.
+     */
+    private static final long WIDEN_INTERVAL = 250;
+
+    /**
+     * Lazily holds the only class instance.
+     */
+    private static class InstanceHolder {
+        private static final MatchQueue INSTANCE = new MatchQueue();
+    }
+
+    /**
+     * The tickets not taken by the matcher yet, oldest first.
+     */
+    private final LinkedTransferQueue<Ticket> queue = new LinkedTransferQueue<>();
+
+    /**
+     * The number of players waiting for an opponent.
+     */
+    private final AtomicInteger waitingCount = new AtomicInteger();
+
+    /**
+     * The number of tickets created, giving every ticket its place in the joining order.
+     */
+    private final AtomicLong ticketCount = new AtomicLong();
+
+    /**
+     * The thread pairing the players, or null if matching has not been started.
+     */
+    private volatile Thread matcher;
+
+    /**
+     * The oldest ticket taken from the queue but not paired yet, kept by the matcher until the
+     * next ticket arrives.
+     */
+    private Ticket waiting;
+
+    /**
+     * The rated tickets taken from the queue but not paired yet, ordered by rating and then by
+     * joining order. Only the matcher reads or changes them.
+     */
+    private final TreeSet<Ticket> ratedTickets = new TreeSet<>(
+            Comparator.comparingInt(Ticket::getRating).thenComparingLong(Ticket::getSequence));
+
+    /**
+     * A getter for the singleton class
+     * @return An instance of MatchQueue class
+     */
+    public static MatchQueue getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * A private constructor
+     */
+    private MatchQueue() {
+    }
+
+    /**
+     * Starts pairing the players in the queue. Does nothing if matching has already been started.
+     */
+    public synchronized void startMatching() {
+        if (matcher != null) {
+            return;
+        }
+
+        matcher = new Thread(this::match, "matchmaker");
+        matcher.setDaemon(true);
+        matcher.start();
+        LOGGER.info("Matching queued players");
+    }
+
+    /**
+     * Stops pairing the players, waiting for the games being created, and takes every player
+     * still waiting out of the queue, which answers their held JOIN_QUEUE requests.
+     */
+    public synchronized void stopMatching() {
+        Thread matcher = this.matcher;
+        if (matcher == null) {
+            return;
+        }
+
+        this.matcher = null;
+        matcher.interrupt();
+        try {
+            matcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (waiting != null) {
+            waiting.cancel();
+            waiting = null;
+        }
+        for (Ticket ticket : ratedTickets) {
+            ticket.cancel();
+        }
+        ratedTickets.clear();
+        Ticket ticket;
+        while ((ticket = queue.poll()) != null) {
+            ticket.cancel();
+        }
+    }
+
+    /**
+     * Adds a player to the queue.
+     *
+     * @param username the username of the player
+     * @return the ticket of the player, completed with the game once an opponent is found
+     */
+    public Ticket join(String username) {
+        return enqueue(new Ticket(username, false, PlayerStats.INITIAL_RATING));
+    }
+
+    /**
+     * Adds a player to the queue, to be paired with a player of a similar rating.
+     *
+     * @param username the username of the player
+     * @param rating the rating of the player
+     * @return the ticket of the player, completed with the game once an opponent is found
+     */
+    public Ticket joinRated(String username, int rating) {
+        return enqueue(new Ticket(username, true, rating));
+    }
+
+    /**
+     * Hands a new ticket to the matcher.
+     *
+     * @param ticket the ticket of the player
+     * @return the ticket
+     */
+    private Ticket enqueue(Ticket ticket) {
+        waitingCount.incrementAndGet();
+        queue.add(ticket);
+        return ticket;
+    }
+
+    /**
+     * Returns the number of players waiting for an opponent.
+     *
+     * @return the number of waiting players
+     */
+    public int getWaitingCount() {
+        return waitingCount.get();
+    }
+
+    /**
+     * Takes the tickets from the queue as they arrive and pairs them until the matcher is interrupted.
+     */
+    private void match() {
+        List<Ticket> batch = new ArrayList<>();
+        long nextWidening = System.nanoTime();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                // The windows of waiting rated players widen even when nobody joins
+                Ticket ticket = ratedTickets.isEmpty() ? queue.take() : queue.poll(WIDEN_INTERVAL, TimeUnit.MILLISECONDS);
+                if (ticket != null) {
+                    batch.add(ticket);
+                    queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            List<Ticket[]> pairs = new ArrayList<>();
+            for (Ticket ticket : batch) {
+                if (!ticket.isWaiting()) {
+                    continue;
+                }
+                if (ticket.isRated()) {
+                    matchRated(ticket, pairs);
+                } else {
+                    matchNext(ticket, pairs);
+                }
+            }
+            batch.clear();
+
+            long now = System.nanoTime();
+            if (!ratedTickets.isEmpty() && now - nextWidening >= 0) {
+                widenWindows(pairs);
+                nextWidening = now + TimeUnit.MILLISECONDS.toNanos(WIDEN_INTERVAL);
+            }
+
+            if (!pairs.isEmpty()) {
+                startGames(pairs);
+            }
+        }
+    }
+
+    /**
+     * Pairs a ticket with the oldest waiting ticket, or keeps it waiting if there is none.
+     *
+     * @param ticket the ticket taken from the queue
+     * @param pairs the pairs whose games are created next
+     */
+    private void matchNext(Ticket ticket, List<Ticket[]> pairs) {
+        if (waiting == null || !waiting.isWaiting()) {
+            waiting = ticket;
+        } else if (waiting.getUsername().equals(ticket.getUsername())) {
+            // The player joined again from another session, only the latest ticket is kept
+            waiting.cancel();
+            waiting = ticket;
+        } else if (pair(waiting, ticket, pairs)) {
+            waiting = null;
+        } else if (!waiting.isWaiting()) {
+            waiting = ticket;
+        }
+    }
+
+    /**
+     * Pairs a rated ticket with the waiting rated ticket of the closest rating if their
+     * windows meet, or keeps it waiting.
+     *
+     * @param ticket the rated ticket taken from the queue
+     * @param pairs the pairs whose games are created next
+     */
+    private void matchRated(Ticket ticket, List<Ticket[]> pairs) {
+        long now = System.nanoTime();
+        while (ticket.isWaiting()) {
+            Ticket below = closestWaiting(ticket, true);
+            Ticket above = closestWaiting(ticket, false);
+            Ticket opponent = below == null || (above != null && above.getRating() - ticket.getRating()
+                    < ticket.getRating() - below.getRating()) ? above : below;
+            if (opponent == null || !windowsMeet(opponent, ticket, now)) {
+                ratedTickets.add(ticket);
+                return;
+            }
+
+            ratedTickets.remove(opponent);
+            if (pair(opponent, ticket, pairs)) {
+                return;
+            }
+            if (opponent.isWaiting()) {
+                // The new player cancelled meanwhile, the opponent keeps waiting
+                ratedTickets.add(opponent);
+            }
+        }
+    }
+
+    /**
+     * Pairs the waiting rated tickets of neighbouring ratings whose windows meet now that
+     * they have widened. Pairing neighbours only takes a single pass over the sorted tickets.
+     *
+     * @param pairs the pairs whose games are created next
+     */
+    private void widenWindows(List<Ticket[]> pairs) {
+        long now = System.nanoTime();
+        List<Ticket> paired = new ArrayList<>();
+        Ticket previous = null;
+        for (Iterator<Ticket> iterator = ratedTickets.iterator(); iterator.hasNext(); ) {
+            Ticket ticket = iterator.next();
+            if (!ticket.isWaiting()) {
+                iterator.remove();
+                continue;
+            }
+
+            if (previous != null && !previous.getUsername().equals(ticket.getUsername()) && windowsMeet(previous, ticket, now)) {
+                Ticket first = previous.getSequence() < ticket.getSequence() ? previous : ticket;
+                Ticket second = first == previous ? ticket : previous;
+                if (pair(first, second, pairs)) {
+                    paired.add(previous);
+                    paired.add(ticket);
+                    previous = null;
+                    continue;
+                }
+                if (!ticket.isWaiting()) {
+                    continue;
+                }
+            }
+            previous = ticket;
+        }
+        paired.forEach(ratedTickets::remove);
+    }
+
+    /**
+     * Finds the waiting rated ticket closest in rating to a ticket on one side, dropping the
+     * cancelled tickets met on the way.
+     *
+     * @param ticket the ticket looking for an opponent
+     * @param below whether to look at lower ratings rather than higher ones
+     * @return the closest waiting ticket of another player on that side, or null if there is none
+     */
+    private Ticket closestWaiting(Ticket ticket, boolean below) {
+        while (true) {
+            Ticket neighbour = below ? ratedTickets.lower(ticket) : ratedTickets.higher(ticket);
+            if (neighbour == null || (neighbour.isWaiting() && !neighbour.getUsername().equals(ticket.getUsername()))) {
+                return neighbour;
+            }
+
+            // A ticket of the same player comes from another session, only the latest ticket is kept
+            neighbour.cancel();
+            ratedTickets.remove(neighbour);
+        }
+    }
+
+    /**
+     * Checks if two rated players are close enough in rating to be paired, that is within the
+     * window of the player who waited the longest.
+     *
+     * @param first the ticket of one player
+     * @param second the ticket of the other player
+     * @param now the current time, as returned by {@link System#nanoTime()}
+     * @return true if the players can be paired, otherwise false
+     */
+    private static boolean windowsMeet(Ticket first, Ticket second, long now) {
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(now - Math.min(first.getJoinedAt(), second.getJoinedAt()));
+        long window = INITIAL_WINDOW + WINDOW_GROWTH * waitedMillis / 1000;
+        return Math.abs(first.getRating() - second.getRating()) <= window;
+    }
+
+    /**
+     * Claims two waiting tickets and adds them to the pairs whose games are created next.
+     * Either player may cancel meanwhile, in which case the other one keeps waiting.
+     *
+     * @param first the ticket of the player making the first move
+     * @param second the ticket of the other player
+     * @param pairs the pairs whose games are created next
+     * @return true if both tickets were claimed, otherwise false
+     */
+    private static boolean pair(Ticket first, Ticket second, List<Ticket[]> pairs) {
+        if (!first.claim()) {
+            return false;
+        }
+        if (!second.claim()) {
+            first.release();
+            return false;
+        }
+        pairs.add(new Ticket[]{first, second});
+        return true;
+    }
+
+    /**
+     * Creates the games of claimed pairs of players in a single transaction, and hands every
+     * player its game. Pending invitations of the players are aborted, as when an invitation
+     * is accepted.
+     *
+     * @param pairs the claimed tickets of the players, two by two, the first one making the first move
+     */
+    private void startGames(List<Ticket[]> pairs) {
+        Set<String> affectedUsers = new HashSet<>();
+        List<Event> games = new ArrayList<>(pairs.size());
+        for (Ticket[] pair : pairs) {
+            affectedUsers.addAll(EventStore.getInstance().abortAllUserEvents(pair[0].getUsername()));
+            affectedUsers.addAll(EventStore.getInstance().abortAllUserEvents(pair[1].getUsername()));
+            affectedUsers.add(pair[0].getUsername());
+            affectedUsers.add(pair[1].getUsername());
+            games.add(new Event(0, pair[0].getUsername(), pair[1].getUsername(), Event.EventStatus.PLAYING, null, -1));
+        }
+
+        try {
+            EventStore.getInstance().createEvents(games);
+            for (int i = 0; i < pairs.size(); i++) {
+                pairs.get(i)[0].complete(games.get(i));
+                pairs.get(i)[1].complete(games.get(i));
+            }
+            LOGGER.debug("Started {} games from the queue", games.size());
+        } catch (SQLException e) {
+            LOGGER.error("Database error while starting {} games from the queue", games.size(), e);
+            for (Ticket[] pair : pairs) {
+                pair[0].fail(e);
+                pair[1].fail(e);
+            }
+        }
+
+        for (String username : affectedUsers) {
+            PresenceRegistry.getInstance().refresh(username);
+        }
+        ServerHandler.PAIRING_CHANGES.signalAll();
+    }
+
+    /**
+     * The place of a player in the queue, completed with the game once an opponent is found.
+     * <p>
+     * A ticket is waiting until the matcher claims it for a pair, and then either matched once
+     * the game is created, or released if the other player of the pair cancelled meanwhile.
+     * Its owner may cancel it while it is waiting. Every change of state is a compare-and-set,
+     * so the matcher and the owner never need a lock to agree on the outcome.
+     */
+    public final class Ticket {
+
+        /**
+         * State of a ticket waiting for an opponent.
+         */
+        private static final int WAITING = 0;
+
+        /**
+         * State of a ticket claimed by the matcher while the game is created.
+         */
+        private static final int CLAIMED = 1;
+
+        /**
+         * State of a ticket whose game was created.
+         */
+        private static final int MATCHED = 2;
+
+        /**
+         * State of a ticket cancelled by its owner, or whose game could not be created.
+         */
+        private static final int CANCELLED = 3;
+
+        /**
+         * The username of the player.
+         */
+        private final String username;
+
+        /**
+         * Whether the player is only paired with players of a similar rating.
+         */
+        private final boolean rated;
+
+        /**
+         * The rating of the player when joining.
+         */
+        private final int rating;
+
+        /**
+         * The place of the ticket in the joining order.
+         */
+        private final long sequence;
+
+        /**
+         * The time the player joined, as returned by {@link System#nanoTime()}.
+         */
+        private final long joinedAt;
+
+        /**
+         * The state of the ticket.
+         */
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        /**
+         * The game of the player, completed once it is created.
+         */
+        private final CompletableFuture<Event> game = new CompletableFuture<>();
+
+        /**
+         * Counted down once the matcher no longer holds the claim it last took on the ticket,
+         * which an owner cancelling meanwhile waits for.
+         */
+        private volatile CountDownLatch claimed = new CountDownLatch(0);
+
+        /**
+         * Creates a waiting ticket.
+         *
+         * @param username the username of the player
+         * @param rated whether the player is only paired with players of a similar rating
+         * @param rating the rating of the player
+         */
+        private Ticket(String username, boolean rated, int rating) {
+            this.username = username;
+            this.rated = rated;
+            this.rating = rating;
+            this.sequence = ticketCount.incrementAndGet();
+            this.joinedAt = System.nanoTime();
+        }
+
+        /**
+         * Returns the username of the player.
+         *
+         * @return the username
+         */
+        public String getUsername() {
+            return username;
+        }
+
+        /**
+         * Checks if the player is only paired with players of a similar rating.
+         *
+         * @return true if the ticket is in the rated queue, otherwise false
+         */
+        public boolean isRated() {
+            return rated;
+        }
+
+        /**
+         * Returns the rating of the player when joining.
+         *
+         * @return the rating
+         */
+        public int getRating() {
+            return rating;
+        }
+
+        /**
+         * Returns the place of the ticket in the joining order.
+         *
+         * @return the sequence number, higher for tickets created later
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Returns the time the player joined.
+         *
+         * @return the time, as returned by {@link System#nanoTime()}
+         */
+        public long getJoinedAt() {
+            return joinedAt;
+        }
+
+        /**
+         * Checks if the ticket is still waiting for an opponent.
+         *
+         * @return true if the ticket is waiting, otherwise false
+         */
+        public boolean isWaiting() {
+            return state.get() == WAITING;
+        }
+
+        /**
+         * Checks if the ticket was cancelled, or its game could not be created.
+         *
+         * @return true if the ticket was cancelled, otherwise false
+         */
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        /**
+         * Returns the game of the player, waiting for it if it has not been created yet.
+         *
+         * @param timeoutMillis the longest time in milliseconds to wait for the game, or 0 to return immediately
+         * @return the game, or null if no opponent was found in time or the ticket was cancelled
+         * @throws SQLException if the game could not be created
+         * @throws InterruptedException if the thread is interrupted while waiting
+         */
+        public Event getGame(long timeoutMillis) throws SQLException, InterruptedException {
+            try {
+                return timeoutMillis > 0 ? game.get(timeoutMillis, TimeUnit.MILLISECONDS) : game.getNow(null);
+            } catch (TimeoutException | CancellationException e) {
+                return null;
+            } catch (ExecutionException | CompletionException e) {
+                throw new SQLException("Could not start the game", e.getCause());
+            }
+        }
+
+        /**
+         * Takes the player out of the queue, unless an opponent was already found, and wakes
+         * the owner if it is waiting for the game. If the matcher has claimed the ticket, blocks
+         * until the game is created or the claim released.
+         *
+         * @return true if the ticket is cancelled, false if the game was created
+         */
+        public boolean cancel() {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    int current = state.get();
+                    if (current == WAITING && state.compareAndSet(WAITING, CANCELLED)) {
+                        waitingCount.decrementAndGet();
+                        game.cancel(false);
+                        return true;
+                    }
+                    if (current == CANCELLED) {
+                        return true;
+                    }
+                    if (current == MATCHED) {
+                        return false;
+                    }
+                    // The latch is read after the state, so it is never older than the claim seen
+                    try {
+                        claimed.await();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /**
+         * Claims a waiting ticket for a pair.
+         *
+         * @return true if the ticket was claimed, false if it was cancelled meanwhile
+         */
+        private boolean claim() {
+            // Only the matcher claims tickets, and it releases every claim before taking another
+            claimed = new CountDownLatch(1);
+            return state.compareAndSet(WAITING, CLAIMED);
+        }
+
+        /**
+         * Puts a claimed ticket back to waiting, when the other player of the pair cancelled.
+         */
+        private void release() {
+            state.set(WAITING);
+            claimed.countDown();
+        }
+
+        /**
+         * Hands the created game to the player. The game is set before the state changes, so
+         * an owner that fails to cancel always finds it.
+         *
+         * @param event the game created
+         */
+        private void complete(Event event) {
+            game.complete(new Event(event));
+            state.set(MATCHED);
+            waitingCount.decrementAndGet();
+            claimed.countDown();
+        }
+
+        /**
+         * Cancels a claimed ticket whose game could not be created.
+         *
+         * @param cause the error that prevented the game from being created
+         */
+        private void fail(SQLException cause) {
+            game.completeExceptionally(cause);
+            state.set(CANCELLED);
+            waitingCount.decrementAndGet();
+            claimed.countDown();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package server;
+
+import java.util.List;
+
+/**
+ * A single, numbered step in the evolution of the database schema. A migration is a list of
+ * SQL statements that {@link SchemaMigrator} runs once, in a single transaction, on every
+ * database whose schema version is lower than the migration's version.
+ * <p>
+ * Migrations must never be changed once released: to change the schema further, add a new
+ * migration with the next version number.
+ */
+public class Migration {
+
+    /**
+     * The schema version the database is at after this migration has run.
+     */
+    private final int version;
+
+    /**
+     * A short description of the change, recorded in the schema version table.
+     */
+    private final String description;
+
+    /**
+     * The SQL statements of the migration, in the order they run.
+     */
+    private final List<String> statements;
+
+    /**
+     * Creates a migration.
+     *
+     * @param version the schema version the database is at after this migration has run
+     * @param description a short description of the change
+     * @param statements the SQL statements of the migration, in the order they run
+     */
+    public Migration(int version, String description, String... statements) {
+        this.version = version;
+        this.description = description;
+        this.statements = List.of(statements);
+    }
+
+    /**
+     * Returns the schema version the database is at after this migration has run.
+     *
+     * @return the version of this migration
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the short description of the change.
+     *
+     * @return the description of this migration
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Returns the SQL statements of the migration.
+     *
+     * @return the statements, in the order they run
+     */
+    public List<String> getStatements() {
+        return statements;
+    }
+}
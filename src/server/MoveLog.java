@@ -0,0 +1,194 @@
+package server;
+
+import model.Move;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Appends every accepted {@link Move} to the move log of the database, so finished games can
+ * be replayed, without a synchronous write on the request path.
+ * <p>
+ * Moves are queued in memory and written by a background thread in batches, one transaction
+ * per batch: a batch is written as soon as the batch size is reached, or when the flush
+ * interval has elapsed, whichever comes first. Moves that fail to be written are queued again
+ * for the next batch. Since every move has its own primary key, writing a move twice is harmless.
+ */
+public class MoveLog {
+
+    /**
+     * Logger for the move log.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MoveLog.class);
+
+    /**
+     * Lazily holds the only class instance.
+     */
+    private static class InstanceHolder {
+        private static final MoveLog INSTANCE = new MoveLog();
+    }
+
+    /**
+     * The moves not written yet, oldest first.
+     */
+    private final Queue<Move> pendingMoves = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The number of moves not written yet, which the queue cannot count in constant time.
+     */
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    /**
+     * Makes sure only one flush writes to the database at a time.
+     */
+    private final Lock flushLock = new ReentrantLock();
+
+    /**
+     * The number of pending moves that triggers a flush before the flush interval has elapsed.
+     */
+    private volatile int batchSize = Integer.MAX_VALUE;
+
+    /**
+     * Runs the flushes, or null if flushing has not been started.
+     */
+    private volatile ScheduledExecutorService flusher;
+
+    /**
+     * A getter for the singleton class
+     * @return An instance of MoveLog class
+     */
+    public static MoveLog getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * A private constructor
+     */
+    private MoveLog() {
+    }
+
+    /**
+     * Starts writing the pending moves to the database in batches. Does nothing if flushing
+     * has already been started.
+     *
+     * @param batchSize the number of pending moves written as soon as they are reached
+     * @param flushIntervalMillis the time in milliseconds between two flushes, which is the
+     *                            longest a move can remain only in memory
+     * @throws IllegalArgumentException if the batch size or the flush interval is not positive
+     */
+    public synchronized void startFlushing(int batchSize, long flushIntervalMillis) {
+        if (batchSize <= 0 || flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Batch size and flush interval must be positive");
+        }
+        if (flusher != null) {
+            return;
+        }
+
+        this.batchSize = batchSize;
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "move-log-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        LOGGER.info("Writing moves to the database every {} moves or {} ms", batchSize, flushIntervalMillis);
+    }
+
+    /**
+     * Stops the periodic flush and writes every pending move in a final flush.
+     */
+    public synchronized void stopFlushing() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher = null;
+        }
+        batchSize = Integer.MAX_VALUE;
+        flush();
+    }
+
+    /**
+     * Queues a move to be written to the database. When the queue reaches the batch size, a
+     * flush is started on the background thread without waiting for the flush interval.
+     *
+     * @param move the accepted move
+     */
+    public void append(Move move) {
+        pendingMoves.add(move);
+        if (pendingCount.incrementAndGet() % batchSize == 0) {
+            ScheduledExecutorService flusher = this.flusher;
+            if (flusher != null) {
+                try {
+                    flusher.execute(this::flush);
+                } catch (Exception e) {
+                    // Flushing was stopped meanwhile, the final flush writes the move
+                    LOGGER.debug("Move log flush not scheduled", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes every pending move to the database in a single transaction. Moves that fail to
+     * be written are queued again for the next flush.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<Move> batch = new ArrayList<>();
+            Move move;
+            while ((move = pendingMoves.poll()) != null) {
+                batch.add(move);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            pendingCount.addAndGet(-batch.size());
+
+            try {
+                DatabaseHelper.getInstance().insertMoves(batch);
+                LOGGER.debug("Wrote {} moves", batch.size());
+            } catch (SQLException e) {
+                LOGGER.error("Database error while writing {} moves, retrying on the next flush", batch.size(), e);
+                pendingMoves.addAll(batch);
+                pendingCount.addAndGet(batch.size());
+            }
+        } catch (Exception e) {
+            LOGGER.error("Unexpected error while writing moves", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the moves of a game in the order they were played, including the moves not
+     * written yet, which are written first.
+     *
+     * @param eventId the eventId of the game
+     * @return the moves of the game, empty if none was recorded
+     * @throws SQLException if database error occurs
+     */
+    public List<Move> getMoves(int eventId) throws SQLException {
+        flush();
+        return DatabaseHelper.getInstance().getMoves(eventId);
+    }
+
+    /**
+     * Returns the number of moves not written yet.
+     *
+     * @return the number of moves waiting to be flushed
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+}
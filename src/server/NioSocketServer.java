@@ -0,0 +1,644 @@
+package server;
+
+import com.google.gson.JsonSyntaxException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import socket.WireProtocol;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Non-blocking front end for the TicTacToe server built on a {@link ServerSocketChannel}
+ * and a small, fixed pool of selector event loops.
+ * <p>
+ * Unlike the thread-per-connection mode, an idle client costs only a registered channel and
+ * a {@link ServerHandler} holding its session state, so a single server can hold tens of
+ * thousands of mostly idle sessions without exhausting platform threads.
+ * <p>
+ * The wire format is identical to the blocking mode: every request and response is a frame
+ * made of a length prefix followed by the message, framed according to the connection's
+ * {@link WireProtocol}, such as the unsigned 16-bit length and modified UTF-8 bytes written by
+ * {@link DataOutputStream#writeUTF(String)} for the default JSON protocol. Complete frames are handed to
+ * {@link ServerHandler#processFrame(byte[])} on a virtual thread, one request at a time per
+ * connection, so a request blocked on the database or held by a long-poll never stalls the
+ * other connections of its event loop. Responses and messages pushed to a connection are
+ * handed back to its event loop, which remains the only thread writing to the channel.
+ */
+public class NioSocketServer {
+
+    /**
+     * Logger for the NIO front end.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(NioSocketServer.class);
+
+    /**
+     * Size of the buffer each event loop reads socket data into.
+     */
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Initial size of the per-session buffer used to hold an incomplete frame.
+     */
+    private static final int PARTIAL_BUFFER_SIZE = 256;
+
+    /**
+     * Runs request processing off the event loops. A virtual thread only exists while a
+     * request is being processed, so idle sessions still hold no thread.
+     */
+    private static final ExecutorService WORKERS = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * The port number to listen on for incoming client connections.
+     */
+    private final int port;
+
+    /**
+     * The event loops that own the accepted client channels.
+     */
+    private final EventLoop[] eventLoops;
+
+    /**
+     * The index of the event loop that receives the next accepted connection.
+     */
+    private int nextEventLoop;
+
+    /**
+     * The listening channel.
+     */
+    private ServerSocketChannel serverChannel;
+
+    /**
+     * The selector used by the accepting thread to wait for new connections.
+     */
+    private Selector acceptSelector;
+
+    /**
+     * Creates a NIO front end listening on the given port.
+     *
+     * @param port the port number to listen on
+     * @param eventLoopCount the number of selector threads used to serve client connections
+     * @throws IllegalArgumentException if the event loop count is less than 1
+     */
+    public NioSocketServer(int port, int eventLoopCount) {
+        if (eventLoopCount < 1) {
+            throw new IllegalArgumentException("Event loop count must be at least 1");
+        }
+
+        this.port = port;
+        this.eventLoops = new EventLoop[eventLoopCount];
+    }
+
+    /**
+     * Opens and binds the listening channel and starts the event loop threads.
+     *
+     * @throws IOException if the channel cannot be opened or bound
+     */
+    public void bind() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(port));
+
+        acceptSelector = Selector.open();
+        serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new EventLoop(Selector.open());
+            Thread thread = new Thread(eventLoops[i], "nio-event-loop-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        LOGGER.info("Started {} NIO event loops", eventLoops.length);
+    }
+
+    /**
+     * Accepts client connections until the listening channel is closed, handing each new
+     * connection to the event loops in round-robin order.
+     */
+    public void acceptConnections() {
+        try {
+            while (serverChannel.isOpen()) {
+                acceptSelector.select();
+                acceptSelector.selectedKeys().clear();
+
+                SocketChannel clientChannel;
+                while ((clientChannel = serverChannel.accept()) != null) {
+                    clientChannel.configureBlocking(false);
+                    clientChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    LOGGER.info("New client connected from {}", clientChannel.getRemoteAddress());
+
+                    eventLoops[nextEventLoop].register(clientChannel);
+                    nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+                }
+            }
+        } catch (IOException e) {
+            if (serverChannel.isOpen()) {
+                LOGGER.error("Error while accepting client connections", e);
+            }
+        } finally {
+            try {
+                acceptSelector.close();
+            } catch (IOException e) {
+                LOGGER.warn("Error closing the accept selector.", e);
+            }
+        }
+        LOGGER.info("Stopped accepting connections");
+    }
+
+    /**
+     * Closes the listening channel, so {@link #acceptConnections()} returns. The connections
+     * already accepted keep being served.
+     */
+    public void stopAccepting() {
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            LOGGER.warn("Error closing the listening channel.", e);
+        }
+        acceptSelector.wakeup();
+    }
+
+    /**
+     * Closes every client connection and stops the event loops.
+     */
+    public void close() {
+        for (EventLoop eventLoop : eventLoops) {
+            if (eventLoop != null) {
+                eventLoop.execute(eventLoop::closeAll);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tasks and accepted channels waiting for an event loop to pick them
+     * up, which grows when the event loops cannot keep up.
+     *
+     * @return the number of pending tasks and channels of every event loop
+     */
+    public int getPendingTaskCount() {
+        int count = 0;
+        for (EventLoop eventLoop : eventLoops) {
+            if (eventLoop != null) {
+                count += eventLoop.pendingTasks.size() + eventLoop.pendingChannels.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the port the listening channel is bound to.
+     *
+     * @return the local port, or -1 if the channel has not been bound
+     */
+    public int getLocalPort() {
+        if (serverChannel == null) {
+            return -1;
+        }
+
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * A single selector thread serving a subset of the client connections.
+     */
+    private static final class EventLoop implements Runnable {
+
+        /**
+         * The selector that multiplexes this loop's client channels.
+         */
+        private final Selector selector;
+
+        /**
+         * Channels accepted by the accepting thread and waiting to be registered on this loop.
+         */
+        private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Tasks submitted by other threads to run on this loop, such as writing pushed messages.
+         */
+        private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Buffer shared by every channel on this loop for socket reads. Only bytes belonging
+         * to an incomplete frame are copied into a per-session buffer.
+         */
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+        /**
+         * Creates an event loop around the given selector.
+         *
+         * @param selector the selector owned by this loop
+         */
+        EventLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        /**
+         * Queues a channel for registration and wakes the selector so it is picked up promptly.
+         *
+         * @param channel the newly accepted client channel
+         */
+        void register(SocketChannel channel) {
+            pendingChannels.add(channel);
+            selector.wakeup();
+        }
+
+        /**
+         * Queues a task to run on this loop's thread and wakes the selector so it runs promptly.
+         *
+         * @param task the task to run
+         */
+        void execute(Runnable task) {
+            pendingTasks.add(task);
+            selector.wakeup();
+        }
+
+        /**
+         * Runs the select loop, dispatching read and write readiness to the owning sessions.
+         */
+        @Override
+        public void run() {
+            while (selector.isOpen()) {
+                try {
+                    selector.select();
+                    registerPendingChannels();
+                    runPendingTasks();
+                    if (!selector.isOpen()) {
+                        break;
+                    }
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+
+                        Session session = (Session) key.attachment();
+                        if (key.isValid() && key.isReadable()) {
+                            read(session);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(session);
+                        }
+                    }
+                } catch (IOException e) {
+                    LOGGER.error("I/O error in NIO event loop: ", e);
+                } catch (Exception e) {
+                    LOGGER.error("Unexpected error in NIO event loop: ", e);
+                }
+            }
+        }
+
+        /**
+         * Closes every session of this loop and its selector, which ends the loop.
+         */
+        private void closeAll() {
+            for (SelectionKey key : selector.keys()) {
+                close((Session) key.attachment());
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                LOGGER.warn("Error closing an event loop selector.", e);
+            }
+        }
+
+        /**
+         * Registers every channel queued by the accepting thread with this loop's selector.
+         */
+        private void registerPendingChannels() {
+            SocketChannel channel;
+            while ((channel = pendingChannels.poll()) != null) {
+                try {
+                    Session session = new Session(channel, this);
+                    session.key = channel.register(selector, SelectionKey.OP_READ, session);
+                } catch (ClosedChannelException e) {
+                    LOGGER.warn("Client channel closed before it could be registered.");
+                }
+            }
+        }
+
+        /**
+         * Runs every task queued by other threads.
+         */
+        private void runPendingTasks() {
+            Runnable task;
+            while ((task = pendingTasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        /**
+         * Reads available bytes from the session's channel and processes every complete frame.
+         *
+         * @param session the session whose channel is readable
+         */
+        private void read(Session session) {
+            readBuffer.clear();
+            int bytesRead;
+            try {
+                bytesRead = session.channel.read(readBuffer);
+            } catch (IOException e) {
+                LOGGER.error("I/O error: ", e);
+                close(session);
+                return;
+            }
+
+            if (bytesRead < 0) {
+                // Client disconnected
+                LOGGER.info("Client disconnected.");
+                close(session);
+                return;
+            }
+            readBuffer.flip();
+
+            if (session.partial == null) {
+                processFrames(session, readBuffer);
+                if (readBuffer.hasRemaining() && session.channel.isOpen()) {
+                    // Keep the start of an incomplete frame until the rest arrives
+                    session.partial = ByteBuffer.allocate(Math.max(PARTIAL_BUFFER_SIZE, readBuffer.remaining()));
+                    session.partial.put(readBuffer);
+                }
+            } else {
+                session.partial = ensureCapacity(session.partial, readBuffer.remaining());
+                session.partial.put(readBuffer).flip();
+                processFrames(session, session.partial);
+                session.partial = session.partial.hasRemaining() ? session.partial.compact() : null;
+            }
+        }
+
+        /**
+         * Processes every complete frame in the buffer, leaving any incomplete frame unread.
+         * After a frame that may switch the connection's protocol, the rest of the buffer is
+         * left unread until that frame has been handled, since it may be framed in the new protocol.
+         *
+         * @param session the session the bytes were read from
+         * @param buffer the buffer in read mode
+         */
+        private void processFrames(Session session, ByteBuffer buffer) {
+            while (session.channel.isOpen() && !session.framingPaused) {
+                WireProtocol protocol = session.handler.getProtocol();
+                int headerSize = protocol.getHeaderSize();
+                if (buffer.remaining() < headerSize) {
+                    return;
+                }
+
+                int length = headerSize == 2 ? buffer.getShort(buffer.position()) & 0xFFFF : buffer.getInt(buffer.position());
+                if (length < 0 || length > protocol.getMaxPayloadSize()) {
+                    LOGGER.warn("Invalid frame length {}, closing connection", length);
+                    close(session);
+                    return;
+                }
+                if (buffer.remaining() < headerSize + length) {
+                    return;
+                }
+
+                byte[] frame = new byte[headerSize + length];
+                buffer.get(frame);
+                boolean pauseFraming = session.handler.mayChangeProtocol(frame);
+                session.framingPaused = pauseFraming;
+                session.submit(() -> dispatch(session, frame, pauseFraming));
+            }
+        }
+
+        /**
+         * Resumes processing the frames read while a frame that may switch the connection's
+         * protocol was handled, now framed in the protocol it left the connection in.
+         *
+         * @param session the session whose framing was paused
+         */
+        private void resumeFrames(Session session) {
+            session.framingPaused = false;
+            if (session.partial != null) {
+                session.partial.flip();
+                processFrames(session, session.partial);
+                session.partial = session.partial.hasRemaining() ? session.partial.compact() : null;
+            }
+        }
+
+        /**
+         * Decodes one frame, hands it to the session's handler, and queues the response on
+         * the event loop. Runs on a worker thread. If the frame cannot be decoded, or its
+         * response cannot be encoded, the client would never be answered, so the session is
+         * closed as in the blocking modes.
+         *
+         * @param session the session the frame belongs to
+         * @param frame the complete frame including its length prefix
+         * @param resumeFraming whether framing was paused after this frame, to be resumed once it is handled
+         */
+        private void dispatch(Session session, byte[] frame, boolean resumeFraming) {
+            try {
+                ByteBuffer encoded = session.handler.processFrame(frame);
+                execute(() -> send(session, encoded));
+            } catch (JsonSyntaxException e) {
+                LOGGER.error("Invalid JSON format: ", e);
+                execute(() -> close(session));
+            } catch (IOException e) {
+                LOGGER.error("I/O error: ", e);
+                execute(() -> close(session));
+            } catch (Exception e) {
+                LOGGER.error("Unexpected error: ", e);
+                execute(() -> close(session));
+            } finally {
+                if (resumeFraming) {
+                    execute(() -> resumeFrames(session));
+                }
+            }
+        }
+
+        /**
+         * Writes a frame to the session's channel, queueing whatever the socket cannot take
+         * immediately and waiting for write readiness to send the rest.
+         *
+         * @param session the session to write to
+         * @param frame the encoded frame
+         */
+        private void send(Session session, ByteBuffer frame) {
+            if (!session.channel.isOpen()) {
+                return;
+            }
+
+            if (session.writeQueue.isEmpty()) {
+                try {
+                    session.channel.write(frame);
+                } catch (IOException e) {
+                    LOGGER.error("I/O error: ", e);
+                    close(session);
+                    return;
+                }
+                if (!frame.hasRemaining()) {
+                    return;
+                }
+            }
+
+            session.writeQueue.add(frame);
+            session.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        /**
+         * Flushes queued frames to a writable channel and stops waiting for write readiness
+         * once the queue is drained.
+         *
+         * @param session the session whose channel is writable
+         */
+        private void write(Session session) {
+            try {
+                ByteBuffer frame;
+                while ((frame = session.writeQueue.peek()) != null) {
+                    session.channel.write(frame);
+                    if (frame.hasRemaining()) {
+                        return;
+                    }
+                    session.writeQueue.poll();
+                }
+                session.key.interestOps(SelectionKey.OP_READ);
+            } catch (IOException e) {
+                LOGGER.error("I/O error: ", e);
+                close(session);
+            }
+        }
+
+        /**
+         * Closes the session's channel and lets its handler release the session state.
+         *
+         * @param session the session to close
+         */
+        private void close(Session session) {
+            if (!session.channel.isOpen()) {
+                return;
+            }
+
+            if (session.key != null) {
+                session.key.cancel();
+            }
+
+            try {
+                session.channel.close();
+            } catch (IOException e) {
+                LOGGER.warn("Error closing an instance of {}.", session.channel.getClass().getSimpleName(), e);
+            }
+
+            // Release the session state after any request still being processed
+            session.submit(session.handler::close);
+        }
+
+        /**
+         * Returns a buffer in write mode able to take the given number of additional bytes,
+         * copying the existing content into a larger buffer when needed.
+         *
+         * @param buffer the buffer in write mode
+         * @param additional the number of bytes about to be written
+         * @return the given buffer, or a larger copy of it
+         */
+        private static ByteBuffer ensureCapacity(ByteBuffer buffer, int additional) {
+            if (buffer.remaining() >= additional) {
+                return buffer;
+            }
+
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + additional));
+            buffer.flip();
+            larger.put(buffer);
+            return larger;
+        }
+    }
+
+    /**
+     * The per-connection state kept by an event loop.
+     */
+    private static final class Session {
+
+        /**
+         * The client channel.
+         */
+        private final SocketChannel channel;
+
+        /**
+         * The handler holding the client's session state and processing its requests.
+         */
+        private final ServerHandler handler;
+
+        /**
+         * Frames that could not be written immediately, in the order they must be sent.
+         */
+        private final Queue<ByteBuffer> writeQueue = new ArrayDeque<>();
+
+        /**
+         * The selection key of the channel on its event loop.
+         */
+        private SelectionKey key;
+
+        /**
+         * Bytes of an incomplete frame in write mode, or null when no partial frame is pending.
+         * While framing is paused, every byte read since is kept here.
+         */
+        private ByteBuffer partial;
+
+        /**
+         * Whether a frame that may switch the protocol is being handled, during which the
+         * following frames are not processed. Only read and changed by the event loop.
+         */
+        private boolean framingPaused;
+
+        /**
+         * Work waiting to run on a worker thread, in the order it was submitted.
+         */
+        private final Queue<Runnable> work = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Whether a worker thread is currently draining {@link #work}.
+         */
+        private final AtomicBoolean working = new AtomicBoolean();
+
+        /**
+         * Creates a session for the given channel.
+         *
+         * @param channel the accepted client channel
+         * @param eventLoop the event loop that owns the channel
+         */
+        Session(SocketChannel channel, EventLoop eventLoop) {
+            this.channel = channel;
+            this.handler = new ServerHandler(frame -> eventLoop.execute(() -> eventLoop.send(this, frame)));
+        }
+
+        /**
+         * Queues work to run on a worker thread after all work submitted before it, so the
+         * requests of a session are processed one at a time and in order.
+         *
+         * @param task the work to run
+         */
+        void submit(Runnable task) {
+            work.add(task);
+            if (working.compareAndSet(false, true)) {
+                WORKERS.execute(this::drain);
+            }
+        }
+
+        /**
+         * Runs queued work until none is left. Re-checks the queue after releasing the
+         * working flag so work submitted concurrently is never stranded.
+         */
+        private void drain() {
+            do {
+                Runnable task;
+                while ((task = work.poll()) != null) {
+                    task.run();
+                }
+                working.set(false);
+            } while (!work.isEmpty() && working.compareAndSet(false, true));
+        }
+    }
+}
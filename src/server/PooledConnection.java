@@ -0,0 +1,80 @@
+package server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A database connection owned by the {@link DatabaseHelper} pool, together with the prepared
+ * statements created on it. Each statement is prepared once per connection and reused, so
+ * SQLite parses every query only once per connection instead of on every call.
+ * <p>
+ * A PooledConnection is only ever used by one thread at a time, the thread that borrowed it
+ * from the pool, so its statement cache needs no synchronization.
+ */
+class PooledConnection implements AutoCloseable {
+
+    /**
+     * The underlying database connection.
+     */
+    private final Connection connection;
+
+    /**
+     * The prepared statements of this connection, keyed by their SQL.
+     */
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+    /**
+     * Wraps a database connection.
+     *
+     * @param connection the connection to wrap
+     */
+    PooledConnection(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Returns the cached prepared statement for the SQL, preparing it on first use.
+     * The parameters of a reused statement are cleared.
+     *
+     * @param sql the SQL of the statement
+     * @return the prepared statement
+     * @throws SQLException if database error occurs
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        } else {
+            statement.clearParameters();
+        }
+        return statement;
+    }
+
+    /**
+     * Returns the underlying database connection, for statements that are not cached and
+     * for transaction control.
+     *
+     * @return the database connection
+     */
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Closes every cached statement and the underlying connection.
+     *
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public void close() throws SQLException {
+        for (PreparedStatement statement : statements.values()) {
+            statement.close();
+        }
+        statements.clear();
+        connection.close();
+    }
+}
@@ -0,0 +1,434 @@
+package server;
+
+import model.User;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the presence of every logged-in user in memory: the {@link ServerHandler} serving the
+ * user's connection and whether the user is available to receive game invitations.
+ * <p>
+ * Presence is the most volatile data of the server, so it is never written to the database.
+ * Handlers register their user after a successful login, unregister when the connection is
+ * closed, and refresh the availability of the players involved whenever a game changes
+ * status. If a user logs in again from another connection, the newest session replaces the
+ * previous one. Since nothing is persisted, a crash cannot leave users marked online.
+ * <p>
+ * The set of available users, the lobby, is versioned: every user joining or leaving it
+ * increments the lobby revision and is recorded in a bounded change log. A client that sends
+ * the last revision it has seen receives only the users added and removed since, see
+ * {@link #getLobby(String, long)}.
+ */
+public class PresenceRegistry {
+
+    /**
+     * Lazily holds the only class instance.
+     */
+    private static class InstanceHolder {
+        private static final PresenceRegistry INSTANCE = new PresenceRegistry();
+    }
+
+    /**
+     * The maximum number of lobby changes kept. Clients further behind receive the full lobby.
+     */
+    private static final int MAX_LOBBY_CHANGES = 10_000;
+
+    /**
+     * The presence of logged-in users, keyed by username.
+     */
+    private final Map<String, Presence> presences = new ConcurrentHashMap<>();
+
+    /**
+     * The most recent lobby changes, oldest first.
+     */
+    private final Deque<LobbyChange> lobbyChanges = new ArrayDeque<>();
+
+    /**
+     * Makes the changes to the lobby and their revision atomic.
+     */
+    private final Lock lobbyLock = new ReentrantLock();
+
+    /**
+     * The revision of the lobby, incremented by every change.
+     */
+    private long revision;
+
+    /**
+     * A getter for the singleton class
+     * @return An instance of PresenceRegistry class
+     */
+    public static PresenceRegistry getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * A private constructor
+     */
+    private PresenceRegistry() {
+    }
+
+    /**
+     * Registers a logged-in user and the handler serving it, replacing any previous session.
+     *
+     * @param user the logged-in user
+     * @param handler the handler serving the user's connection
+     */
+    public void register(User user, ServerHandler handler) {
+        Presence presence = new Presence(handler, user.getDisplayName());
+        presence.available = EventStore.getInstance().isUserAvailable(user.getUsername());
+
+        lobbyLock.lock();
+        try {
+            Presence previous = presences.put(user.getUsername(), presence);
+            if (presence.available) {
+                // A new session may come with a new display name, so it is always announced
+                recordChange(user.getUsername(), presence.displayName);
+            } else if (previous != null && previous.available) {
+                recordChange(user.getUsername(), null);
+            }
+        } finally {
+            lobbyLock.unlock();
+        }
+    }
+
+    /**
+     * Removes a user's presence if it is still served by the given handler.
+     *
+     * @param username the username of the user
+     * @param handler the handler that is closing
+     */
+    public void unregister(String username, ServerHandler handler) {
+        lobbyLock.lock();
+        try {
+            Presence presence = presences.get(username);
+            if (presence != null && presence.handler == handler) {
+                presences.remove(username);
+                if (presence.available) {
+                    recordChange(username, null);
+                }
+            }
+        } finally {
+            lobbyLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the presence of every logged-in user at once, taking the lobby lock a single time.
+     *
+     * @return the handlers of the removed users
+     */
+    public List<ServerHandler> unregisterAll() {
+        List<ServerHandler> handlers = new ArrayList<>();
+        lobbyLock.lock();
+        try {
+            for (Map.Entry<String, Presence> entry : presences.entrySet()) {
+                handlers.add(entry.getValue().handler);
+                if (entry.getValue().available) {
+                    recordChange(entry.getKey(), null);
+                }
+            }
+            presences.clear();
+        } finally {
+            lobbyLock.unlock();
+        }
+        return handlers;
+    }
+
+    /**
+     * Recomputes whether a logged-in user is available from the user's events. Must be called
+     * for both players whenever a game changes status.
+     *
+     * @param username the username of the user
+     */
+    public void refresh(String username) {
+        lobbyLock.lock();
+        try {
+            Presence presence = presences.get(username);
+            if (presence == null) {
+                return;
+            }
+
+            boolean available = EventStore.getInstance().isUserAvailable(username);
+            if (available != presence.available) {
+                presence.available = available;
+                recordChange(username, available ? presence.displayName : null);
+            }
+        } finally {
+            lobbyLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the handler serving a user.
+     *
+     * @param username the username of the user
+     * @return the user's handler, or null if the user is not logged in
+     */
+    public ServerHandler getHandler(String username) {
+        Presence presence = presences.get(username);
+        return presence == null ? null : presence.handler;
+    }
+
+    /**
+     * Get list of all users that are logged in and available to play a game, except the given user.
+     *
+     * @param username the username of the user looking for available users
+     * @return a list of {@link User} without passwords
+     */
+    public List<User> getAvailableUsers(String username) {
+        List<User> users = new ArrayList<>();
+        for (Map.Entry<String, Presence> entry : presences.entrySet()) {
+            Presence presence = entry.getValue();
+            if (presence.available && !entry.getKey().equals(username)) {
+                users.add(new User(entry.getKey(), "", presence.displayName, true));
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Returns the lobby as seen by a user, either in full or as the changes since a revision
+     * the user has already seen. The full lobby is returned when the revision is negative, or
+     * when it is too old to be covered by the change log or newer than the current revision,
+     * as after a server restart.
+     *
+     * @param username the username of the user looking for available users
+     * @param sinceRevision the last revision the user has seen, or -1 for the full lobby
+     * @return the {@link Lobby} at the current revision
+     */
+    public Lobby getLobby(String username, long sinceRevision) {
+        lobbyLock.lock();
+        try {
+            LobbyChange oldest = lobbyChanges.peekFirst();
+            long oldestCovered = oldest == null ? revision : oldest.revision - 1;
+            if (sinceRevision < oldestCovered || sinceRevision > revision) {
+                return new Lobby(revision, getAvailableUsers(username), null, null);
+            }
+
+            // Only the last change of each user since the revision matters
+            Map<String, LobbyChange> changes = new LinkedHashMap<>();
+            Iterator<LobbyChange> iterator = lobbyChanges.descendingIterator();
+            while (iterator.hasNext()) {
+                LobbyChange change = iterator.next();
+                if (change.revision <= sinceRevision) {
+                    break;
+                }
+                if (!change.username.equals(username)) {
+                    changes.putIfAbsent(change.username, change);
+                }
+            }
+
+            List<User> addedUsers = new ArrayList<>();
+            List<String> removedUsers = new ArrayList<>();
+            for (LobbyChange change : changes.values()) {
+                if (change.displayName != null) {
+                    addedUsers.add(new User(change.username, "", change.displayName, true));
+                } else {
+                    removedUsers.add(change.username);
+                }
+            }
+            return new Lobby(revision, null, addedUsers, removedUsers);
+        } finally {
+            lobbyLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the current lobby revision.
+     *
+     * @return the number of lobby changes since the server started
+     */
+    public long getRevision() {
+        lobbyLock.lock();
+        try {
+            return revision;
+        } finally {
+            lobbyLock.unlock();
+        }
+    }
+
+    /**
+     * Checks if a user is logged in.
+     *
+     * @param username the username of the user
+     * @return true if the user is logged in, otherwise false
+     */
+    public boolean isOnline(String username) {
+        return presences.containsKey(username);
+    }
+
+    /**
+     * Returns the number of logged-in users.
+     *
+     * @return the number of registered sessions
+     */
+    public int size() {
+        return presences.size();
+    }
+
+    /**
+     * Records a user joining or leaving the lobby. Must be called holding the lobby lock.
+     *
+     * @param username the username of the user
+     * @param displayName the user's display name if the user joined the lobby, or null if the user left it
+     */
+    private void recordChange(String username, String displayName) {
+        revision++;
+        lobbyChanges.addLast(new LobbyChange(revision, username, displayName));
+        if (lobbyChanges.size() > MAX_LOBBY_CHANGES) {
+            lobbyChanges.removeFirst();
+        }
+    }
+
+    /**
+     * The lobby at a given revision, either in full or as the changes since an earlier revision.
+     */
+    public static final class Lobby {
+
+        /**
+         * The revision of the lobby.
+         */
+        private final long revision;
+
+        /**
+         * Every available user, or null if only the changes are included.
+         */
+        private final List<User> availableUsers;
+
+        /**
+         * The users that joined the lobby, or null if the full lobby is included.
+         */
+        private final List<User> addedUsers;
+
+        /**
+         * The usernames of the users that left the lobby, or null if the full lobby is included.
+         */
+        private final List<String> removedUsers;
+
+        /**
+         * Creates a lobby view.
+         *
+         * @param revision the revision of the lobby
+         * @param availableUsers every available user, or null
+         * @param addedUsers the users that joined the lobby, or null
+         * @param removedUsers the usernames of the users that left the lobby, or null
+         */
+        Lobby(long revision, List<User> availableUsers, List<User> addedUsers, List<String> removedUsers) {
+            this.revision = revision;
+            this.availableUsers = availableUsers;
+            this.addedUsers = addedUsers;
+            this.removedUsers = removedUsers;
+        }
+
+        /**
+         * Returns the revision of the lobby.
+         *
+         * @return the revision
+         */
+        public long getRevision() {
+            return revision;
+        }
+
+        /**
+         * Returns every available user.
+         *
+         * @return the available users, or null if only the changes are included
+         */
+        public List<User> getAvailableUsers() {
+            return availableUsers;
+        }
+
+        /**
+         * Returns the users that joined the lobby.
+         *
+         * @return the added users, or null if the full lobby is included
+         */
+        public List<User> getAddedUsers() {
+            return addedUsers;
+        }
+
+        /**
+         * Returns the usernames of the users that left the lobby.
+         *
+         * @return the removed usernames, or null if the full lobby is included
+         */
+        public List<String> getRemovedUsers() {
+            return removedUsers;
+        }
+    }
+
+    /**
+     * A user joining or leaving the lobby.
+     */
+    private static final class LobbyChange {
+
+        /**
+         * The lobby revision the change produced.
+         */
+        private final long revision;
+
+        /**
+         * The username of the user.
+         */
+        private final String username;
+
+        /**
+         * The user's display name if the user joined the lobby, or null if the user left it.
+         */
+        private final String displayName;
+
+        /**
+         * Creates a lobby change.
+         *
+         * @param revision the lobby revision the change produced
+         * @param username the username of the user
+         * @param displayName the user's display name, or null if the user left the lobby
+         */
+        LobbyChange(long revision, String username, String displayName) {
+            this.revision = revision;
+            this.username = username;
+            this.displayName = displayName;
+        }
+    }
+
+    /**
+     * The presence of a single logged-in user.
+     */
+    private static final class Presence {
+
+        /**
+         * The handler serving the user's connection.
+         */
+        private final ServerHandler handler;
+
+        /**
+         * The user's display name, shown in the lobby.
+         */
+        private final String displayName;
+
+        /**
+         * Whether the user is available to receive game invitations. Changed holding the lobby lock.
+         */
+        private volatile boolean available;
+
+        /**
+         * Creates the presence of a logged-in user.
+         *
+         * @param handler the handler serving the user's connection
+         * @param displayName the user's display name
+         */
+        Presence(ServerHandler handler, String displayName) {
+            this.handler = handler;
+            this.displayName = displayName;
+        }
+    }
+}
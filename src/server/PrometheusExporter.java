@@ -0,0 +1,203 @@
+package server;
+
+import model.Event;
+import socket.Request.RequestType;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+
+/**
+ * Formats the live state of the server in the Prometheus text exposition format, so it can be
+ * scraped from the {@link AdminServer} instead of being parsed out of the logs.
+ * <p>
+ * Every value is read when the endpoint is scraped: the connection and request counters and the
+ * latency summaries come from {@link ServerMetrics}, the sessions from the
+ * {@link PresenceRegistry}, the games and the write-behind queue from the {@link EventStore},
+ * the connection pool from the {@link DatabaseHelper}, and the heap and threads from the JVM.
+ */
+public class PrometheusExporter {
+
+    /**
+     * The content type of the text exposition format.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * The quantiles reported for every latency summary.
+     */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    /**
+     * The NIO front end whose queues are reported, or null if the server does not run in NIO mode.
+     */
+    private final NioSocketServer nioServer;
+
+    /**
+     * Creates an exporter.
+     *
+     * @param nioServer the NIO front end whose queues are reported, or null if there is none
+     */
+    public PrometheusExporter(NioSocketServer nioServer) {
+        this.nioServer = nioServer;
+    }
+
+    /**
+     * Returns the current value of every metric.
+     *
+     * @return the metrics in the text exposition format
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(16 * 1024);
+        ServerMetrics metrics = ServerMetrics.getInstance();
+
+        header(out, "tictactoe_connections_open", "gauge", "Client connections open.");
+        sample(out, "tictactoe_connections_open", "", metrics.getOpenConnections());
+        header(out, "tictactoe_connections_total", "counter", "Client connections opened since the server started.");
+        sample(out, "tictactoe_connections_total", "", metrics.getConnectionsOpened());
+        header(out, "tictactoe_sessions", "gauge", "Users logged in.");
+        sample(out, "tictactoe_sessions", "", PresenceRegistry.getInstance().size());
+
+        EventStore eventStore = EventStore.getInstance();
+        header(out, "tictactoe_events", "gauge", "Events held in memory by status, finished events until they are flushed.");
+        for (Map.Entry<Event.EventStatus, Integer> entry : eventStore.countByStatus().entrySet()) {
+            sample(out, "tictactoe_events", label("status", entry.getKey().name()), entry.getValue());
+        }
+        header(out, "tictactoe_event_store_pending_flush", "gauge", "Changed events waiting to be written to the database.");
+        sample(out, "tictactoe_event_store_pending_flush", "", eventStore.getPendingFlushCount());
+        header(out, "tictactoe_move_log_pending", "gauge", "Moves waiting to be appended to the move log.");
+        sample(out, "tictactoe_move_log_pending", "", MoveLog.getInstance().getPendingCount());
+        header(out, "tictactoe_match_queue_waiting", "gauge", "Players waiting in the queue for an opponent.");
+        sample(out, "tictactoe_match_queue_waiting", "", MatchQueue.getInstance().getWaitingCount());
+        header(out, "tictactoe_rating_updates_pending", "gauge", "Finished games waiting to update the ratings of their players.");
+        sample(out, "tictactoe_rating_updates_pending", "", RatingStore.getInstance().getPendingCount());
+
+        header(out, "tictactoe_requests_total", "counter", "Requests handled by type.");
+        for (Map.Entry<RequestType, LatencyHistogram> entry : metrics.getRequestLatencies().entrySet()) {
+            sample(out, "tictactoe_requests_total", label("type", entry.getKey().name()), entry.getValue().getCount());
+        }
+        header(out, "tictactoe_request_failures_total", "counter", "Requests answered with a FAILURE status by type.");
+        for (RequestType type : metrics.getRequestLatencies().keySet()) {
+            sample(out, "tictactoe_request_failures_total", label("type", type.name()), metrics.getRequestFailures(type));
+        }
+        header(out, "tictactoe_request_duration_seconds", "summary", "Time taken to handle a request by type.");
+        for (Map.Entry<RequestType, LatencyHistogram> entry : metrics.getRequestLatencies().entrySet()) {
+            summary(out, "tictactoe_request_duration_seconds", "type", entry.getKey().name(), entry.getValue());
+        }
+
+        header(out, "tictactoe_database_call_duration_seconds", "summary",
+                "Time taken by a database call, including the wait for a connection, by method.");
+        for (Map.Entry<String, LatencyHistogram> entry : metrics.getDatabaseLatencies().entrySet()) {
+            summary(out, "tictactoe_database_call_duration_seconds", "method", entry.getKey(), entry.getValue());
+        }
+        header(out, "tictactoe_codec_duration_seconds", "summary", "Time taken to encode or decode a message by protocol.");
+        for (Map.Entry<String, LatencyHistogram> entry : metrics.getCodecLatencies().entrySet()) {
+            summary(out, "tictactoe_codec_duration_seconds", "operation", entry.getKey(), entry.getValue());
+        }
+
+        DatabaseHelper database = DatabaseHelper.getInstance();
+        header(out, "tictactoe_db_readers", "gauge", "Reader connections in the pool.");
+        sample(out, "tictactoe_db_readers", "", database.getReaderPoolSize());
+        header(out, "tictactoe_db_readers_idle", "gauge", "Reader connections not borrowed.");
+        sample(out, "tictactoe_db_readers_idle", "", database.getIdleReaderCount());
+        header(out, "tictactoe_db_readers_waiting", "gauge", "Threads waiting for a reader connection.");
+        sample(out, "tictactoe_db_readers_waiting", "", database.getWaitingReaderCount());
+        header(out, "tictactoe_db_writers_waiting", "gauge", "Threads waiting for the writer connection.");
+        sample(out, "tictactoe_db_writers_waiting", "", database.getWaitingWriterCount());
+
+        if (nioServer != null) {
+            header(out, "tictactoe_nio_pending_tasks", "gauge", "Tasks and connections waiting for an event loop.");
+            sample(out, "tictactoe_nio_pending_tasks", "", nioServer.getPendingTaskCount());
+        }
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+        header(out, "jvm_memory_bytes_used", "gauge", "Used bytes of a memory area.");
+        sample(out, "jvm_memory_bytes_used", label("area", "heap"), heap.getUsed());
+        sample(out, "jvm_memory_bytes_used", label("area", "nonheap"), nonHeap.getUsed());
+        header(out, "jvm_memory_bytes_committed", "gauge", "Committed bytes of a memory area.");
+        sample(out, "jvm_memory_bytes_committed", label("area", "heap"), heap.getCommitted());
+        sample(out, "jvm_memory_bytes_committed", label("area", "nonheap"), nonHeap.getCommitted());
+        header(out, "jvm_memory_bytes_max", "gauge", "Maximum bytes of a memory area, or -1 if undefined.");
+        sample(out, "jvm_memory_bytes_max", label("area", "heap"), heap.getMax());
+        sample(out, "jvm_memory_bytes_max", label("area", "nonheap"), nonHeap.getMax());
+
+        // Virtual threads are not counted by the thread MXBean, only their carrier threads are
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        header(out, "jvm_threads_current", "gauge", "Live platform threads.");
+        sample(out, "jvm_threads_current", "", threads.getThreadCount());
+        header(out, "jvm_threads_daemon", "gauge", "Live platform daemon threads.");
+        sample(out, "jvm_threads_daemon", "", threads.getDaemonThreadCount());
+        header(out, "jvm_threads_peak", "gauge", "Most live platform threads since the JVM started.");
+        sample(out, "jvm_threads_peak", "", threads.getPeakThreadCount());
+        return out.toString();
+    }
+
+    /**
+     * Appends the HELP and TYPE lines of a metric.
+     *
+     * @param out the output
+     * @param name the name of the metric
+     * @param type the type of the metric
+     * @param help the description of the metric
+     */
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Appends a sample line.
+     *
+     * @param out the output
+     * @param name the name of the sample
+     * @param labels the formatted labels, without braces, or an empty string
+     * @param value the value
+     */
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    /**
+     * Appends the quantiles, sum and count of a latency histogram recorded in nanoseconds, in seconds.
+     *
+     * @param out the output
+     * @param name the name of the summary
+     * @param labelName the name of the label telling the histograms apart
+     * @param labelValue the value of the label
+     * @param histogram the latencies in nanoseconds
+     */
+    private static void summary(StringBuilder out, String name, String labelName, String labelValue,
+                                LatencyHistogram histogram) {
+        String labels = label(labelName, labelValue);
+        for (double quantile : QUANTILES) {
+            sample(out, name, labels + "," + label("quantile", Double.toString(quantile)),
+                    histogram.getPercentile(quantile * 100) / 1e9);
+        }
+        sample(out, name + "_sum", labels, histogram.getSum() / 1e9);
+        sample(out, name + "_count", labels, histogram.getCount());
+    }
+
+    /**
+     * Formats a label, escaping its value.
+     *
+     * @param name the name of the label
+     * @param value the value of the label
+     * @return the formatted label
+     */
+    private static String label(String name, String value) {
+        String escaped = value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return name + "=\"" + escaped + "\"";
+    }
+}
@@ -0,0 +1,223 @@
+package server;
+
+import model.PlayerStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the Elo rating of every player, read by the rated matchmaking queue and updated as
+ * games end.
+ * <p>
+ * Ratings are cached in memory once read, and only ever changed by a single background thread,
+ * which applies the result of every finished game in the order the games ended and writes the
+ * two new ratings to the database. The same thread adds the result to the win, loss, draw and
+ * abort counts of the players. Ending a game only queues its result, so the rating update and
+ * the database writes never add to the latency of the request that ended it. Until updating is
+ * started, such as in benchmarks, results are applied on the calling thread.
+ */
+public class RatingStore {
+
+    /**
+     * Logger for the rating store.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RatingStore.class);
+
+    /**
+     * The largest change of rating a single game can make.
+     */
+    private static final int K_FACTOR = 32;
+
+    /**
+     * Lazily holds the only class instance.
+     */
+    private static class InstanceHolder {
+        private static final RatingStore INSTANCE = new RatingStore();
+    }
+
+    /**
+     * The ratings read or computed so far, keyed by username.
+     */
+    private final Map<String, Integer> ratings = new ConcurrentHashMap<>();
+
+    /**
+     * The number of results queued but not applied yet.
+     */
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    /**
+     * Applies the results in order, or null if updating has not been started.
+     */
+    private volatile ExecutorService updater;
+
+    /**
+     * A getter for the singleton class
+     * @return An instance of RatingStore class
+     */
+    public static RatingStore getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * A private constructor
+     */
+    private RatingStore() {
+    }
+
+    /**
+     * Starts applying the results on a background thread. Does nothing if updating has
+     * already been started.
+     */
+    public synchronized void startUpdating() {
+        if (updater != null) {
+            return;
+        }
+
+        updater = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rating-updater");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stops the background thread once every queued result has been applied.
+     */
+    public synchronized void stopUpdating() {
+        ExecutorService updater = this.updater;
+        if (updater == null) {
+            return;
+        }
+
+        this.updater = null;
+        updater.shutdown();
+        try {
+            if (!updater.awaitTermination(5, TimeUnit.SECONDS)) {
+                LOGGER.warn("{} rating updates not applied", pendingCount.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the rating of a player, reading it from the database the first time.
+     *
+     * @param username the username of the player
+     * @return the rating, or {@link PlayerStats#INITIAL_RATING} if the player has not finished a game
+     * @throws SQLException if database error occurs
+     */
+    public int getRating(String username) throws SQLException {
+        Integer rating = ratings.get(username);
+        if (rating != null) {
+            return rating;
+        }
+
+        // A rating cached meanwhile is at least as recent as the one read, so it is kept
+        int storedRating = DatabaseHelper.getInstance().getRating(username);
+        Integer cachedRating = ratings.putIfAbsent(username, storedRating);
+        return cachedRating == null ? storedRating : cachedRating;
+    }
+
+    /**
+     * Queues the result of a finished game, to be applied to the ratings of both players.
+     *
+     * @param winner the username of the winner, or of either player for a draw
+     * @param loser the username of the loser, or of the other player for a draw
+     * @param draw whether the game ended without a winner
+     */
+    public void recordGame(String winner, String loser, boolean draw) {
+        submit(() -> applyGame(winner, loser, draw));
+    }
+
+    /**
+     * Queues changes to the win, loss, draw and abort counts of players, to be added to their
+     * stored statistics.
+     *
+     * @param changes the changes of each player, only the counts are used
+     */
+    public void recordStats(Collection<PlayerStats> changes) {
+        submit(() -> applyStats(changes));
+    }
+
+    /**
+     * Queues an update to be applied by the background thread, or applies it right away if
+     * updating has not been started.
+     *
+     * @param update the update to apply
+     */
+    private void submit(Runnable update) {
+        ExecutorService updater = this.updater;
+        if (updater != null) {
+            pendingCount.incrementAndGet();
+            try {
+                updater.execute(() -> {
+                    pendingCount.decrementAndGet();
+                    update.run();
+                });
+                return;
+            } catch (Exception e) {
+                // Updating was stopped meanwhile, the update is applied right away
+                pendingCount.decrementAndGet();
+            }
+        }
+        update.run();
+    }
+
+    /**
+     * Returns the number of results queued but not applied yet.
+     *
+     * @return the number of pending rating and statistics updates
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Applies the result of a game to the ratings of both players and writes them to the database.
+     *
+     * @param winner the username of the winner, or of either player for a draw
+     * @param loser the username of the loser, or of the other player for a draw
+     * @param draw whether the game ended without a winner
+     */
+    private void applyGame(String winner, String loser, boolean draw) {
+        try {
+            int winnerRating = getRating(winner);
+            int loserRating = getRating(loser);
+
+            // The winner scores 1 and the loser 0, or both score one half for a draw
+            double expected = 1 / (1 + Math.pow(10, (loserRating - winnerRating) / 400.0));
+            int change = (int) Math.round(K_FACTOR * ((draw ? 0.5 : 1) - expected));
+            ratings.put(winner, winnerRating + change);
+            ratings.put(loser, loserRating - change);
+            DatabaseHelper.getInstance().setRatings(Map.of(winner, winnerRating + change, loser, loserRating - change));
+        } catch (SQLException e) {
+            LOGGER.error("Database error while updating the ratings of {} and {}", winner, loser, e);
+        } catch (Exception e) {
+            LOGGER.error("Unexpected error while updating the ratings of {} and {}", winner, loser, e);
+        }
+    }
+
+    /**
+     * Adds changes to the win, loss, draw and abort counts of players to the database.
+     *
+     * @param changes the changes of each player
+     */
+    private void applyStats(Collection<PlayerStats> changes) {
+        try {
+            DatabaseHelper.getInstance().addPlayerStats(changes);
+        } catch (SQLException e) {
+            LOGGER.error("Database error while updating the statistics of {} players", changes.size(), e);
+        } catch (Exception e) {
+            LOGGER.error("Unexpected error while updating the statistics of {} players", changes.size(), e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package server;
+
+import com.google.gson.Gson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import socket.GsonProvider;
+import socket.Request;
+import socket.Request.RequestType;
+import socket.Response;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logs a sample of the handled requests together with their responses, instead of logging the
+ * payload of every message. One request in {@link #getSampleRate()} is traced, picked at
+ * random, so the cost of serializing and logging a payload is only paid for the sampled ones.
+ * <p>
+ * Traces are logged at INFO on this class's logger, which the logging configuration can route
+ * or silence independently of the other loggers. The credentials of REGISTER and LOGIN requests
+ * are never logged. The data of a BATCH request is not logged either, as each of its requests
+ * is handled, and may be traced, as a request of its own.
+ */
+public class RequestTracer {
+
+    /**
+     * Logger for the request traces.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RequestTracer.class);
+
+    /**
+     * Lazily holds the only class instance.
+     */
+    private static class InstanceHolder {
+        private static final RequestTracer INSTANCE = new RequestTracer();
+    }
+
+    /**
+     * Serializes the traced responses.
+     */
+    private final Gson gson = GsonProvider.getInstance();
+
+    /**
+     * Traces one request in this many, or none if 0.
+     */
+    private volatile int sampleRate;
+
+    /**
+     * A getter for the singleton class
+     * @return An instance of RequestTracer class
+     */
+    public static RequestTracer getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * A private constructor, tracing is disabled until a sample rate is set
+     */
+    private RequestTracer() {
+    }
+
+    /**
+     * Sets how many requests are handled for every traced one.
+     *
+     * @param sampleRate trace one request in this many, 1 to trace every request, or 0 to trace none
+     * @throws IllegalArgumentException if the sample rate is negative
+     */
+    public void setSampleRate(int sampleRate) {
+        if (sampleRate < 0) {
+            throw new IllegalArgumentException("Trace sample rate cannot be negative");
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Returns how many requests are handled for every traced one.
+     *
+     * @return the sample rate, or 0 if tracing is disabled
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Logs a handled request and its response if the request is sampled.
+     *
+     * @param request the request
+     * @param response the response to the request
+     * @param nanos the time taken to handle the request, in nanoseconds
+     */
+    public void trace(Request request, Response response, long nanos) {
+        int rate = sampleRate;
+        if (rate == 0 || (rate > 1 && ThreadLocalRandom.current().nextInt(rate) != 0) || !LOGGER.isInfoEnabled()) {
+            return;
+        }
+
+        RequestType type = request.getType();
+        String data = request.getData();
+        if (type == RequestType.REGISTER || type == RequestType.LOGIN) {
+            data = "<credentials>";
+        } else if (type == RequestType.BATCH) {
+            // The batched requests may carry credentials, and are traced on their own anyway
+            data = "<batch>";
+        }
+        LOGGER.info("{} id={} took {} us, request: {}, response: {}", type, request.getId(), nanos / 1000,
+                data, gson.toJson(response));
+    }
+}
@@ -0,0 +1,137 @@
+package server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Brings the database schema up to date by running every {@link Migration} that has not been
+ * applied yet, in version order.
+ * <p>
+ * The applied versions are recorded in the {@code schema_version} table. Each migration runs
+ * in its own transaction together with the row recording it, so a failed migration leaves the
+ * schema at the previous version and is retried on the next startup.
+ */
+public class SchemaMigrator {
+
+    /**
+     * Logger for the applied migrations
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    /**
+     * Table name for schema version table
+     */
+    private static final String TABLE_SCHEMA_VERSION = "schema_version";
+
+    /**
+     * The connection the migrations run on
+     */
+    private final Connection connection;
+
+    /**
+     * The known migrations, in version order
+     */
+    private final List<Migration> migrations;
+
+    /**
+     * Creates a migrator for the given connection and migrations.
+     *
+     * @param connection the connection the migrations run on
+     * @param migrations the known migrations, in any order
+     */
+    public SchemaMigrator(Connection connection, List<Migration> migrations) {
+        this.connection = connection;
+        this.migrations = new ArrayList<>(migrations);
+        this.migrations.sort(Comparator.comparingInt(Migration::getVersion));
+    }
+
+    /**
+     * Runs every migration newer than the current schema version.
+     *
+     * @return the schema version after migrating
+     * @throws SQLException if a migration fails
+     */
+    public int migrate() throws SQLException {
+        createVersionTable();
+
+        int currentVersion = getCurrentVersion();
+        for (Migration migration : migrations) {
+            if (migration.getVersion() <= currentVersion) {
+                continue;
+            }
+
+            long start = System.currentTimeMillis();
+            apply(migration);
+            currentVersion = migration.getVersion();
+            LOGGER.info("Migrated schema to version {} ({}) in {} ms", currentVersion,
+                    migration.getDescription(), System.currentTimeMillis() - start);
+        }
+        return currentVersion;
+    }
+
+    /**
+     * Returns the current schema version of the database.
+     *
+     * @return the highest applied version, or 0 if no migration has been applied
+     * @throws SQLException if database error occurs
+     */
+    public int getCurrentVersion() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT MAX(version) FROM " + TABLE_SCHEMA_VERSION + ";")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Create the schema version table if it does not already exist
+     */
+    private void createVersionTable() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + TABLE_SCHEMA_VERSION + " ("
+                    + "version INTEGER PRIMARY KEY, "
+                    + "description TEXT, "
+                    + "applied_at INTEGER"
+                    + ");");
+        }
+    }
+
+    /**
+     * Runs a migration and records it in a single transaction
+     * @param migration the migration to run
+     * @throws SQLException if the migration fails, in which case it is rolled back
+     */
+    private void apply(Migration migration) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : migration.getStatements()) {
+                    statement.executeUpdate(sql);
+                }
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + TABLE_SCHEMA_VERSION
+                    + "(version, description, applied_at) VALUES(?, ?, ?);")) {
+                statement.setInt(1, migration.getVersion());
+                statement.setString(2, migration.getDescription());
+                statement.setLong(3, System.currentTimeMillis());
+                statement.executeUpdate();
+            }
+
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+}
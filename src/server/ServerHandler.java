@@ -1,39 +1,67 @@
 package server;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import model.Board;
 import model.Event;
+import model.Move;
+import model.PlayerStats;
 import model.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import socket.BatchResponse;
+import socket.BinaryCodec;
 import socket.GamingResponse;
+import socket.GsonProvider;
+import socket.HistoryResponse;
+import socket.JsonStreamCodec;
+import socket.LeaderboardResponse;
+import socket.MatchResponse;
+import socket.PageOptions;
 import socket.PairingResponse;
+import socket.PollOptions;
 import socket.Request;
 import socket.Response;
 import socket.Response.ResponseStatus;
+import socket.WireProtocol;
 
 import java.io.*;
+import java.lang.reflect.Type;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 /**
  * Handles I/O communication between the server and a single client connection.
- * This class extends Thread to enable concurrent handling of multiple client connections.
+ * This class implements Runnable so the server can run each session on a platform or a
+ * virtual thread, enabling concurrent handling of multiple client connections.
  * <p>
  * Each ServerHandler instance manages all communication with one connected client,
  * processing various request types and maintaining the client session state. The handler
  * runs in its own thread to allow the main server to continue accepting new connections
- * while serving existing clients.
+ * while serving existing clients. It avoids {@code synchronized} blocks on the request path
+ * so that virtual threads running it are not pinned to their carrier thread.
  * <p>
  * This class is responsible for processing all request types from clients, including
  * login, registration, game invitations, and gameplay moves.
  */
-public class ServerHandler extends Thread {
+public class ServerHandler implements Runnable {
 
     /**
-     * Gson class used to do serialization
+     * Gson class used to do serialization, shared by every handler
      */
     private final Gson gson;
 
@@ -63,6 +91,115 @@ public class ServerHandler extends Thread {
      */
     private DataOutputStream dataOutputStream;
 
+    /**
+     * Guards the output stream so pushed messages from other sessions never interleave with
+     * a regular response. A lock is used instead of {@code synchronized} to avoid pinning
+     * virtual threads during the blocking write.
+     */
+    private final Lock writeLock = new ReentrantLock();
+
+    /**
+     * Delivers encoded frames of pushed messages for handlers that do not own a blocking socket,
+     * or null when pushed messages are written to {@link #dataOutputStream}.
+     */
+    private final Consumer<ByteBuffer> pushWriter;
+
+    /**
+     * Frames of pushed messages waiting to be written to the blocking socket by the
+     * {@link #pushThread}, so the session pushing a message never blocks on this client's socket.
+     */
+    private final BlockingQueue<ByteBuffer> pushQueue = new ArrayBlockingQueue<>(MAX_QUEUED_PUSHES);
+
+    /**
+     * Writes the frames of {@link #pushQueue} to the blocking socket, or null until the client
+     * subscribes to pushed moves.
+     */
+    private volatile Thread pushThread;
+
+    /**
+     * Whether the connection has been closed, so it is only cleaned up once.
+     */
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * Whether the server is shutting down. Requests received afterwards are refused, and the
+     * sessions and events are cleaned up in bulk instead of by each handler.
+     */
+    private static volatile boolean draining;
+
+    /**
+     * The number of requests being handled by every handler.
+     */
+    private static final AtomicInteger ACTIVE_REQUESTS = new AtomicInteger();
+
+    /**
+     * The protocol of the connection's requests and responses, negotiated with SET_PROTOCOL.
+     */
+    private volatile WireProtocol protocol = WireProtocol.JSON;
+
+    /**
+     * The place of this session's user in the {@link MatchQueue}, or null if the user did not
+     * join it or already received the game.
+     */
+    private MatchQueue.Ticket queueTicket;
+
+    /**
+     * Whether the client asked to have the opponent's moves pushed instead of polling for them.
+     */
+    private volatile boolean subscribedToMoves;
+
+    /**
+     * Longest time in milliseconds a long-polling request may be held by the server.
+     */
+    private static final long MAX_POLL_TIMEOUT = 60_000;
+
+    /**
+     * Number of entries of a history or leaderboard page when the client does not set a limit.
+     */
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
+    /**
+     * Largest number of entries of a history or leaderboard page.
+     */
+    private static final int MAX_PAGE_SIZE = 100;
+
+    /**
+     * Notifies long-polling UPDATE_PAIRING requests of changes to a user's pairing information, keyed by username.
+     */
+    static final ChangeNotifier<String> PAIRING_CHANGES = new ChangeNotifier<>();
+
+    /**
+     * Notifies long-polling REQUEST_MOVE requests of moves and status changes of a game, keyed by eventId.
+     */
+    static final ChangeNotifier<Integer> EVENT_CHANGES = new ChangeNotifier<>();
+
+    /**
+     * The pairing version this client was last answered with, used to hold long-polling
+     * UPDATE_PAIRING requests until something new happens.
+     */
+    private long pairingVersion = -1;
+
+    /**
+     * Largest number of pushed messages waiting to be written to a blocking socket. Pushes to a
+     * client that falls this far behind fail, and its moves are delivered by polling instead.
+     */
+    private static final int MAX_QUEUED_PUSHES = 16;
+
+    /**
+     * Largest number of requests a BATCH request may carry.
+     */
+    private static final int MAX_BATCH_SIZE = 32;
+
+    /**
+     * The type of the data of a BATCH request.
+     */
+    private static final Type REQUEST_LIST_TYPE = new TypeToken<List<Request>>() { }.getType();
+
+    /**
+     * The name of the SET_PROTOCOL request type as it appears in a JSON request.
+     */
+    private static final byte[] SET_PROTOCOL_NAME = Request.RequestType.SET_PROTOCOL.name().getBytes(StandardCharsets.US_ASCII);
+
     /**
      * Logger for server handler responses.
      */
@@ -75,7 +212,9 @@ public class ServerHandler extends Thread {
      */
     public ServerHandler(Socket socket) {
         this.socket = socket;
-        this.gson = new GsonBuilder().serializeNulls().create();
+        this.pushWriter = null;
+        this.gson = GsonProvider.getInstance();
+        ServerMetrics.getInstance().recordConnectionOpened();
 
         try {
             this.dataInputStream = new DataInputStream(socket.getInputStream());
@@ -85,8 +224,25 @@ public class ServerHandler extends Thread {
         }
     }
 
+    /**
+     * Creates a ServerHandler that is not bound to a blocking socket. Used by the
+     * {@link NioSocketServer} front end, which owns the channel and performs all framing
+     * itself and only relies on this handler for request processing and session state.
+     *
+     * @param pushWriter delivers encoded frames of pushed messages to the client's connection
+     */
+    ServerHandler(Consumer<ByteBuffer> pushWriter) {
+        this.socket = null;
+        this.pushWriter = pushWriter;
+        this.gson = GsonProvider.getInstance();
+        ServerMetrics.getInstance().recordConnectionOpened();
+    }
+
     /**
      * Main request handler that processes client requests and returns appropriate responses.
+     * The response carries the correlation ID of the request, if it has one. The latency and
+     * outcome of every request, including one whose handler throws, are recorded in the
+     * {@link ServerMetrics}, and a sample of the requests is logged by the {@link RequestTracer}.
      *
      * @param request the request object received from the client
      * @return a response object based on the request type
@@ -97,6 +253,44 @@ public class ServerHandler extends Thread {
             return new Response(ResponseStatus.FAILURE, "Request cannot be null");
         }
 
+        // Counted before checking for a shutdown, so a drain never misses a request being accepted
+        ACTIVE_REQUESTS.incrementAndGet();
+        long start = System.nanoTime();
+        long elapsed;
+        Response response = null;
+        try {
+            response = draining
+                    ? new Response(ResponseStatus.FAILURE, "Server is shutting down")
+                    : dispatchRequest(request);
+        } finally {
+            ACTIVE_REQUESTS.decrementAndGet();
+
+            // A request whose handler threw is recorded as failed
+            elapsed = System.nanoTime() - start;
+            if (request.getType() != null) {
+                ServerMetrics.getInstance().recordRequest(request.getType(), elapsed,
+                        response != null && response.getStatus() == ResponseStatus.SUCCESS);
+            }
+        }
+
+        // Let clients that pipeline requests match the response to its request
+        response.setId(request.getId());
+        RequestTracer.getInstance().trace(request, response, elapsed);
+        return response;
+    }
+
+    /**
+     * Hands a request to the handler of its type.
+     *
+     * @param request the request object received from the client
+     * @return a response object based on the request type
+     */
+    private Response dispatchRequest(Request request) {
+        if (request.getType() == null) {
+            LOGGER.warn("Received request without a supported type");
+            return new Response(ResponseStatus.FAILURE, "Unsupported request type: null");
+        }
+
         // Use switch-case to decide among the two request types
         switch (request.getType()) {
             case REGISTER:
@@ -105,12 +299,12 @@ public class ServerHandler extends Thread {
             case SEND_MOVE:
                 return handleSendMoveRequest(request);
             case REQUEST_MOVE:
-                return handleRequestMove();
+                return handleRequestMove(gson.fromJson(request.getData(), PollOptions.class));
             case LOGIN:
                 User loginUser = gson.fromJson(request.getData(), User.class);
                 return handleLogin(loginUser);
             case UPDATE_PAIRING:
-                return handleUpdatePairing();
+                return handleUpdatePairing(gson.fromJson(request.getData(), PollOptions.class));
             case SEND_INVITATION:
                 String opponent = request.getData();
                 return handleSendInvitation(opponent);
@@ -125,6 +319,22 @@ public class ServerHandler extends Thread {
                 return handleAbortGame();
             case COMPLETE_GAME:
                 return handleCompleteGame();
+            case SUBSCRIBE_MOVES:
+                return handleSubscribeMoves();
+            case SET_PROTOCOL:
+                return handleSetProtocol(request.getData());
+            case BATCH:
+                return handleBatch(request.getData());
+            case GET_HISTORY:
+                return handleGetHistory(gson.fromJson(request.getData(), PageOptions.class));
+            case GET_LEADERBOARD:
+                return handleGetLeaderboard(gson.fromJson(request.getData(), PageOptions.class));
+            case JOIN_QUEUE:
+                return handleJoinQueue(gson.fromJson(request.getData(), PollOptions.class), false);
+            case JOIN_RATED_QUEUE:
+                return handleJoinQueue(gson.fromJson(request.getData(), PollOptions.class), true);
+            case LEAVE_QUEUE:
+                return handleLeaveQueue();
             default:
                 // Return failed response if neither of the two types is sent
                 LOGGER.warn("Unsupported request type: {}", request.getType());
@@ -132,6 +342,181 @@ public class ServerHandler extends Thread {
         }
     }
 
+    /**
+     * Deserializes a request received from the client, handles it, and serializes the response.
+     * Shared by the blocking {@link #run()} loop and the {@link NioSocketServer} front end so both
+     * connection modes process requests identically.
+     *
+     * @param serializedRequest the JSON request read from the client
+     * @return the JSON response to send back to the client
+     * @throws JsonSyntaxException if the request is not valid JSON
+     */
+    String processRequest(String serializedRequest) {
+        // Deserialize request
+        long start = System.nanoTime();
+        Request request = gson.fromJson(serializedRequest, Request.class);
+        ServerMetrics.getInstance().recordCodec("JSON decode", System.nanoTime() - start);
+
+        // Handle request and get response
+        Response response = handleRequest(request);
+
+        // Serialize response
+        start = System.nanoTime();
+        String serializedResponse = gson.toJson(response);
+        ServerMetrics.getInstance().recordCodec("JSON encode", System.nanoTime() - start);
+        return serializedResponse;
+    }
+
+    /**
+     * Decodes a frame received from the client in the connection's protocol, handles the request,
+     * and encodes the response in the same protocol. Shared by the blocking {@link #run()} loop
+     * and the {@link NioSocketServer} front end.
+     *
+     * @param frame the complete frame including its length prefix
+     * @return the complete frame of the response, in read mode
+     * @throws IOException if the frame cannot be decoded or the response does not fit in a frame
+     * @throws JsonSyntaxException if a JSON request is not valid JSON
+     */
+    ByteBuffer processFrame(byte[] frame) throws IOException {
+        // A SET_PROTOCOL request is answered in the protocol it was sent in
+        WireProtocol requestProtocol = protocol;
+        int headerSize = requestProtocol.getHeaderSize();
+        long start = System.nanoTime();
+        Request request;
+        switch (requestProtocol) {
+            case JSON:
+                String serializedRequest = new DataInputStream(new ByteArrayInputStream(frame)).readUTF();
+                return ByteBuffer.wrap(encodeJsonFrame(processRequest(serializedRequest)));
+            case JSON_STREAM:
+                request = JsonStreamCodec.decode(gson, frame, headerSize, frame.length - headerSize, Request.class);
+                break;
+            default:
+                request = BinaryCodec.decodeRequest(frame, headerSize, frame.length - headerSize);
+                break;
+        }
+        ServerMetrics.getInstance().recordCodec(requestProtocol + " decode", System.nanoTime() - start);
+
+        return encodeFrame(handleRequest(request), requestProtocol);
+    }
+
+    /**
+     * Encodes a response as a complete frame in the given protocol.
+     *
+     * @param response the response to encode
+     * @param protocol the protocol to encode the response in
+     * @return the complete frame including its length prefix, in read mode
+     * @throws IOException if the response does not fit in a frame
+     */
+    private ByteBuffer encodeFrame(Response response, WireProtocol protocol) throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer frame;
+        switch (protocol) {
+            case JSON:
+                frame = ByteBuffer.wrap(encodeJsonFrame(gson.toJson(response)));
+                break;
+            case JSON_STREAM:
+                frame = JsonStreamCodec.encode(gson, response);
+                break;
+            default:
+                byte[] payload = BinaryCodec.encodeResponse(response, gson);
+                if (payload.length > protocol.getMaxPayloadSize()) {
+                    throw new IOException("Encoded response too long: " + payload.length + " bytes");
+                }
+
+                frame = ByteBuffer.allocate(protocol.getHeaderSize() + payload.length);
+                frame.putInt(payload.length).put(payload).flip();
+                break;
+        }
+        ServerMetrics.getInstance().recordCodec(protocol + " encode", System.nanoTime() - start);
+        return frame;
+    }
+
+    /**
+     * Encodes a JSON message in the same format as {@link DataOutputStream#writeUTF(String)}.
+     *
+     * @param serializedResponse the JSON message
+     * @return the complete frame including its length prefix
+     * @throws IOException if the encoded message is too long for the framing
+     */
+    private static byte[] encodeJsonFrame(String serializedResponse) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(WireProtocol.JSON.getHeaderSize() + serializedResponse.length());
+        new DataOutputStream(encoded).writeUTF(serializedResponse);
+        return encoded.toByteArray();
+    }
+
+    /**
+     * Writes a complete frame to the blocking socket.
+     *
+     * @param frame the frame, in read mode
+     * @throws IOException if the frame cannot be written
+     */
+    private void writeFrame(ByteBuffer frame) throws IOException {
+        dataOutputStream.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+        dataOutputStream.flush();
+    }
+
+    /**
+     * Reads the next complete frame from the blocking socket, framed by the connection's protocol.
+     *
+     * @return the frame including its length prefix
+     * @throws IOException if the frame cannot be read or its length is invalid
+     */
+    private byte[] readFrame() throws IOException {
+        WireProtocol frameProtocol = protocol;
+        int headerSize = frameProtocol.getHeaderSize();
+        int length = headerSize == 2 ? dataInputStream.readUnsignedShort() : dataInputStream.readInt();
+        if (length < 0 || length > frameProtocol.getMaxPayloadSize()) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+
+        byte[] frame = new byte[headerSize + length];
+        if (headerSize == 2) {
+            ByteBuffer.wrap(frame).putShort((short) length);
+        } else {
+            ByteBuffer.wrap(frame).putInt(length);
+        }
+        dataInputStream.readFully(frame, headerSize, length);
+        return frame;
+    }
+
+    /**
+     * Returns the protocol of the connection's requests and responses.
+     *
+     * @return the negotiated {@link WireProtocol}
+     */
+    WireProtocol getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * Checks whether a frame may switch the connection's protocol, without decoding it. A frame
+     * may do so if it is a SET_PROTOCOL request or carries one, such as a BATCH request. The
+     * check errs on the side of caution: any frame naming SET_PROTOCOL is reported.
+     *
+     * @param frame the complete frame including its length prefix, in the connection's protocol
+     * @return true if handling the frame may switch the protocol of the next frames
+     */
+    boolean mayChangeProtocol(byte[] frame) {
+        int headerSize = protocol.getHeaderSize();
+        if (protocol == WireProtocol.BINARY
+                && BinaryCodec.peekRequestType(frame, headerSize) == Request.RequestType.SET_PROTOCOL) {
+            return true;
+        }
+
+        // The request type is spelled out in JSON, as is every request type of a BATCH
+        byte[] name = SET_PROTOCOL_NAME;
+        for (int start = headerSize; start <= frame.length - name.length; start++) {
+            int i = 0;
+            while (i < name.length && frame[start + i] == name[i]) {
+                i++;
+            }
+            if (i == name.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Handles SEND_MOVE requests by deserializing the move data from the request
      * and delegating to the handleSendMove(move) function for processing.
@@ -159,35 +544,70 @@ public class ServerHandler extends Thread {
     }
 
     /**
-     * Handles SEND_MOVE requests by deserializing the move data from the request
-     * and delegating to the handleSendMove(move) function for processing.
+     * Handles SEND_MOVE requests by validating the move against the board of the game and
+     * playing it. A move that wins the game or fills the board completes the game, so the
+     * players do not have to send COMPLETE_GAME.
      *
      * @param move the integer representing the move to be processed
-     * @return a response indicating success or failure of the move
+     * @return a GamingResponse echoing the move with the board after it, inactive if the move
+     * ended the game, or a failed response if the move is not allowed
      */
     private Response handleSendMove(int move) {
         // Get the current username
         String currentUser = getCurrentUsername();
         try {
             // Retrieve the event from the database using currentEventId
-            Event event = DatabaseHelper.getInstance().getEvent(currentEventId);
-            if (event == null) {
-                LOGGER.warn("No event found for eventId {}", currentEventId);
-                return new Response(ResponseStatus.FAILURE, "No active game event found");
+            Event event = EventStore.getInstance().getEvent(currentEventId);
+            Response rejection = checkMove(event, currentUser, move);
+            if (rejection != null) {
+                return rejection;
             }
 
-            // Check to see if the last move was not made by the same user
-            if (event.getTurn() != null && event.getTurn().equals(currentUser)) {
-                return new Response(ResponseStatus.FAILURE, "Cannot make consecutive moves. Wait for opponent's move.");
+            // A move pushed straight to a subscribed opponent must not be delivered again by polling
+            ServerHandler opponentHandler = getOpponentHandler(event);
+            boolean pushMove = opponentHandler != null && opponentHandler.isSubscribedToMoves();
+
+            // Check the move again and play it in one step, since the game may have changed since it was read
+            Event played = EventStore.getInstance().playMove(event.getEventId(), currentUser, move, pushMove);
+            if (played == null) {
+                // Another request changed the game since it was read, such as the opponent aborting it
+                rejection = checkMove(EventStore.getInstance().getEvent(currentEventId), currentUser, move);
+                return rejection != null ? rejection
+                        : new Response(ResponseStatus.FAILURE, "Move " + move + " was not played, the game changed meanwhile.");
+            }
+            event = played;
+            boolean isSender = currentUser.equals(event.getSender());
+            int board = event.getBoard();
+            boolean gameOver = event.getStatus() == Event.EventStatus.COMPLETED;
+
+            // Record the move for replays, only once it has been played
+            MoveLog.getInstance().append(new Move(event.getEventId(), Integer.bitCount(board), currentUser, move,
+                    System.currentTimeMillis()));
+
+            GamingResponse pushedMove = new GamingResponse(move, !gameOver);
+            pushedMove.setBoard(Board.seenBy(board, !isSender));
+            pushedMove.setStatus(ResponseStatus.SUCCESS);
+            pushedMove.setMessage(gameOver ? describeResult(board, !isSender) : "Opponent Move");
+            if (pushMove && !opponentHandler.push(pushedMove)) {
+                // The push failed, fall back to delivering the move through polling
+                EventStore.getInstance().setMove(event.getEventId(), board, move);
             }
 
-            // Set the move and turn on the event and persist to DB
-            event.setMove(move);
-            event.setTurn(currentUser);
-            DatabaseHelper.getInstance().updateEvent(event);
+            if (gameOver) {
+                EVENT_CHANGES.remove(event.getEventId());
+                refreshPresence(List.of(event.getSender(), event.getOpponent()));
+                PAIRING_CHANGES.signalAll();
+                recordResult(event);
+            } else {
+                EVENT_CHANGES.signal(event.getEventId());
+            }
 
-            // Return a standard Response with SUCCESS status and appropriate message
-            return new Response(ResponseStatus.SUCCESS, "Move " + move + " received successfully");
+            // Echo the move with the board, so the client does not have to track the game itself
+            GamingResponse response = new GamingResponse(move, !gameOver);
+            response.setBoard(Board.seenBy(board, isSender));
+            response.setStatus(ResponseStatus.SUCCESS);
+            response.setMessage(gameOver ? describeResult(board, isSender) : "Move " + move + " received successfully");
+            return response;
         } catch (SQLException e) {
             LOGGER.error("Database error while saving move", e);
             return new Response(ResponseStatus.FAILURE, "Database error: " + e.getMessage());
@@ -197,19 +617,88 @@ public class ServerHandler extends Thread {
         }
     }
 
+    /**
+     * Checks whether a player may make a move in a game.
+     *
+     * @param event the game, or null if it does not exist
+     * @param username the username of the player
+     * @param move the cell the player plays
+     * @return a failed response telling why the move is not allowed, or null if it is allowed
+     */
+    private Response checkMove(Event event, String username, int move) {
+        if (event == null) {
+            LOGGER.warn("No event found for eventId {}", currentEventId);
+            return new Response(ResponseStatus.FAILURE, "No active game event found");
+        }
+
+        if (event.getStatus() != Event.EventStatus.PLAYING) {
+            return new Response(ResponseStatus.FAILURE, "Game is not in playing status. Current status: " + event.getStatus());
+        }
+
+        // Check to see if the last move was not made by the same user
+        if (event.getTurn() != null && event.getTurn().equals(username)) {
+            return new Response(ResponseStatus.FAILURE, "Cannot make consecutive moves. Wait for opponent's move.");
+        }
+
+        // Check the move designates a free cell of the board
+        if (!Board.isCell(move)) {
+            return new Response(ResponseStatus.FAILURE, "Invalid move: " + move + ". Cells are numbered 0 to 8.");
+        }
+        if (!Board.isFree(event.getBoard(), move)) {
+            return new Response(ResponseStatus.FAILURE, "Invalid move: cell " + move + " is already taken.");
+        }
+        return null;
+    }
+
+    /**
+     * Handles REQUEST_MOVE requests. Without poll options the opponent's move is returned
+     * immediately; otherwise the request is held until the opponent moves, the game ends,
+     * or the requested timeout elapses.
+     *
+     * @param options the long-poll options sent by the client, or null to answer immediately
+     * @return a GamingResponse containing the opponent's move and game status
+     */
+    private GamingResponse handleRequestMove(PollOptions options) {
+        long timeout = options == null ? 0 : Math.min(options.getTimeout(), MAX_POLL_TIMEOUT);
+        long deadline = System.currentTimeMillis() + timeout;
+        int eventId = currentEventId;
+
+        while (true) {
+            // Read the version before the event so a change in between is not missed
+            long version = EVENT_CHANGES.getVersion(eventId);
+            GamingResponse response = handleRequestMove();
+
+            long remaining = deadline - System.currentTimeMillis();
+            if (response.getMove() != -1 || !response.getActive() || response.getStatus() != ResponseStatus.SUCCESS
+                    || eventId == -1 || remaining <= 0 || draining) {
+                return response;
+            }
+
+            try {
+                if (!EVENT_CHANGES.await(eventId, version, remaining)) {
+                    return response;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return response;
+            }
+        }
+    }
+
     /**
      * Processes the move by updating the game state and ensuring valid turn order.
      * This method retrieves the corresponding {@link Event} from the database using
      * the handler's {@code currentEventId}, checks to see if the opponent still wants to play or
-     * aborted, validates turn order, sets the move and the current turn on that Event, and
-     * persists the change via
-     * {@link server.DatabaseHelper#updateEvent(Event)}.
+     * aborted, returns the opponent's move with the board once and clears it from the Event,
+     * persisting the change via
+     * {@link server.EventStore#setMove(int, int, int)}. Once a move ended the game, the response is
+     * inactive and its message tells the result.
      *
-     * @return a GamingResponse containing the opponent's move and game status
+     * @return a GamingResponse containing the opponent's move, the board and game status
      */
     private GamingResponse handleRequestMove() {
         try {
-            Event event = DatabaseHelper.getInstance().getEvent(currentEventId);
+            Event event = EventStore.getInstance().getEvent(currentEventId);
             GamingResponse response;
 
             if (event == null) {
@@ -221,26 +710,33 @@ public class ServerHandler extends Thread {
                     // opponent aborted the game
                     response = new GamingResponse(-1, false);
                     response.setMessage("Opponent Abort");
-                } else if (event.getStatus() == Event.EventStatus.COMPLETED) {
+                } else if (event.getStatus() == Event.EventStatus.COMPLETED && !Board.isOver(event.getBoard())) {
                     // opponent does not want to play
                     response = new GamingResponse(-1, false);
                     response.setMessage("Opponent Deny Play Again");
                 } else {
                     int move = event.getMove();
                     String user = event.getTurn();
+                    boolean gameOver = event.getStatus() == Event.EventStatus.COMPLETED;
 
                     // Check if there is a valid move made by the opponent, else set the move as -1
                     if ((move == -1) || (user == null) || (user.equals(this.currentUsername))) {
                         // No move available from opponent - create response with move = -1
-                        response = new GamingResponse(-1, true);
+                        response = new GamingResponse(-1, !gameOver);
                     } else {
                         // Valid move available - create response with the actual move
-                        response = new GamingResponse(move, true);
+                        response = new GamingResponse(move, !gameOver);
+
+                        // Delete the move once it is sent to the opponent and persist. The turn is
+                        // kept, so the opponent cannot move twice in a row.
+                        EventStore.getInstance().setMove(event.getEventId(), event.getBoard(), -1);
+                    }
 
-                        // Delete the move and clear turn once it is sent to the opponent and persist
-                        event.setMove(-1);
-                        event.setTurn(null);
-                        DatabaseHelper.getInstance().updateEvent(event);
+                    boolean isSender = this.currentUsername.equals(event.getSender());
+                    response.setBoard(Board.seenBy(event.getBoard(), isSender));
+                    if (gameOver) {
+                        // the game ended on a move, which the response carries if it was the opponent's
+                        response.setMessage(describeResult(event.getBoard(), isSender));
                     }
                 }
             }
@@ -303,7 +799,7 @@ public class ServerHandler extends Thread {
 
         try {
             // check if opponent is available to receive an invitation
-            if (!DatabaseHelper.getInstance().isUserAvailable(opponent)) {
+            if (!EventStore.getInstance().isUserAvailable(opponent)) {
                 return new Response(ResponseStatus.FAILURE, "opponent is not available");
             }
 
@@ -314,7 +810,8 @@ public class ServerHandler extends Thread {
             event.setMove(-1);
 
             // save event to database
-            DatabaseHelper.getInstance().createEvent(event);
+            EventStore.getInstance().createEvent(event);
+            PAIRING_CHANGES.signal(opponent);
 
             return new Response(ResponseStatus.SUCCESS, "invitation sent successfully");
         } catch (Exception e) {
@@ -324,11 +821,14 @@ public class ServerHandler extends Thread {
     }
 
     /**
-     * After successful login, a user can now start requesting pairing updates
+     * After successful login, a user can now start requesting pairing updates. Without poll
+     * options the pairing information is returned immediately; otherwise the request is held
+     * until it changes since this client was last answered, or the requested timeout elapses.
      *
+     * @param options the long-poll options sent by the client, or null to answer immediately
      * @return PairingResponse containing available users, invitations, responses, or a failure if not logged in
      */
-    private PairingResponse handleUpdatePairing() {
+    private PairingResponse handleUpdatePairing(PollOptions options) {
         // checks to see if the user is logged in
         if (currentUsername == null || currentUsername.isEmpty()) {
             PairingResponse response = new PairingResponse(null, null, null);
@@ -337,14 +837,29 @@ public class ServerHandler extends Thread {
             return response;
         }
 
+        if (options != null && options.getTimeout() > 0) {
+            try {
+                PAIRING_CHANGES.await(currentUsername, pairingVersion, Math.min(options.getTimeout(), MAX_POLL_TIMEOUT));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Read the version before the pairing information so a change in between is not missed
+        pairingVersion = PAIRING_CHANGES.getVersion(currentUsername);
+
         try {
-            // retrieve pairing information
-            List<User> availableUsers = DatabaseHelper.getInstance().getAvailableUsers(currentUsername);
-            Event userInvitation = DatabaseHelper.getInstance().getUserInvitation(currentUsername);
-            Event userInvitationResponse = DatabaseHelper.getInstance().getUserInvitationResponse(currentUsername);
+            // retrieve pairing information, only the lobby changes if the client sent a revision
+            long sinceRevision = options == null ? -1 : options.getRevision();
+            PresenceRegistry.Lobby lobby = PresenceRegistry.getInstance().getLobby(currentUsername, sinceRevision);
+            Event userInvitation = EventStore.getInstance().getUserInvitation(currentUsername);
+            Event userInvitationResponse = EventStore.getInstance().getUserInvitationResponse(currentUsername);
 
             // create and return PairingResponse
-            PairingResponse response = new PairingResponse(availableUsers, userInvitation, userInvitationResponse);
+            PairingResponse response = new PairingResponse(lobby.getAvailableUsers(), userInvitation, userInvitationResponse);
+            response.setRevision(lobby.getRevision());
+            response.setAddedUsers(lobby.getAddedUsers());
+            response.setRemovedUsers(lobby.getRemovedUsers());
             response.setStatus(ResponseStatus.SUCCESS);
             response.setMessage("pairing information retrieved successfully");
             return response;
@@ -370,7 +885,7 @@ public class ServerHandler extends Thread {
     public Response handleAcceptInvitation(int eventId) {
         try {
             // Retrieve the event from the database
-            Event event = DatabaseHelper.getInstance().getEvent(eventId);
+            Event event = EventStore.getInstance().getEvent(eventId);
 
             // Check if the event exists
             if (event == null) {
@@ -387,16 +902,30 @@ public class ServerHandler extends Thread {
                 return new Response(ResponseStatus.FAILURE, "You are not authorized to accept this invitation.");
             }
 
-            // Abort any other pending invitations for this user
-            DatabaseHelper.getInstance().abortAllUserEvents(currentUsername);
+            if (!leaveQueue()) {
+                return new Response(ResponseStatus.FAILURE, "An opponent was already found in the queue.");
+            }
+
+            // Update event status to ACCEPTED, unless the sender aborted it meanwhile
+            event = EventStore.getInstance().transition(eventId, Event.EventStatus.PENDING, Event.EventStatus.ACCEPTED);
+            if (event == null) {
+                return new Response(ResponseStatus.FAILURE, "This invitation is no longer available.");
+            }
 
-            // Update event status to ACCEPTED
-            event.setStatus(Event.EventStatus.ACCEPTED);
-            DatabaseHelper.getInstance().updateEvent(event);
+            // Abort any other pending invitations for this user
+            Set<String> affectedUsers = EventStore.getInstance().abortAllUserEvents(currentUsername, eventId);
 
             // Set current event ID
             currentEventId = eventId;
 
+            // Update the availability of both players and of the players whose invitations were aborted
+            affectedUsers.add(currentUsername);
+            affectedUsers.add(event.getSender());
+            refreshPresence(affectedUsers);
+
+            // Both players are no longer available and other invitations of this user were aborted
+            PAIRING_CHANGES.signalAll();
+
             // Return success message
             return new Response(ResponseStatus.SUCCESS, "Invitation accepted successfully.");
         } catch (SQLException e) {
@@ -416,7 +945,7 @@ public class ServerHandler extends Thread {
      */
     private Response handleDeclineInvitation(int eventId) {
         try {
-            Event event = DatabaseHelper.getInstance().getEvent(eventId);
+            Event event = EventStore.getInstance().getEvent(eventId);
 
             if (event == null) {
                 return new Response(ResponseStatus.FAILURE, "Event with ID " + eventId + " does not exist.");
@@ -430,8 +959,11 @@ public class ServerHandler extends Thread {
                 return new Response(ResponseStatus.FAILURE, "You are not authorized to decline this invitation.");
             }
 
-            event.setStatus(Event.EventStatus.DECLINED);
-            DatabaseHelper.getInstance().updateEvent(event);
+            event = EventStore.getInstance().transition(eventId, Event.EventStatus.PENDING, Event.EventStatus.DECLINED);
+            if (event == null) {
+                return new Response(ResponseStatus.FAILURE, "Only pending invitations can be declined.");
+            }
+            PAIRING_CHANGES.signal(event.getSender());
 
             return new Response(ResponseStatus.SUCCESS, "Invitation declined successfully.");
 
@@ -463,10 +995,11 @@ public class ServerHandler extends Thread {
                 return new Response(ResponseStatus.FAILURE, "Invalid password for user '" + user.getUsername() + "'.");
             }
 
-            // All inputs are valid - set currentUsername, set user as online, and update database
+            // All inputs are valid - set currentUsername and register the user as online
             this.currentUsername = user.getUsername();
             dbUser.setOnline(true);
-            DatabaseHelper.getInstance().updateUser(dbUser);
+            PresenceRegistry.getInstance().register(dbUser, this);
+            PAIRING_CHANGES.signalAll();
 
             return new Response(ResponseStatus.SUCCESS, "User '" + user.getUsername() + "' logged in successfully!");
         } catch (SQLException e) {
@@ -487,7 +1020,7 @@ public class ServerHandler extends Thread {
     private Response handleAcknowledgeResponse(int eventId) {
         try {
             // Use the database helper function getEvent() to retrieve the Event object
-            Event event = DatabaseHelper.getInstance().getEvent(eventId);
+            Event event = EventStore.getInstance().getEvent(eventId);
 
             // Case 1: Check if the event exists, and if the sender of the event is the current username
             if (event == null) {
@@ -503,21 +1036,32 @@ public class ServerHandler extends Thread {
 
             // Case 2: If the response was DECLINED, set the status to ABORTED
             if (currentStatus == Event.EventStatus.DECLINED) {
-                event.setStatus(Event.EventStatus.ABORTED);
-                DatabaseHelper.getInstance().updateEvent(event);
+                if (EventStore.getInstance().transition(eventId, Event.EventStatus.DECLINED, Event.EventStatus.ABORTED) == null) {
+                    return new Response(ResponseStatus.FAILURE, "The invitation response was already acknowledged.");
+                }
                 return new Response(ResponseStatus.SUCCESS, "Game invitation declined and aborted successfully.");
             } else if (currentStatus == Event.EventStatus.ACCEPTED) {
                 // Case 3: If the response was ACCEPTED
+                if (!leaveQueue()) {
+                    return new Response(ResponseStatus.FAILURE, "An opponent was already found in the queue.");
+                }
+
+                // Update the event status to PLAYING, unless the opponent aborted it meanwhile
+                event = EventStore.getInstance().transition(eventId, Event.EventStatus.ACCEPTED, Event.EventStatus.PLAYING);
+                if (event == null) {
+                    return new Response(ResponseStatus.FAILURE, "The invitation is no longer accepted.");
+                }
 
                 // Set currentEventId to eventId
                 this.currentEventId = eventId;
 
                 // Abort any other pending invitation the user might have from other players
-                DatabaseHelper.getInstance().abortAllUserEvents(this.currentUsername);
+                Set<String> affectedUsers = EventStore.getInstance().abortAllUserEvents(this.currentUsername, eventId);
 
-                // Update the event status to PLAYING
-                event.setStatus(Event.EventStatus.PLAYING);
-                DatabaseHelper.getInstance().updateEvent(event);
+                affectedUsers.add(this.currentUsername);
+                affectedUsers.add(event.getOpponent());
+                refreshPresence(affectedUsers);
+                PAIRING_CHANGES.signalAll();
 
                 return new Response(ResponseStatus.SUCCESS, "Game invitation accepted! Game is now starting.");
             } else {
@@ -541,20 +1085,33 @@ public class ServerHandler extends Thread {
     private Response handleCompleteGame() {
         try {
             // Use the database helper function getEvent() to retrieve the Event object
-            Event event = DatabaseHelper.getInstance().getEvent(currentEventId);
+            Event event = EventStore.getInstance().getEvent(currentEventId);
 
             // Check if the event exists and the status is PLAYING
             if (event == null) {
                 return new Response(ResponseStatus.FAILURE, "No active game event found.");
             }
 
+            if (event.getStatus() == Event.EventStatus.COMPLETED && Board.isOver(event.getBoard())) {
+                // The server completed the game on its final move, nothing is left to do
+                this.currentEventId = -1;
+                return new Response(ResponseStatus.SUCCESS, "Game completed successfully!");
+            }
+
             if (event.getStatus() != Event.EventStatus.PLAYING) {
                 return new Response(ResponseStatus.FAILURE, "Game is not in playing status. Current status: " + event.getStatus());
             }
 
-            // Change the status to COMPLETED
-            event.setStatus(Event.EventStatus.COMPLETED);
-            DatabaseHelper.getInstance().updateEvent(event);
+            // Change the status to COMPLETED, unless the game ended meanwhile
+            event = EventStore.getInstance().transition(currentEventId, Event.EventStatus.PLAYING, Event.EventStatus.COMPLETED);
+            if (event == null) {
+                return new Response(ResponseStatus.FAILURE, "Game is no longer in playing status.");
+            }
+            pushGameEnd(event, "Opponent Deny Play Again");
+            EVENT_CHANGES.remove(event.getEventId());
+            refreshPresence(List.of(event.getSender(), event.getOpponent()));
+            PAIRING_CHANGES.signalAll();
+            recordResult(event);
 
             // Reset currentEventId to -1
             this.currentEventId = -1;
@@ -578,7 +1135,7 @@ public class ServerHandler extends Thread {
     private Response handleAbortGame() {
         try {
             // Use the database helper function getEvent() to retrieve the Event object
-            Event event = DatabaseHelper.getInstance().getEvent(currentEventId);
+            Event event = EventStore.getInstance().getEvent(currentEventId);
 
             // Check if the event exists and the status is PLAYING
             if (event == null) {
@@ -589,9 +1146,16 @@ public class ServerHandler extends Thread {
                 return new Response(ResponseStatus.FAILURE, "Game is not in playing status. Current status: " + event.getStatus());
             }
 
-            // Change the status to ABORTED
-            event.setStatus(Event.EventStatus.ABORTED);
-            DatabaseHelper.getInstance().updateEvent(event);
+            // Change the status to ABORTED, unless the game ended meanwhile
+            event = EventStore.getInstance().transition(currentEventId, Event.EventStatus.PLAYING, Event.EventStatus.ABORTED);
+            if (event == null) {
+                return new Response(ResponseStatus.FAILURE, "Game is no longer in playing status.");
+            }
+            pushGameEnd(event, "Opponent Abort");
+            EVENT_CHANGES.remove(event.getEventId());
+            refreshPresence(List.of(event.getSender(), event.getOpponent()));
+            PAIRING_CHANGES.signalAll();
+            recordResult(event);
 
             // Reset currentEventId to -1
             this.currentEventId = -1;
@@ -607,6 +1171,487 @@ public class ServerHandler extends Thread {
         }
     }
 
+    /**
+     * Handles SUBSCRIBE_MOVES requests by switching this session from polling to pushed moves.
+     *
+     * @return Response indicating success or failure of the subscription
+     */
+    private Response handleSubscribeMoves() {
+        if (currentUsername == null || currentUsername.isEmpty()) {
+            return new Response(ResponseStatus.FAILURE, "user is not logged in");
+        }
+
+        if (socket != null && pushThread == null) {
+            pushThread = Thread.ofVirtual().name("push-writer-" + currentUsername).start(this::writePushes);
+        }
+        this.subscribedToMoves = true;
+        return new Response(ResponseStatus.SUCCESS, "Subscribed to opponent moves.");
+    }
+
+    /**
+     * Handles JOIN_QUEUE and JOIN_RATED_QUEUE requests by adding the user to the
+     * {@link MatchQueue}, or, when the user is already queued, by checking whether an opponent
+     * was found. With poll options the request is held until an opponent is found or the
+     * requested timeout elapses. Once found, the game is already PLAYING and becomes this
+     * session's current game.
+     *
+     * @param options the long-poll options sent by the client, or null to answer immediately
+     * @param rated whether the user is only paired with players of a similar rating
+     * @return a {@link MatchResponse} holding the game, or no game while still waiting, or a failed response
+     */
+    private Response handleJoinQueue(PollOptions options, boolean rated) {
+        if (currentUsername == null || currentUsername.isEmpty()) {
+            return new Response(ResponseStatus.FAILURE, "user is not logged in");
+        }
+
+        try {
+            if (queueTicket == null || queueTicket.isCancelled()) {
+                if (!EventStore.getInstance().isUserAvailable(currentUsername)) {
+                    return new Response(ResponseStatus.FAILURE, "user is not available");
+                }
+                queueTicket = rated
+                        ? MatchQueue.getInstance().joinRated(currentUsername, RatingStore.getInstance().getRating(currentUsername))
+                        : MatchQueue.getInstance().join(currentUsername);
+            }
+
+            long timeout = options == null ? 0 : Math.min(options.getTimeout(), MAX_POLL_TIMEOUT);
+            Event game = queueTicket.getGame(timeout);
+            MatchResponse response = new MatchResponse(game);
+            response.setStatus(ResponseStatus.SUCCESS);
+            if (game == null) {
+                response.setMessage("Waiting for an opponent");
+            } else {
+                startQueuedGame(game);
+                response.setMessage("Matched with " + (currentUsername.equals(game.getSender()) ? game.getOpponent() : game.getSender()));
+            }
+            return response;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Response(ResponseStatus.FAILURE, "Interrupted while waiting for an opponent");
+        } catch (SQLException e) {
+            LOGGER.error("Database error while starting a game from the queue", e);
+            queueTicket = null;
+            return new Response(ResponseStatus.FAILURE, "Database error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handles LEAVE_QUEUE requests by taking the user out of the {@link MatchQueue}. If an
+     * opponent was already found, the game becomes this session's current game and is returned
+     * with a failed status.
+     *
+     * @return response indicating success or failure of leaving the queue
+     */
+    private Response handleLeaveQueue() {
+        if (queueTicket == null) {
+            return new Response(ResponseStatus.FAILURE, "user is not in the queue");
+        }
+
+        if (leaveQueue()) {
+            return new Response(ResponseStatus.SUCCESS, "Left the queue");
+        }
+
+        try {
+            Event game = queueTicket.getGame(0);
+            startQueuedGame(game);
+            MatchResponse response = new MatchResponse(game);
+            response.setStatus(ResponseStatus.FAILURE);
+            response.setMessage("An opponent was already found");
+            return response;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Response(ResponseStatus.FAILURE, "Interrupted while leaving the queue");
+        } catch (SQLException e) {
+            LOGGER.error("Database error while starting a game from the queue", e);
+            queueTicket = null;
+            return new Response(ResponseStatus.FAILURE, "Database error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Cancels the ticket of this session's user in the {@link MatchQueue}, if any.
+     *
+     * @return true if the user is no longer queued, false if an opponent was already found
+     */
+    private boolean leaveQueue() {
+        if (queueTicket == null || queueTicket.cancel()) {
+            queueTicket = null;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Makes a game started by the {@link MatchQueue} this session's current game.
+     *
+     * @param game the game started
+     */
+    private void startQueuedGame(Event game) {
+        queueTicket = null;
+        currentEventId = game.getEventId();
+    }
+
+    /**
+     * Handles GET_HISTORY requests by returning a page of the finished games of a player, most
+     * recent first. The cursor of a page is the eventId of its last game, and the next page
+     * starts right below it.
+     *
+     * @param options the player and page requested, or null for the first page of the current user's games
+     * @return a {@link HistoryResponse} holding the games of the page, or a failed response
+     */
+    private Response handleGetHistory(PageOptions options) {
+        if (currentUsername == null || currentUsername.isEmpty()) {
+            return new Response(ResponseStatus.FAILURE, "user is not logged in");
+        }
+
+        if (options == null) {
+            options = new PageOptions();
+        }
+        String username = options.getUsername() == null ? currentUsername : options.getUsername();
+        int beforeEventId = Integer.MAX_VALUE;
+        if (options.getCursor() != null) {
+            try {
+                beforeEventId = Integer.parseInt(options.getCursor());
+            } catch (NumberFormatException e) {
+                return new Response(ResponseStatus.FAILURE, "Invalid cursor: " + options.getCursor());
+            }
+        }
+
+        try {
+            // Reading one more game than the page holds tells whether there is a next page
+            int limit = getPageSize(options);
+            List<Event> games = DatabaseHelper.getInstance().getFinishedEvents(username, beforeEventId, limit + 1);
+            String nextCursor = null;
+            if (games.size() > limit) {
+                games.remove(limit);
+                nextCursor = Integer.toString(games.get(limit - 1).getEventId());
+            }
+
+            HistoryResponse response = new HistoryResponse(games, nextCursor);
+            response.setStatus(ResponseStatus.SUCCESS);
+            return response;
+        } catch (SQLException e) {
+            LOGGER.error("Database error while getting history", e);
+            return new Response(ResponseStatus.FAILURE, "Database error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handles GET_LEADERBOARD requests by returning a page of the players ranked by number of
+     * wins. The cursor of a page is the number of wins and the username of its last player,
+     * separated by a colon, and the next page starts right after that player.
+     *
+     * @param options the page requested, or null for the first page
+     * @return a {@link LeaderboardResponse} holding the players of the page, or a failed response
+     */
+    private Response handleGetLeaderboard(PageOptions options) {
+        if (currentUsername == null || currentUsername.isEmpty()) {
+            return new Response(ResponseStatus.FAILURE, "user is not logged in");
+        }
+
+        if (options == null) {
+            options = new PageOptions();
+        }
+        int afterWins = Integer.MAX_VALUE;
+        String afterUsername = "";
+        if (options.getCursor() != null) {
+            int separator = options.getCursor().indexOf(':');
+            try {
+                afterWins = Integer.parseInt(options.getCursor().substring(0, Math.max(separator, 0)));
+                afterUsername = options.getCursor().substring(separator + 1);
+            } catch (NumberFormatException e) {
+                return new Response(ResponseStatus.FAILURE, "Invalid cursor: " + options.getCursor());
+            }
+        }
+
+        try {
+            // Reading one more player than the page holds tells whether there is a next page
+            int limit = getPageSize(options);
+            List<PlayerStats> players = DatabaseHelper.getInstance().getLeaderboard(afterWins, afterUsername, limit + 1);
+            String nextCursor = null;
+            if (players.size() > limit) {
+                players.remove(limit);
+                PlayerStats last = players.get(limit - 1);
+                nextCursor = last.getWins() + ":" + last.getUsername();
+            }
+
+            LeaderboardResponse response = new LeaderboardResponse(players, nextCursor);
+            response.setStatus(ResponseStatus.SUCCESS);
+            return response;
+        } catch (SQLException e) {
+            LOGGER.error("Database error while getting leaderboard", e);
+            return new Response(ResponseStatus.FAILURE, "Database error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of entries of a requested page.
+     *
+     * @param options the page requested
+     * @return the limit requested, the default page size if none was set, capped to the largest page size
+     */
+    private static int getPageSize(PageOptions options) {
+        return options.getLimit() <= 0 ? DEFAULT_PAGE_SIZE : Math.min(options.getLimit(), MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Handles the requests of a batch in order, as if they had been sent one by one, and
+     * returns their responses together.
+     *
+     * @param data the serialized list of requests
+     * @return a {@link BatchResponse} holding the serialized response of every request, or a
+     * failed {@link Response} if the batch is invalid
+     */
+    private Response handleBatch(String data) {
+        List<Request> requests;
+        try {
+            requests = gson.fromJson(data, REQUEST_LIST_TYPE);
+        } catch (JsonSyntaxException e) {
+            return new Response(ResponseStatus.FAILURE, "Invalid batch: " + e.getMessage());
+        }
+
+        if (requests == null || requests.isEmpty()) {
+            return new Response(ResponseStatus.FAILURE, "Batch cannot be empty.");
+        }
+        if (requests.size() > MAX_BATCH_SIZE) {
+            return new Response(ResponseStatus.FAILURE, "Batch cannot contain more than " + MAX_BATCH_SIZE + " requests.");
+        }
+
+        List<String> responses = new ArrayList<>(requests.size());
+        for (Request request : requests) {
+            Response response;
+            if (request != null && request.getType() == Request.RequestType.BATCH) {
+                response = new Response(ResponseStatus.FAILURE, "A batch cannot contain another batch.");
+                response.setId(request.getId());
+            } else {
+                try {
+                    response = handleRequest(request);
+                } catch (RuntimeException e) {
+                    // An invalid request fails on its own instead of failing the whole batch
+                    LOGGER.warn("Invalid request in batch", e);
+                    response = new Response(ResponseStatus.FAILURE, "Invalid request: " + e.getMessage());
+                    response.setId(request.getId());
+                }
+            }
+            responses.add(gson.toJson(response));
+        }
+
+        BatchResponse response = new BatchResponse(responses);
+        response.setStatus(ResponseStatus.SUCCESS);
+        response.setMessage("Processed " + responses.size() + " requests.");
+        return response;
+    }
+
+    /**
+     * Switches the connection to another protocol for every message after this request's response.
+     *
+     * @param protocolName the name of the {@link WireProtocol} to switch to
+     * @return a {@link Response} indicating success, or failure if the protocol is unknown
+     */
+    private Response handleSetProtocol(String protocolName) {
+        WireProtocol requested;
+        try {
+            requested = WireProtocol.valueOf(protocolName);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return new Response(ResponseStatus.FAILURE, "Unsupported protocol: " + protocolName);
+        }
+
+        this.protocol = requested;
+        LOGGER.info("Connection switched to {} protocol", requested);
+        return new Response(ResponseStatus.SUCCESS, "Protocol set to " + requested + ".");
+    }
+
+    /**
+     * Returns the handler serving the other player of an event.
+     *
+     * @param event the event shared with the opponent
+     * @return the opponent's handler, or null if the opponent is not logged in
+     */
+    private ServerHandler getOpponentHandler(Event event) {
+        String opponent = currentUsername.equals(event.getSender()) ? event.getOpponent() : event.getSender();
+        return PresenceRegistry.getInstance().getHandler(opponent);
+    }
+
+    /**
+     * Describes the result of a game that ended on a move, from the point of view of a player.
+     *
+     * @param board the final board of the game
+     * @param sender true if the player sent the invitation, false otherwise
+     * @return "Win" or "Opponent Win" if a player has a line, otherwise "Draw"
+     */
+    private static String describeResult(int board, boolean sender) {
+        if (Board.hasWon(board, sender)) {
+            return "Win";
+        }
+        return Board.hasWon(board, !sender) ? "Opponent Win" : "Draw";
+    }
+
+    /**
+     * Adds the result of a game that just ended to the results of its players: a win and a
+     * loss when a player has a line, a draw for both when the board is full, and an aborted
+     * game for the current user when the game was aborted. The changes, and the rating
+     * updates of wins and draws, are queued for the {@link RatingStore}, which writes them in the
+     * background so the request that ended the game never waits for the database. A game
+     * completed before its board was decided changes no result.
+     *
+     * @param event the event that was completed or aborted
+     */
+    private void recordResult(Event event) {
+        int board = event.getBoard();
+        List<PlayerStats> changes = new ArrayList<>(2);
+        if (event.getStatus() == Event.EventStatus.ABORTED) {
+            changes.add(new PlayerStats(currentUsername, null, 0, 0, 0, 1));
+        } else if (Board.hasWon(board, true) || Board.hasWon(board, false)) {
+            boolean senderWon = Board.hasWon(board, true);
+            String winner = senderWon ? event.getSender() : event.getOpponent();
+            String loser = senderWon ? event.getOpponent() : event.getSender();
+            changes.add(new PlayerStats(winner, null, 1, 0, 0, 0));
+            changes.add(new PlayerStats(loser, null, 0, 1, 0, 0));
+            RatingStore.getInstance().recordGame(winner, loser, false);
+        } else if (Board.isFull(board)) {
+            changes.add(new PlayerStats(event.getSender(), null, 0, 0, 1, 0));
+            changes.add(new PlayerStats(event.getOpponent(), null, 0, 0, 1, 0));
+            RatingStore.getInstance().recordGame(event.getSender(), event.getOpponent(), true);
+        } else {
+            return;
+        }
+        RatingStore.getInstance().recordStats(changes);
+    }
+
+    /**
+     * Recomputes the availability of players whose events changed status.
+     *
+     * @param usernames the usernames of the players
+     */
+    private void refreshPresence(Collection<String> usernames) {
+        for (String username : usernames) {
+            PresenceRegistry.getInstance().refresh(username);
+        }
+    }
+
+    /**
+     * Pushes the end of a game to the opponent if they subscribed to pushed moves.
+     *
+     * @param event the event that was completed or aborted
+     * @param message the message explaining why the game ended
+     */
+    private void pushGameEnd(Event event, String message) {
+        ServerHandler opponentHandler = getOpponentHandler(event);
+        if (opponentHandler != null) {
+            GamingResponse response = new GamingResponse(-1, false);
+            response.setStatus(ResponseStatus.SUCCESS);
+            response.setMessage(message);
+            opponentHandler.push(response);
+        }
+    }
+
+    /**
+     * Writes a response to the client outside of the request/response cycle, if the client
+     * subscribed to pushed moves. The response is only handed over to the connection, so the
+     * caller never blocks on this client's socket: a blocking socket is written by the
+     * {@link #pushThread}, like the event loop writes the channel of an NIO session.
+     *
+     * @param response the response to push
+     * @return true if the response was handed to the connection, false otherwise
+     */
+    boolean push(Response response) {
+        if (!subscribedToMoves) {
+            return false;
+        }
+
+        try {
+            ByteBuffer frame = encodeFrame(response, protocol);
+            if (pushWriter != null) {
+                pushWriter.accept(frame);
+            } else if (closed.get() || !pushQueue.offer(frame)) {
+                LOGGER.warn("Could not push response to user {}, too many pushes are waiting", currentUsername);
+                return false;
+            }
+            LOGGER.debug("Pushed response: {}", response.getMessage());
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("Could not push response to user {}", currentUsername, e);
+            return false;
+        }
+    }
+
+    /**
+     * Writes the frames of pushed messages to the blocking socket until the connection closes.
+     * A failed write closes the socket, so the session's own thread stops reading and cleans up.
+     */
+    private void writePushes() {
+        try {
+            while (!closed.get()) {
+                ByteBuffer frame = pushQueue.take();
+                writeLock.lock();
+                try {
+                    writeFrame(frame);
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+        } catch (InterruptedException e) {
+            // The connection was closed
+        } catch (IOException e) {
+            if (!closed.get()) {
+                LOGGER.warn("Could not write pushed response to user {}", currentUsername, e);
+            }
+            quietClose(socket);
+        }
+    }
+
+    /**
+     * Tells a client that its game ended because the server is shutting down, if the client is
+     * playing and subscribed to pushed moves. Polling clients learn it from their next poll.
+     */
+    void notifyShutdown() {
+        if (currentEventId != -1) {
+            GamingResponse response = new GamingResponse(-1, false);
+            response.setStatus(ResponseStatus.SUCCESS);
+            response.setMessage("Server shutting down");
+            push(response);
+        }
+    }
+
+    /**
+     * Starts refusing new requests on every connection, so the server can drain.
+     */
+    static void startDraining() {
+        draining = true;
+    }
+
+    /**
+     * Wakes every request held by a long poll, so it answers now instead of at its timeout.
+     */
+    static void wakeWaitingRequests() {
+        PAIRING_CHANGES.signalAll();
+        EVENT_CHANGES.signalAll();
+    }
+
+    /**
+     * Waits for the requests being handled on every connection to finish.
+     *
+     * @param timeoutMillis the longest time to wait in milliseconds
+     * @return the number of requests still being handled when the wait ended, 0 if all finished
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    static int awaitRequests(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (ACTIVE_REQUESTS.get() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return ACTIVE_REQUESTS.get();
+    }
+
+    /**
+     * Returns whether the client asked to have the opponent's moves pushed.
+     *
+     * @return true if moves are pushed to this client, false if it polls for them
+     */
+    public boolean isSubscribedToMoves() {
+        return subscribedToMoves;
+    }
+
     /**
      * The main execution method that runs in a separate thread to handle client communication.
      * This method processes incoming client requests, executes appropriate business logic,
@@ -616,28 +1661,26 @@ public class ServerHandler extends Thread {
     public void run() {
         while (true) {
             try {
-                // Read serialized request from client
-                String serializedRequest = dataInputStream.readUTF();
-                LOGGER.debug("Received request: {}", serializedRequest);
-
-                // Deserialize request
-                Request request = gson.fromJson(serializedRequest, Request.class);
-
-                // Handle request and get response
-                Response response = handleRequest(request);
-
-                // Serialize and send response
-                String serializedResponse = gson.toJson(response);
-                dataOutputStream.writeUTF(serializedResponse);
-                dataOutputStream.flush();
-                LOGGER.debug("Sent response: {}", serializedResponse);
+                // Read a request frame from client
+                byte[] frame = readFrame();
+
+                // Handle request and send response frame
+                ByteBuffer response = processFrame(frame);
+                writeLock.lock();
+                try {
+                    writeFrame(response);
+                } finally {
+                    writeLock.unlock();
+                }
 
             } catch (EOFException e) {
                 // Client disconnected
                 LOGGER.info("Client disconnected.");
                 break;
             } catch (IOException e) {
-                LOGGER.error("I/O error: ", e);
+                if (!closed.get()) {
+                    LOGGER.error("I/O error: ", e);
+                }
                 break;
             } catch (JsonSyntaxException e) {
                 LOGGER.error("Invalid JSON format: ", e);
@@ -652,45 +1695,67 @@ public class ServerHandler extends Thread {
     /**
      * Closes the client connection and releases all associated resources.
      * <p>
-     * This method performs cleanup operations including setting the user's online status
-     * to offline, aborting any active user events, and closing all I/O streams and sockets.
-     * Database operations are skipped if no user is currently authenticated.
+     * This method performs cleanup operations including removing the user's presence
+     * from the {@link PresenceRegistry}, aborting any active user events, and closing all I/O streams and sockets.
+     * A game being played is recorded as aborted by the user, like an ABORT_GAME request.
+     * These operations are skipped if no user is currently authenticated, or if the server is
+     * shutting down, since the sessions and events are then cleaned up in bulk. Only the first
+     * call has any effect.
      * <p>
      * The method handles exceptions gracefully during cleanup to ensure all resources
      * are properly released even if individual operations fail.
      */
     public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
         LOGGER.info("Attempting to close client connection for user: {}", currentUsername);
 
-        // Update user offline status and abort events when user disconnects
-        if (this.currentUsername != null) {
+        // Remove the user's presence and abort events when user disconnects
+        if (this.currentUsername != null && !draining) {
+            PresenceRegistry.getInstance().unregister(this.currentUsername, this);
             try {
-                // Get the User object corresponding to the currentUsername
-                User user = DatabaseHelper.getInstance().getUser(this.currentUsername);
-
-                if (user != null) {
-                    // Set the user online attribute to false
-                    user.setOnline(false);
-
-                    // Update the user in the database
-                    DatabaseHelper.getInstance().updateUser(user);
+                // A game found in the queue but not received yet is aborted like the current game
+                if (!leaveQueue()) {
+                    startQueuedGame(queueTicket.getGame(0));
+                }
 
-                    // Abort any event that is not either COMPLETED or ABORTED
-                    DatabaseHelper.getInstance().abortAllUserEvents(this.currentUsername);
+                // A game being played is aborted by this user, unless it ended meanwhile
+                Event abortedGame = currentEventId == -1 ? null
+                        : EventStore.getInstance().transition(currentEventId, Event.EventStatus.PLAYING, Event.EventStatus.ABORTED);
+                if (abortedGame != null) {
+                    pushGameEnd(abortedGame, "Opponent Abort");
+                    recordResult(abortedGame);
+                }
+                if (currentEventId != -1) {
+                    EVENT_CHANGES.remove(currentEventId);
+                }
 
-                    LOGGER.info("User '{}' set to offline and events aborted", this.currentUsername);
+                // Abort any other event that is not either COMPLETED or ABORTED
+                refreshPresence(EventStore.getInstance().abortAllUserEvents(this.currentUsername));
+                if (abortedGame != null) {
+                    refreshPresence(List.of(abortedGame.getSender(), abortedGame.getOpponent()));
                 }
+                PAIRING_CHANGES.remove(this.currentUsername);
+                PAIRING_CHANGES.signalAll();
+
+                LOGGER.info("User '{}' set to offline and events aborted", this.currentUsername);
             } catch (SQLException e) {
-                LOGGER.error("Database error while updating user offline status", e);
+                LOGGER.error("Database error while aborting user events", e);
             } catch (Exception e) {
-                LOGGER.error("Unexpected error while updating user offline status", e);
+                LOGGER.error("Unexpected error while aborting user events", e);
             }
         }
 
         // Close all streams and socket
+        Thread writer = pushThread;
+        if (writer != null) {
+            writer.interrupt();
+        }
         quietClose(this.dataInputStream);
         quietClose(this.dataOutputStream);
         quietClose(this.socket);
+        ServerMetrics.getInstance().recordConnectionClosed();
         LOGGER.info("Handler shutdown complete for user: {}", currentUsername);
     }
 
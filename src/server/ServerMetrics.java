@@ -0,0 +1,323 @@
+package server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import socket.Request.RequestType;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the latency of every request by {@link RequestType}, of every {@link DatabaseHelper}
+ * method, and of the encoding and decoding of every message, so hot paths can be found on a
+ * running server.
+ * <p>
+ * Latencies are recorded in nanoseconds into {@link LatencyHistogram}s, which only cost a few
+ * atomic increments per record. The metrics are logged periodically once
+ * {@link #startReporting(long)} was called, and served by the {@link AdminServer}.
+ * <p>
+ * The latency of a long-polled request includes the time it was held waiting for a change.
+ */
+public class ServerMetrics {
+
+    /**
+     * Logger for the metrics reports.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServerMetrics.class);
+
+    /**
+     * Lazily holds the only class instance.
+     */
+    private static class InstanceHolder {
+        private static final ServerMetrics INSTANCE = new ServerMetrics();
+    }
+
+    /**
+     * The latencies of the requests of each type. Every type is added on creation, so the map is
+     * only ever read afterwards.
+     */
+    private final Map<RequestType, LatencyHistogram> requestLatencies = new EnumMap<>(RequestType.class);
+
+    /**
+     * The number of requests of each type answered with a FAILURE status.
+     */
+    private final Map<RequestType, LongAdder> requestFailures = new EnumMap<>(RequestType.class);
+
+    /**
+     * The latencies of the {@link DatabaseHelper} methods, keyed by method name.
+     */
+    private final Map<String, LatencyHistogram> databaseLatencies = new ConcurrentSkipListMap<>();
+
+    /**
+     * The latencies of encoding and decoding messages, keyed by protocol and operation.
+     */
+    private final Map<String, LatencyHistogram> codecLatencies = new ConcurrentSkipListMap<>();
+
+    /**
+     * The number of client connections opened.
+     */
+    private final LongAdder connectionsOpened = new LongAdder();
+
+    /**
+     * The number of client connections closed.
+     */
+    private final LongAdder connectionsClosed = new LongAdder();
+
+    /**
+     * The time the metrics started being collected at, in nanoseconds.
+     */
+    private final long startTime = System.nanoTime();
+
+    /**
+     * Logs the metrics periodically, or null if reporting has not been started.
+     */
+    private ScheduledExecutorService reporter;
+
+    /**
+     * The counts of the last periodic report, to compute the rates since then. Only used by the
+     * reporter thread.
+     */
+    private final Map<String, Long> reportedCounts = new HashMap<>();
+
+    /**
+     * The time of the last periodic report, in nanoseconds.
+     */
+    private long reportedTime = startTime;
+
+    /**
+     * A getter for the singleton class
+     * @return An instance of ServerMetrics class
+     */
+    public static ServerMetrics getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * A private constructor that creates the metrics of every request type
+     */
+    private ServerMetrics() {
+        for (RequestType type : RequestType.values()) {
+            requestLatencies.put(type, new LatencyHistogram());
+            requestFailures.put(type, new LongAdder());
+        }
+    }
+
+    /**
+     * Records a handled request.
+     *
+     * @param type the type of the request
+     * @param nanos the time taken to handle the request, in nanoseconds
+     * @param success whether the response has a SUCCESS status
+     */
+    public void recordRequest(RequestType type, long nanos, boolean success) {
+        requestLatencies.get(type).record(nanos);
+        if (!success) {
+            requestFailures.get(type).increment();
+        }
+    }
+
+    /**
+     * Records a call of a {@link DatabaseHelper} method.
+     *
+     * @param method the name of the method
+     * @param nanos the time taken by the call, including the wait for a connection, in nanoseconds
+     */
+    public void recordDatabase(String method, long nanos) {
+        databaseLatencies.computeIfAbsent(method, name -> new LatencyHistogram()).record(nanos);
+    }
+
+    /**
+     * Records the encoding or decoding of a message.
+     *
+     * @param operation the protocol and operation, such as "JSON decode"
+     * @param nanos the time taken, in nanoseconds
+     */
+    public void recordCodec(String operation, long nanos) {
+        codecLatencies.computeIfAbsent(operation, name -> new LatencyHistogram()).record(nanos);
+    }
+
+    /**
+     * Records a client connection being opened.
+     */
+    public void recordConnectionOpened() {
+        connectionsOpened.increment();
+    }
+
+    /**
+     * Records a client connection being closed.
+     */
+    public void recordConnectionClosed() {
+        connectionsClosed.increment();
+    }
+
+    /**
+     * Returns the number of client connections opened since the server started.
+     *
+     * @return the number of connections opened
+     */
+    public long getConnectionsOpened() {
+        return connectionsOpened.sum();
+    }
+
+    /**
+     * Returns the number of client connections open at the moment.
+     *
+     * @return the number of open connections
+     */
+    public long getOpenConnections() {
+        return connectionsOpened.sum() - connectionsClosed.sum();
+    }
+
+    /**
+     * Returns the latencies of the requests of each type.
+     *
+     * @return the latencies in nanoseconds, keyed by request type
+     */
+    public Map<RequestType, LatencyHistogram> getRequestLatencies() {
+        return Collections.unmodifiableMap(requestLatencies);
+    }
+
+    /**
+     * Returns the number of requests of a type answered with a FAILURE status.
+     *
+     * @param type the request type
+     * @return the number of failed requests
+     */
+    public long getRequestFailures(RequestType type) {
+        return requestFailures.get(type).sum();
+    }
+
+    /**
+     * Returns the latencies of the {@link DatabaseHelper} methods called so far.
+     *
+     * @return the latencies in nanoseconds, keyed by method name
+     */
+    public Map<String, LatencyHistogram> getDatabaseLatencies() {
+        return Collections.unmodifiableMap(databaseLatencies);
+    }
+
+    /**
+     * Returns the latencies of encoding and decoding messages.
+     *
+     * @return the latencies in nanoseconds, keyed by protocol and operation
+     */
+    public Map<String, LatencyHistogram> getCodecLatencies() {
+        return Collections.unmodifiableMap(codecLatencies);
+    }
+
+    /**
+     * Starts logging the metrics periodically. Does nothing if reporting has already been started.
+     *
+     * @param intervalSeconds the time in seconds between two reports
+     */
+    public synchronized void startReporting(long intervalSeconds) {
+        if (reporter != null) {
+            return;
+        }
+
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::logReport, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        LOGGER.info("Logging metrics every {} s", intervalSeconds);
+    }
+
+    /**
+     * Returns the metrics as a text report, with rates since the server started.
+     *
+     * @return the report
+     */
+    public String report() {
+        return report(Collections.emptyMap(), (System.nanoTime() - startTime) / 1e9);
+    }
+
+    /**
+     * Logs the metrics, with rates since the last report.
+     */
+    private void logReport() {
+        long now = System.nanoTime();
+        LOGGER.info("Metrics of the last {} s:\n{}", Math.round((now - reportedTime) / 1e9),
+                report(reportedCounts, (now - reportedTime) / 1e9));
+        reportedTime = now;
+
+        for (Map.Entry<RequestType, LatencyHistogram> entry : requestLatencies.entrySet()) {
+            reportedCounts.put("request " + entry.getKey(), entry.getValue().getCount());
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : databaseLatencies.entrySet()) {
+            reportedCounts.put("database " + entry.getKey(), entry.getValue().getCount());
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : codecLatencies.entrySet()) {
+            reportedCounts.put("codec " + entry.getKey(), entry.getValue().getCount());
+        }
+    }
+
+    /**
+     * Formats the metrics as text tables, skipping what was never recorded.
+     *
+     * @param previousCounts the counts the rates are computed from, keyed like in {@link #logReport()}
+     * @param seconds the time since the previous counts, in seconds
+     * @return the report
+     */
+    private String report(Map<String, Long> previousCounts, double seconds) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-24s %10s %8s %7s %9s %9s %9s %9s %9s %9s%n",
+                "Request", "Count", "Failed", "Fail %", "Req/s", "Mean ms", "p50 ms", "p90 ms", "p99 ms", "Max ms"));
+        for (Map.Entry<RequestType, LatencyHistogram> entry : requestLatencies.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            long count = histogram.getCount();
+            if (count == 0) {
+                continue;
+            }
+
+            long failures = requestFailures.get(entry.getKey()).sum();
+            long previous = previousCounts.getOrDefault("request " + entry.getKey(), 0L);
+            report.append(String.format("%-24s %10d %8d %7.2f %9.1f %9.3f %9.3f %9.3f %9.3f %9.3f%n",
+                    entry.getKey(), count, failures, 100.0 * failures / count, (count - previous) / seconds,
+                    histogram.getMean() / 1e6, histogram.getPercentile(50) / 1e6, histogram.getPercentile(90) / 1e6,
+                    histogram.getPercentile(99) / 1e6, histogram.getMax() / 1e6));
+        }
+
+        report.append(String.format("%-24s %10s %9s %9s %9s %9s %9s %9s%n",
+                "Database", "Count", "Calls/s", "Mean ms", "p50 ms", "p90 ms", "p99 ms", "Max ms"));
+        for (Map.Entry<String, LatencyHistogram> entry : databaseLatencies.entrySet()) {
+            appendTimings(report, entry.getValue(), entry.getKey(),
+                    previousCounts.getOrDefault("database " + entry.getKey(), 0L), seconds, 1e6);
+        }
+
+        report.append(String.format("%-24s %10s %9s %9s %9s %9s %9s %9s%n",
+                "Codec", "Count", "Calls/s", "Mean us", "p50 us", "p90 us", "p99 us", "Max us"));
+        for (Map.Entry<String, LatencyHistogram> entry : codecLatencies.entrySet()) {
+            appendTimings(report, entry.getValue(), entry.getKey(),
+                    previousCounts.getOrDefault("codec " + entry.getKey(), 0L), seconds, 1e3);
+        }
+        return report.toString();
+    }
+
+    /**
+     * Appends a row of timings to a report.
+     *
+     * @param report the report
+     * @param histogram the latencies in nanoseconds
+     * @param name the name of the row
+     * @param previousCount the count the rate is computed from
+     * @param seconds the time since the previous count, in seconds
+     * @param nanosPerUnit the number of nanoseconds in the unit of the row
+     */
+    private static void appendTimings(StringBuilder report, LatencyHistogram histogram, String name,
+                                      long previousCount, double seconds, double nanosPerUnit) {
+        long count = histogram.getCount();
+        report.append(String.format("%-24s %10d %9.1f %9.3f %9.3f %9.3f %9.3f %9.3f%n",
+                name, count, (count - previousCount) / seconds, histogram.getMean() / nanosPerUnit,
+                histogram.getPercentile(50) / nanosPerUnit, histogram.getPercentile(90) / nanosPerUnit,
+                histogram.getPercentile(99) / nanosPerUnit, histogram.getMax() / nanosPerUnit));
+    }
+}
@@ -1,10 +1,14 @@
 package server;
 
+import org.apache.logging.log4j.LogManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import socket.GsonProvider;
 
 import java.io.IOException;
 import java.net.*;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The main socket server controller class for the TicTacToe game server.
@@ -18,6 +22,31 @@ import java.net.*;
  * <p>
  * The server listens on a configurable port (default 5000) and maintains
  * continuous availability for client connections until shutdown.
+ * <p>
+ * Connections are served in one of the {@link Mode}s selected at startup with the
+ * {@code --mode=thread|virtual|nio} flag. The NIO mode serves all clients from a small pool of
+ * selector threads whose size can be set with {@code --event-loops=N}.
+ * <p>
+ * Game state is kept in the {@link EventStore} and written to the database in batches every
+ * {@code --flush-interval=MILLISECONDS} (default 1000). Every move is also appended to the
+ * {@link MoveLog}, written every {@code --move-batch-size=N} moves (default 256) or every
+ * {@code --move-flush-interval=MILLISECONDS} (default 200), whichever comes first. Players
+ * asking for an opponent with JOIN_QUEUE or JOIN_RATED_QUEUE are paired by the
+ * {@link MatchQueue}, and the ratings of the players are updated in the background by the
+ * {@link RatingStore} as games end.
+ * <p>
+ * Request, database and codec latencies are collected by {@link ServerMetrics}, logged every
+ * {@code --metrics-interval=SECONDS} (default 60, 0 to disable) and served on the loopback
+ * interface by the {@link AdminServer} on {@code --admin-port=PORT} (default 5001, 0 to disable),
+ * which also serves the live counters of the server in the Prometheus text format.
+ * <p>
+ * Request payloads are not logged, except for one request in {@code --trace-sample=N}
+ * (default 0, disabled) which is logged with its response by the {@link RequestTracer}.
+ * <p>
+ * When the JVM is asked to exit, a shutdown hook runs {@link #shutdown()}: the server stops
+ * accepting connections, refuses new requests, aborts the games in progress, and waits up to
+ * {@code --shutdown-timeout=MILLISECONDS} (default 5000) for the requests being handled before
+ * writing every change to the database and closing the connections.
  */
 public class SocketServer {
 
@@ -37,6 +66,61 @@ public class SocketServer {
      */
     private ServerSocket serverSocket;
 
+    /**
+     * The way client connections are served.
+     */
+    private final Mode mode;
+
+    /**
+     * The number of selector threads used when running in {@link Mode#NIO}.
+     */
+    private final int eventLoopCount;
+
+    /**
+     * The non-blocking front end used when running in {@link Mode#NIO}.
+     */
+    private NioSocketServer nioServer;
+
+    /**
+     * The time in milliseconds between two flushes of the {@link EventStore} to the database.
+     */
+    private long flushInterval = 1000;
+
+    /**
+     * The number of pending moves that makes the {@link MoveLog} write them at once.
+     */
+    private int moveBatchSize = 256;
+
+    /**
+     * The longest time in milliseconds a move waits in the {@link MoveLog} before being written.
+     */
+    private long moveFlushInterval = 200;
+
+    /**
+     * The time in seconds between two logs of the {@link ServerMetrics}, or 0 to never log them.
+     */
+    private long metricsInterval = 60;
+
+    /**
+     * The port of the {@link AdminServer}, or 0 to not start it.
+     */
+    private int adminPort = 5001;
+
+    /**
+     * The admin server, or null if it is not running.
+     */
+    private AdminServer adminServer;
+
+    /**
+     * The longest time in milliseconds a shutdown waits for the requests being handled.
+     */
+    private long shutdownTimeout = 5000;
+
+    /**
+     * Whether the server has been shut down, so it is only shut down once.
+     */
+    private final AtomicBoolean shutDown = new AtomicBoolean();
+
     /**
      * The main entry point that launches the TicTacToe server application.
      * Creates a SocketServer instance, performs setup initialization, and begins
@@ -45,7 +129,45 @@ public class SocketServer {
      * @param args command-line arguments
      */
     public static void main(String[] args) {
-        SocketServer server = new SocketServer();
+        Mode mode = Mode.THREAD;
+        int eventLoopCount = Runtime.getRuntime().availableProcessors();
+        long flushInterval = 1000;
+        int moveBatchSize = 256;
+        long moveFlushInterval = 200;
+        long metricsInterval = 60;
+        int adminPort = 5001;
+        long shutdownTimeout = 5000;
+
+        for (String arg : args) {
+            if (arg.startsWith("--mode=")) {
+                mode = Mode.valueOf(arg.substring("--mode=".length()).toUpperCase());
+            } else if (arg.startsWith("--event-loops=")) {
+                eventLoopCount = Integer.parseInt(arg.substring("--event-loops=".length()));
+            } else if (arg.startsWith("--flush-interval=")) {
+                flushInterval = Long.parseLong(arg.substring("--flush-interval=".length()));
+            } else if (arg.startsWith("--move-batch-size=")) {
+                moveBatchSize = Integer.parseInt(arg.substring("--move-batch-size=".length()));
+            } else if (arg.startsWith("--move-flush-interval=")) {
+                moveFlushInterval = Long.parseLong(arg.substring("--move-flush-interval=".length()));
+            } else if (arg.startsWith("--metrics-interval=")) {
+                metricsInterval = Long.parseLong(arg.substring("--metrics-interval=".length()));
+            } else if (arg.startsWith("--admin-port=")) {
+                adminPort = Integer.parseInt(arg.substring("--admin-port=".length()));
+            } else if (arg.startsWith("--shutdown-timeout=")) {
+                shutdownTimeout = Long.parseLong(arg.substring("--shutdown-timeout=".length()));
+            } else if (arg.startsWith("--trace-sample=")) {
+                RequestTracer.getInstance().setSampleRate(Integer.parseInt(arg.substring("--trace-sample=".length())));
+            } else {
+                LOGGER.warn("Ignoring unknown argument: {}", arg);
+            }
+        }
+
+        SocketServer server = new SocketServer(5000, mode, eventLoopCount);
+        server.setFlushInterval(flushInterval);
+        server.setMoveLogFlushing(moveBatchSize, moveFlushInterval);
+        server.setMetricsInterval(metricsInterval);
+        server.setAdminPort(adminPort);
+        server.setShutdownTimeout(shutdownTimeout);
         server.setup();
         server.startAcceptingRequest();
     }
@@ -67,11 +189,29 @@ public class SocketServer {
      * @throws IllegalArgumentException if the port is less than 0
      */
     public SocketServer(int port) {
+        this(port, Mode.THREAD, 1);
+    }
+
+    /**
+     * Parameterized constructor that initializes the server with a custom port number
+     * and connection mode.
+     *
+     * @param port the custom port number for the server to listen on
+     * @param mode the way client connections are served
+     * @param eventLoopCount the number of selector threads used in {@link Mode#NIO}
+     * @throws IllegalArgumentException if the port is less than 0 or the event loop count is less than 1
+     */
+    public SocketServer(int port, Mode mode, int eventLoopCount) {
         if (port < 0) {
             throw new IllegalArgumentException("Port number cannot be negative");
         }
+        if (eventLoopCount < 1) {
+            throw new IllegalArgumentException("Event loop count must be at least 1");
+        }
 
         this.PORT = port;
+        this.mode = mode;
+        this.eventLoopCount = eventLoopCount;
     }
 
     /**
@@ -81,15 +221,38 @@ public class SocketServer {
      */
     public void setup() {
 
+        // No session survives a restart, so games left in progress by a crash can never end
+        int abandoned = EventStore.getInstance().abortAll();
+        if (abandoned > 0) {
+            LOGGER.warn("Aborting {} events left in progress by the previous run", abandoned);
+            EventStore.getInstance().flush();
+        }
+        EventStore.getInstance().startFlushing(flushInterval);
+        MoveLog.getInstance().startFlushing(moveBatchSize, moveFlushInterval);
+        MatchQueue.getInstance().startMatching();
+        RatingStore.getInstance().startUpdating();
+        GsonProvider.warmUp();
+        if (metricsInterval > 0) {
+            ServerMetrics.getInstance().startReporting(metricsInterval);
+        }
+
         try {
-            serverSocket = new ServerSocket(this.PORT);
+            int localPort;
+            if (mode == Mode.NIO) {
+                nioServer = new NioSocketServer(this.PORT, eventLoopCount);
+                nioServer.bind();
+                localPort = nioServer.getLocalPort();
+            } else {
+                serverSocket = new ServerSocket(this.PORT);
+                localPort = serverSocket.getLocalPort();
+            }
             InetAddress localHost = InetAddress.getLocalHost();
 
             // Log server information
-            LOGGER.info("Server started on port {}", this.PORT);
+            LOGGER.info("Server started on port {} in {} mode", this.PORT, mode);
             LOGGER.info("Hostname: {}", localHost.getHostName());
             LOGGER.info("Host Address: {}", localHost.getHostAddress());
-            LOGGER.info("Port Number: {}", serverSocket.getLocalPort());
+            LOGGER.info("Port Number: {}", localPort);
 
         } catch (BindException e) {
             LOGGER.error("Port {} is already in use. Please choose another port.", this.PORT, e);
@@ -98,35 +261,129 @@ public class SocketServer {
         } catch (IOException e) {
             LOGGER.error("I/O error while opening the socket: ", e);
         }
+
+        if (adminPort > 0) {
+            adminServer = new AdminServer(adminPort, new PrometheusExporter(nioServer));
+            try {
+                adminServer.start();
+            } catch (IOException e) {
+                // The game server runs without its admin endpoint rather than not at all
+                LOGGER.error("Could not start the admin server on port {}", adminPort, e);
+                adminServer = null;
+            }
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            shutdown();
+            // Log4j's own shutdown hook is disabled so the shutdown can still log, see log4j2.xml
+            LogManager.shutdown();
+        }, "shutdown"));
     }
 
     /**
      * Starts the main server loop to accept incoming client connections.
      * This method runs continuously, accepting one new client connection
-     * in each loop iteration and spawning a new ServerHandler thread for it.
+     * in each loop iteration and spawning a new ServerHandler thread for it,
+     * either a platform thread or a virtual thread depending on the {@link Mode}.
+     * In {@link Mode#NIO} the accepted connections are handed to the NIO event loops instead.
      */
     public void startAcceptingRequest() {
-        if (this.serverSocket == null) {
+        if (this.serverSocket == null && this.nioServer == null) {
             LOGGER.error("Cannot start accepting requests. Server has not been initialized.");
             return;
         }
 
         LOGGER.info("Server is now accepting connections from multiple clients...");
 
+        if (mode == Mode.NIO) {
+            nioServer.acceptConnections();
+            return;
+        }
+
         try {
-            while (true) { // Infinite loop — server runs continuously
+            while (!serverSocket.isClosed()) { // Runs until the server is shut down
                 Socket clientSocket = serverSocket.accept();
                 LOGGER.info("New client connected from {}:{}", clientSocket.getInetAddress(), clientSocket.getPort());
 
-                // Create and start a handler for this client
+                // Create a handler for this client and start it on a thread of the configured kind
                 ServerHandler handler = new ServerHandler(clientSocket);
-                handler.start();
+                if (mode == Mode.VIRTUAL) {
+                    Thread.ofVirtual().start(handler);
+                } else {
+                    new Thread(handler).start();
+                }
 
                 LOGGER.info("Started ServerHandler for new client connection.");
             }
         } catch (IOException e) {
-            LOGGER.error("Error while accepting client connections", e);
+            if (!serverSocket.isClosed()) {
+                LOGGER.error("Error while accepting client connections", e);
+            }
+        }
+        LOGGER.info("Stopped accepting connections");
+    }
+
+    /**
+     * Shuts the server down in bounded time. The server stops accepting connections and
+     * refuses new requests, then every game in progress is aborted, the logged-in users are
+     * removed from the {@link PresenceRegistry} at once, and players subscribed to pushed moves
+     * are told the server is shutting down. Once the requests being handled have finished, or
+     * the shutdown timeout has elapsed, every change is written to the database in a single
+     * flush and the connections are closed.
+     * <p>
+     * The sessions and events are cleaned up in bulk, so the handlers closing afterwards do no
+     * per-user work. Only the first call has any effect.
+     */
+    public void shutdown() {
+        if (!shutDown.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        LOGGER.info("Shutting down...");
+
+        if (nioServer != null) {
+            nioServer.stopAccepting();
+        } else if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                LOGGER.warn("Error closing the server socket.", e);
+            }
+        }
+
+        // Abort the games before waking the long polls, so they answer with the aborted games
+        ServerHandler.startDraining();
+        MatchQueue.getInstance().stopMatching();
+        int aborted = EventStore.getInstance().abortAll();
+        List<ServerHandler> sessions = PresenceRegistry.getInstance().unregisterAll();
+        for (ServerHandler handler : sessions) {
+            handler.notifyShutdown();
+        }
+        ServerHandler.wakeWaitingRequests();
+
+        try {
+            int remaining = ServerHandler.awaitRequests(shutdownTimeout);
+            if (remaining > 0) {
+                LOGGER.warn("{} requests still running after {} ms, shutting down anyway", remaining, shutdownTimeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        EventStore.getInstance().stopFlushing();
+        MoveLog.getInstance().stopFlushing();
+        RatingStore.getInstance().stopUpdating();
+        for (ServerHandler handler : sessions) {
+            handler.close();
+        }
+        if (nioServer != null) {
+            nioServer.close();
         }
+        if (adminServer != null) {
+            adminServer.stop();
+        }
+        LOGGER.info("Shut down in {} ms, aborted {} events and closed {} sessions",
+                System.currentTimeMillis() - start, aborted, sessions.size());
     }
 
     /**
@@ -138,4 +395,110 @@ public class SocketServer {
         return PORT;
     }
 
+    /**
+     * Sets the time between two flushes of the {@link EventStore} to the database, which is the
+     * longest a game state change can remain only in memory. Must be called before {@link #setup()}.
+     *
+     * @param flushInterval the flush interval in milliseconds
+     * @throws IllegalArgumentException if the flush interval is not positive
+     */
+    public void setFlushInterval(long flushInterval) {
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException("Flush interval must be positive");
+        }
+
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Sets when the {@link MoveLog} writes the pending moves to the database: as soon as the
+     * batch size is reached, or once the flush interval has elapsed. Must be called before {@link #setup()}.
+     *
+     * @param moveBatchSize the number of pending moves written at once
+     * @param moveFlushInterval the longest time in milliseconds a move waits before being written
+     * @throws IllegalArgumentException if the batch size or the flush interval is not positive
+     */
+    public void setMoveLogFlushing(int moveBatchSize, long moveFlushInterval) {
+        if (moveBatchSize <= 0 || moveFlushInterval <= 0) {
+            throw new IllegalArgumentException("Move batch size and flush interval must be positive");
+        }
+
+        this.moveBatchSize = moveBatchSize;
+        this.moveFlushInterval = moveFlushInterval;
+    }
+
+    /**
+     * Sets the time between two logs of the {@link ServerMetrics}. Must be called before {@link #setup()}.
+     *
+     * @param metricsInterval the interval in seconds, or 0 to never log the metrics
+     * @throws IllegalArgumentException if the interval is negative
+     */
+    public void setMetricsInterval(long metricsInterval) {
+        if (metricsInterval < 0) {
+            throw new IllegalArgumentException("Metrics interval cannot be negative");
+        }
+
+        this.metricsInterval = metricsInterval;
+    }
+
+    /**
+     * Sets the port of the {@link AdminServer}, which only listens on the loopback interface.
+     * Must be called before {@link #setup()}.
+     *
+     * @param adminPort the port, or 0 to not start the admin server
+     * @throws IllegalArgumentException if the port is negative
+     */
+    public void setAdminPort(int adminPort) {
+        if (adminPort < 0) {
+            throw new IllegalArgumentException("Admin port cannot be negative");
+        }
+
+        this.adminPort = adminPort;
+    }
+
+    /**
+     * Sets the longest time a shutdown waits for the requests being handled before writing the
+     * changes to the database and closing the connections anyway.
+     *
+     * @param shutdownTimeout the timeout in milliseconds
+     * @throws IllegalArgumentException if the timeout is negative
+     */
+    public void setShutdownTimeout(long shutdownTimeout) {
+        if (shutdownTimeout < 0) {
+            throw new IllegalArgumentException("Shutdown timeout cannot be negative");
+        }
+
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    /**
+     * Returns the way this server serves client connections.
+     *
+     * @return the connection mode
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Enumeration defining the ways the server can serve client connections.
+     */
+    public enum Mode {
+        /**
+         * Each client connection is served by its own dedicated ServerHandler platform thread.
+         */
+        THREAD,
+
+        /**
+         * Each client connection is served by its own ServerHandler running on a virtual thread,
+         * so idle sessions do not hold a platform thread and its stack.
+         */
+        VIRTUAL,
+
+        /**
+         * All client connections are multiplexed over a small pool of non-blocking selector threads.
+         */
+        NIO
+    }
+
 }
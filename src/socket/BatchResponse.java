@@ -0,0 +1,56 @@
+package socket;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Models the server's response to a BATCH request in the TicTacToe game.
+ * <p>
+ * The status of a BatchResponse only tells whether the batch itself could be processed.
+ * The outcome of every request in the batch is in its own response, found in
+ * {@link #getResponses()} at the same index as the request in the batch.
+ */
+public class BatchResponse extends Response {
+
+    /**
+     * The serialized responses to the requests of the batch, in request order. Each one is
+     * deserialized like the response to the same request sent on its own, for example as a
+     * GamingResponse for a REQUEST_MOVE request.
+     */
+    private List<String> responses;
+
+    /**
+     * Default constructor that creates a {@code BatchResponse} with no responses.
+     */
+    public BatchResponse() {
+        this(Collections.emptyList());
+    }
+
+    /**
+     * Creates a new instance of {@code BatchResponse}.
+     *
+     * @param responses the serialized responses to the requests of the batch, in request order
+     */
+    public BatchResponse(List<String> responses) {
+        super();
+        this.responses = responses;
+    }
+
+    /**
+     * Returns the serialized responses to the requests of the batch.
+     *
+     * @return the responses, in request order
+     */
+    public List<String> getResponses() {
+        return this.responses;
+    }
+
+    /**
+     * Sets the serialized responses to the requests of the batch.
+     *
+     * @param responses the responses to set, in request order
+     */
+    public void setResponses(List<String> responses) {
+        this.responses = responses;
+    }
+}
@@ -0,0 +1,366 @@
+package socket;
+
+import com.google.gson.Gson;
+import socket.Request.RequestType;
+import socket.Response.ResponseStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Encodes and decodes the messages of the {@link WireProtocol#BINARY} protocol, used by the
+ * server and by clients that negotiated it.
+ * <p>
+ * A request is an opcode byte identifying its {@link RequestType}, followed by its data. The
+ * data of requests carrying an eventId or a move is a single varint, any other data is a
+ * length-prefixed UTF-8 string. A response starts with a kind byte: a plain {@link Response}
+ * and a {@link GamingResponse} are encoded field by field, with a status byte and varints,
+ * while any other response is carried as its JSON text. The board of a GamingResponse comes
+ * last, so decoders that predate it can ignore it, and is read as empty when absent. This
+ * keeps the messages of the game loop down to a few bytes without Gson, and leaves the rarely
+ * sent messages unchanged.
+ * <p>
+ * The correlation ID of a request or response, when set, is flagged by the high bit of the
+ * opcode or status byte and written as a varint after the message's other fields. Messages
+ * are framed by a 4-byte length prefix, see {@link WireProtocol#BINARY}. Every varint is a
+ * zig-zag encoded int written 7 bits at a time, least significant group first. Strings are
+ * written as a varint of their UTF-8 length plus one, 0 standing for null.
+ */
+public final class BinaryCodec {
+
+    /**
+     * The request types by opcode. New request types must only ever be appended, so the
+     * opcodes of existing clients keep their meaning.
+     */
+    private static final RequestType[] OPCODES = {
+            RequestType.LOGIN,
+            RequestType.REGISTER,
+            RequestType.UPDATE_PAIRING,
+            RequestType.SEND_INVITATION,
+            RequestType.ACCEPT_INVITATION,
+            RequestType.DECLINE_INVITATION,
+            RequestType.ACKNOWLEDGE_RESPONSE,
+            RequestType.REQUEST_MOVE,
+            RequestType.SEND_MOVE,
+            RequestType.ABORT_GAME,
+            RequestType.COMPLETE_GAME,
+            RequestType.SUBSCRIBE_MOVES,
+            RequestType.SET_PROTOCOL,
+            RequestType.BATCH,
+            RequestType.GET_HISTORY,
+            RequestType.GET_LEADERBOARD,
+            RequestType.JOIN_QUEUE,
+            RequestType.LEAVE_QUEUE,
+            RequestType.JOIN_RATED_QUEUE
+    };
+
+    /**
+     * Flag set on the opcode or status byte of a message carrying a correlation ID.
+     */
+    private static final int ID_FLAG = 0x80;
+
+    /**
+     * The opcode of every request type.
+     */
+    private static final Map<RequestType, Integer> OPCODE_BY_TYPE = new EnumMap<>(RequestType.class);
+
+    static {
+        for (int opcode = 0; opcode < OPCODES.length; opcode++) {
+            OPCODE_BY_TYPE.put(OPCODES[opcode], opcode);
+        }
+    }
+
+    /**
+     * Kind byte of a plain {@link Response}.
+     */
+    private static final int KIND_RESPONSE = 0;
+
+    /**
+     * Kind byte of a {@link GamingResponse}.
+     */
+    private static final int KIND_GAMING = 1;
+
+    /**
+     * Kind byte of any other response, carried as JSON.
+     */
+    private static final int KIND_JSON = 2;
+
+    /**
+     * A private constructor, the codec only has static methods
+     */
+    private BinaryCodec() {
+    }
+
+    /**
+     * Encodes a request.
+     *
+     * @param request the request to encode
+     * @return the encoded request
+     * @throws IOException if the request has no known type, or its data is not a number
+     *                     although its type requires one
+     */
+    public static byte[] encodeRequest(Request request) throws IOException {
+        Integer opcode = request.getType() == null ? null : OPCODE_BY_TYPE.get(request.getType());
+        if (opcode == null) {
+            throw new IOException("Request type cannot be encoded: " + request.getType());
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16);
+        out.write(request.getId() == null ? opcode : opcode | ID_FLAG);
+        if (hasNumericData(request.getType())) {
+            try {
+                writeVarInt(out, Integer.parseInt(request.getData()));
+            } catch (NumberFormatException e) {
+                throw new IOException("Request data must be a number: " + request.getData(), e);
+            }
+        } else {
+            writeString(out, request.getData());
+        }
+        if (request.getId() != null) {
+            writeVarInt(out, request.getId());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads the type of a request without decoding the rest of it.
+     *
+     * @param payload the bytes holding the encoded request
+     * @param offset the offset of the encoded request in the bytes
+     * @return the type of the request, or null if the opcode is unknown or the payload is empty
+     */
+    public static RequestType peekRequestType(byte[] payload, int offset) {
+        if (offset >= payload.length) {
+            return null;
+        }
+
+        int opcode = payload[offset] & 0xFF & ~ID_FLAG;
+        return opcode < OPCODES.length ? OPCODES[opcode] : null;
+    }
+
+    /**
+     * Decodes a request.
+     *
+     * @param payload the bytes holding the encoded request
+     * @param offset the offset of the encoded request in the bytes
+     * @param length the length of the encoded request
+     * @return the decoded request
+     * @throws IOException if the payload is not a valid request
+     */
+    public static Request decodeRequest(byte[] payload, int offset, int length) throws IOException {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(payload, offset, length);
+            int header = in.get() & 0xFF;
+            int opcode = header & ~ID_FLAG;
+            if (opcode >= OPCODES.length) {
+                throw new IOException("Unknown request opcode: " + opcode);
+            }
+
+            RequestType type = OPCODES[opcode];
+            String data = hasNumericData(type) ? Integer.toString(readVarInt(in)) : readString(in);
+            Request request = new Request(type, data);
+            if ((header & ID_FLAG) != 0) {
+                request.setId(readVarInt(in));
+            }
+            return request;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated request", e);
+        }
+    }
+
+    /**
+     * Encodes a response.
+     *
+     * @param response the response to encode
+     * @param gson the Gson instance used for responses carried as JSON
+     * @return the encoded response
+     */
+    public static byte[] encodeResponse(Response response, Gson gson) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32);
+        if (response.getClass() == Response.class) {
+            out.write(KIND_RESPONSE);
+            writeStatus(out, response);
+        } else if (response instanceof GamingResponse gamingResponse) {
+            out.write(KIND_GAMING);
+            writeStatus(out, response);
+            writeVarInt(out, gamingResponse.getMove());
+            out.write(gamingResponse.getActive() ? 1 : 0);
+            writeVarInt(out, gamingResponse.getBoard());
+        } else {
+            out.write(KIND_JSON);
+            writeString(out, gson.toJson(response));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a response.
+     *
+     * @param payload the encoded response
+     * @param gson the Gson instance used for responses carried as JSON
+     * @param type the class of responses carried as JSON, such as {@link PairingResponse}
+     * @return the decoded response, a {@link GamingResponse} if one was encoded
+     * @throws IOException if the payload is not a valid response
+     */
+    public static Response decodeResponse(byte[] payload, Gson gson, Class<? extends Response> type) throws IOException {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(payload);
+            int kind = in.get();
+            switch (kind) {
+                case KIND_RESPONSE:
+                    return readStatus(in, new Response());
+                case KIND_GAMING:
+                    GamingResponse gamingResponse = readStatus(in, new GamingResponse());
+                    gamingResponse.setMove(readVarInt(in));
+                    gamingResponse.setActive(in.get() != 0);
+                    if (in.hasRemaining()) {
+                        gamingResponse.setBoard(readVarInt(in));
+                    }
+                    return gamingResponse;
+                case KIND_JSON:
+                    return gson.fromJson(readString(in), type);
+                default:
+                    throw new IOException("Unknown response kind: " + kind);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated response", e);
+        }
+    }
+
+    /**
+     * Checks whether the data of a request type is an eventId or a move.
+     *
+     * @param type the request type
+     * @return true if the data is encoded as a varint
+     */
+    private static boolean hasNumericData(RequestType type) {
+        switch (type) {
+            case ACCEPT_INVITATION:
+            case DECLINE_INVITATION:
+            case ACKNOWLEDGE_RESPONSE:
+            case SEND_MOVE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Writes the status, message and correlation ID of a response.
+     *
+     * @param out the stream to write to
+     * @param response the response
+     */
+    private static void writeStatus(ByteArrayOutputStream out, Response response) {
+        int status = response.getStatus() == null ? 0 : response.getStatus().ordinal() + 1;
+        out.write(response.getId() == null ? status : status | ID_FLAG);
+        writeString(out, response.getMessage());
+        if (response.getId() != null) {
+            writeVarInt(out, response.getId());
+        }
+    }
+
+    /**
+     * Reads the status, message and correlation ID of a response.
+     *
+     * @param in the buffer to read from
+     * @param response the response to fill
+     * @param <T> the type of the response
+     * @return the given response
+     * @throws IOException if the status is unknown
+     */
+    private static <T extends Response> T readStatus(ByteBuffer in, T response) throws IOException {
+        int header = in.get() & 0xFF;
+        int status = header & ~ID_FLAG;
+        if (status > ResponseStatus.values().length) {
+            throw new IOException("Unknown response status: " + status);
+        }
+
+        response.setStatus(status == 0 ? null : ResponseStatus.values()[status - 1]);
+        response.setMessage(readString(in));
+        if ((header & ID_FLAG) != 0) {
+            response.setId(readVarInt(in));
+        }
+        return response;
+    }
+
+    /**
+     * Writes a zig-zag encoded varint.
+     *
+     * @param out the stream to write to
+     * @param value the value to write
+     */
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        int zigZag = (value << 1) ^ (value >> 31);
+        while ((zigZag & ~0x7F) != 0) {
+            out.write((zigZag & 0x7F) | 0x80);
+            zigZag >>>= 7;
+        }
+        out.write(zigZag);
+    }
+
+    /**
+     * Reads a zig-zag encoded varint.
+     *
+     * @param in the buffer to read from
+     * @return the value read
+     * @throws IOException if the varint is longer than an int
+     */
+    private static int readVarInt(ByteBuffer in) throws IOException {
+        int zigZag = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.get();
+            zigZag |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Writes a nullable string as its UTF-8 length plus one, followed by its UTF-8 bytes.
+     *
+     * @param out the stream to write to
+     * @param value the string to write, or null
+     */
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Reads a nullable string.
+     *
+     * @param in the buffer to read from
+     * @return the string read, or null
+     * @throws IOException if the length is invalid
+     */
+    private static String readString(ByteBuffer in) throws IOException {
+        int length = readVarInt(in) - 1;
+        if (length < 0) {
+            if (length == -1) {
+                return null;
+            }
+            throw new IOException("Invalid string length: " + length);
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+}
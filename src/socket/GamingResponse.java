@@ -1,9 +1,9 @@
 package socket;
 
 /**
- * Models the server's response to a REQUEST_MOVE request in the TicTacToe game.
- * This subclass of Response provides information about the opponent's last move
- * and the current active status of the game session.
+ * Models the server's response to a REQUEST_MOVE or SEND_MOVE request in the TicTacToe game.
+ * This subclass of Response provides information about the opponent's last move,
+ * the current active status of the game session and the full board of the game.
  * <p>
  * GamingResponse objects are sent from the server to the client during gameplay
  * to synchronize game state and inform the client about the opponent's actions
@@ -32,6 +32,13 @@ public class GamingResponse extends Response {
      */
     private boolean active;
 
+    /**
+     * The cells played by both players, as seen by the player receiving the response: bit
+     * {@code n} is set if the player played cell {@code n}, and bit {@code 9 + n} is set if the
+     * opponent played it. See {@link model.Board} for the helpers reading it.
+     */
+    private int board;
+
     /**
      * Default constructor that creates a GamingResponse with default values.
      * Calls the superclass constructor and initializes move and active to
@@ -72,6 +79,15 @@ public class GamingResponse extends Response {
         return active;
     }
 
+    /**
+     * Returns the cells played by both players, as seen by the player receiving the response.
+     *
+     * @return the board, the player's cells in bits 0-8 and the opponent's cells in bits 9-17
+     */
+    public int getBoard() {
+        return board;
+    }
+
     /**
      * Sets the opponent's last move position.
      *
@@ -89,4 +105,13 @@ public class GamingResponse extends Response {
     public void setActive(boolean active) {
         this.active = active;
     }
+
+    /**
+     * Sets the cells played by both players, as seen by the player receiving the response.
+     *
+     * @param board the board, the player's cells in bits 0-8 and the opponent's cells in bits 9-17
+     */
+    public void setBoard(int board) {
+        this.board = board;
+    }
 }
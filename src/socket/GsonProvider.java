@@ -0,0 +1,97 @@
+package socket;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import model.Event;
+import model.PlayerStats;
+import model.User;
+
+import java.util.List;
+
+/**
+ * Provides the single {@link Gson} instance shared by the server and clients to serialize the
+ * {@code socket.*} and {@code model.*} messages.
+ * <p>
+ * A Gson instance is thread-safe and caches the adapters it creates, so sharing one avoids
+ * building a new instance and its adapters for every connection. Every message class is handled
+ * by a hand-written adapter from {@link MessageTypeAdapters}, registered once, instead of a
+ * reflective one. {@link #warmUp()} runs every adapter once so the first connections after
+ * startup do not pay for class loading.
+ */
+public final class GsonProvider {
+
+    /**
+     * Lazily holds the only Gson instance.
+     */
+    private static class InstanceHolder {
+        private static final Gson INSTANCE = create();
+    }
+
+    /**
+     * A private constructor, the provider only has static methods
+     */
+    private GsonProvider() {
+    }
+
+    /**
+     * A getter for the shared Gson instance
+     * @return the Gson instance used for every message
+     */
+    public static Gson getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Creates the shared Gson instance and serializes and deserializes one message of every type,
+     * loading and initializing every class on the message path.
+     */
+    public static void warmUp() {
+        Gson gson = getInstance();
+        User user = new User("warmup", "", "Warm Up", true);
+        Event event = new Event(0, "warmup", "warmup", Event.EventStatus.PENDING, null, -1);
+        PairingResponse pairingResponse = new PairingResponse(List.of(user), event, event);
+        pairingResponse.setRemovedUsers(List.of(user.getUsername()));
+
+        Object[] messages = {
+                new Request(Request.RequestType.UPDATE_PAIRING, gson.toJson(new PollOptions())),
+                new Response(Response.ResponseStatus.SUCCESS, ""),
+                new GamingResponse(0, true),
+                pairingResponse,
+                new BatchResponse(List.of("{}")),
+                new MatchResponse(event),
+                new HistoryResponse(List.of(event), "1"),
+                new LeaderboardResponse(List.of(new PlayerStats("warmup", "Warm Up", 1, 0, 0, 0)), "1:warmup"),
+                new PollOptions(),
+                new PageOptions(),
+                user,
+                event
+        };
+        for (Object message : messages) {
+            gson.fromJson(gson.toJson(message), message.getClass());
+        }
+    }
+
+    /**
+     * Creates a Gson instance with every message adapter registered.
+     *
+     * @return the Gson instance
+     */
+    private static Gson create() {
+        return new GsonBuilder()
+                .serializeNulls()
+                .registerTypeAdapter(Request.class, new MessageTypeAdapters.RequestAdapter())
+                .registerTypeAdapter(PollOptions.class, new MessageTypeAdapters.PollOptionsAdapter())
+                .registerTypeAdapter(PageOptions.class, new MessageTypeAdapters.PageOptionsAdapter())
+                .registerTypeAdapter(Response.class, new MessageTypeAdapters.ResponseAdapter())
+                .registerTypeAdapter(GamingResponse.class, new MessageTypeAdapters.GamingResponseAdapter())
+                .registerTypeAdapter(PairingResponse.class, new MessageTypeAdapters.PairingResponseAdapter())
+                .registerTypeAdapter(BatchResponse.class, new MessageTypeAdapters.BatchResponseAdapter())
+                .registerTypeAdapter(MatchResponse.class, new MessageTypeAdapters.MatchResponseAdapter())
+                .registerTypeAdapter(HistoryResponse.class, new MessageTypeAdapters.HistoryResponseAdapter())
+                .registerTypeAdapter(LeaderboardResponse.class, new MessageTypeAdapters.LeaderboardResponseAdapter())
+                .registerTypeAdapter(PlayerStats.class, new MessageTypeAdapters.PlayerStatsAdapter())
+                .registerTypeAdapter(User.class, new MessageTypeAdapters.UserAdapter())
+                .registerTypeAdapter(Event.class, new MessageTypeAdapters.EventAdapter())
+                .create();
+    }
+}
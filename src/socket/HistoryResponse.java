@@ -0,0 +1,82 @@
+package socket;
+
+import model.Event;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Models the server's response to a GET_HISTORY request in the TicTacToe game: one page of the
+ * finished games of a player, most recent first.
+ * <p>
+ * Each game is an {@link Event} with status COMPLETED or ABORTED, whose board tells how it
+ * ended. When more games are left, {@link #getNextCursor()} is the cursor to send in the
+ * {@link PageOptions} of the request for the next page.
+ */
+public class HistoryResponse extends Response {
+
+    /**
+     * The finished games of the page, most recent first.
+     */
+    private List<Event> games;
+
+    /**
+     * The cursor of the next page, or null if this is the last page.
+     */
+    private String nextCursor;
+
+    /**
+     * Default constructor that creates a {@code HistoryResponse} with no games.
+     */
+    public HistoryResponse() {
+        this(Collections.emptyList(), null);
+    }
+
+    /**
+     * Creates a new instance of {@code HistoryResponse}.
+     *
+     * @param games the finished games of the page, most recent first
+     * @param nextCursor the cursor of the next page, or null if this is the last page
+     */
+    public HistoryResponse(List<Event> games, String nextCursor) {
+        super();
+        this.games = games;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Returns the finished games of the page.
+     *
+     * @return the games, most recent first
+     */
+    public List<Event> getGames() {
+        return this.games;
+    }
+
+    /**
+     * Returns the cursor of the next page.
+     *
+     * @return the cursor, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return this.nextCursor;
+    }
+
+    /**
+     * Sets the finished games of the page.
+     *
+     * @param games the games to set, most recent first
+     */
+    public void setGames(List<Event> games) {
+        this.games = games;
+    }
+
+    /**
+     * Sets the cursor of the next page.
+     *
+     * @param nextCursor the cursor to set, or null if this is the last page
+     */
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,239 @@
+package socket;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes and decodes the frames of the {@link WireProtocol#JSON_STREAM} protocol, used by the
+ * server and by clients that negotiated it.
+ * <p>
+ * A frame is a 4-byte big-endian length followed by the UTF-8 JSON of the message. Messages are
+ * streamed by Gson's {@link JsonWriter} and {@link JsonReader} straight into and out of the frame
+ * bytes, so no intermediate {@code String} of the message is ever built, and a message is only
+ * limited by {@link WireProtocol#MAX_PAYLOAD_SIZE}.
+ */
+public final class JsonStreamCodec {
+
+    /**
+     * Size of the length prefix of every frame.
+     */
+    private static final int HEADER_SIZE = WireProtocol.JSON_STREAM.getHeaderSize();
+
+    /**
+     * Initial size of the buffer a message is encoded into, enough for most messages.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    /**
+     * A private constructor, the codec only has static methods
+     */
+    private JsonStreamCodec() {
+    }
+
+    /**
+     * Encodes a message as a complete frame.
+     *
+     * @param gson the Gson instance used to serialize the message
+     * @param message the message to encode
+     * @return the frame including its length prefix, in read mode
+     * @throws IOException if the message is longer than {@link WireProtocol#MAX_PAYLOAD_SIZE}
+     */
+    public static ByteBuffer encode(Gson gson, Object message) throws IOException {
+        FrameOutputStream out = new FrameOutputStream();
+        out.write(new byte[HEADER_SIZE], 0, HEADER_SIZE);
+
+        try (JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            gson.toJson(message, message.getClass(), writer);
+        } catch (JsonIOException e) {
+            throw new IOException("Could not encode message", e);
+        }
+
+        int length = out.size() - HEADER_SIZE;
+        if (length > WireProtocol.MAX_PAYLOAD_SIZE) {
+            throw new IOException("Encoded message too long: " + length + " bytes");
+        }
+        return out.toFrame(length);
+    }
+
+    /**
+     * Decodes the message of a frame.
+     *
+     * @param gson the Gson instance used to deserialize the message
+     * @param frame the bytes holding the frame
+     * @param offset the offset of the message in the bytes, after the length prefix
+     * @param length the length of the message
+     * @param type the type of the message
+     * @param <T> the type of the message
+     * @return the decoded message
+     * @throws com.google.gson.JsonSyntaxException if the message is not valid JSON
+     */
+    public static <T> T decode(Gson gson, byte[] frame, int offset, int length, Type type) {
+        return read(gson, new ByteArrayInputStream(frame, offset, length), type);
+    }
+
+    /**
+     * Writes a message as a frame to a stream.
+     *
+     * @param gson the Gson instance used to serialize the message
+     * @param message the message to write
+     * @param out the stream to write to
+     * @throws IOException if the message is too long or cannot be written
+     */
+    public static void write(Gson gson, Object message, DataOutputStream out) throws IOException {
+        ByteBuffer frame = encode(gson, message);
+        out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+        out.flush();
+    }
+
+    /**
+     * Reads the next frame from a stream and decodes its message, streaming the JSON directly
+     * from the stream.
+     *
+     * @param gson the Gson instance used to deserialize the message
+     * @param in the stream to read from
+     * @param type the type of the message
+     * @param <T> the type of the message
+     * @return the decoded message
+     * @throws IOException if the frame cannot be read or is too long
+     */
+    public static <T> T read(Gson gson, DataInputStream in, Class<T> type) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > WireProtocol.MAX_PAYLOAD_SIZE) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+
+        BoundedInputStream message = new BoundedInputStream(in, length);
+        try {
+            return read(gson, message, type);
+        } catch (JsonIOException e) {
+            throw new IOException("Could not read message", e);
+        } finally {
+            // Leave the stream at the start of the next frame
+            message.skipRemaining();
+        }
+    }
+
+    /**
+     * Deserializes a message from a stream of UTF-8 JSON.
+     *
+     * @param gson the Gson instance used to deserialize the message
+     * @param in the stream holding the message
+     * @param type the type of the message
+     * @param <T> the type of the message
+     * @return the decoded message
+     */
+    private static <T> T read(Gson gson, InputStream in, Type type) {
+        JsonReader reader = gson.newJsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        return gson.fromJson(reader, type);
+    }
+
+    /**
+     * A {@link ByteArrayOutputStream} that hands out its buffer instead of a copy of it.
+     */
+    private static final class FrameOutputStream extends ByteArrayOutputStream {
+
+        /**
+         * Creates an empty frame buffer.
+         */
+        FrameOutputStream() {
+            super(INITIAL_BUFFER_SIZE);
+        }
+
+        /**
+         * Writes the length prefix and wraps the written bytes.
+         *
+         * @param length the length of the message
+         * @return the frame in read mode
+         */
+        ByteBuffer toFrame(int length) {
+            ByteBuffer frame = ByteBuffer.wrap(buf, 0, count);
+            frame.putInt(0, length);
+            return frame;
+        }
+    }
+
+    /**
+     * An input stream that reads at most a given number of bytes from another stream, without closing it.
+     */
+    private static final class BoundedInputStream extends InputStream {
+
+        /**
+         * The stream to read from.
+         */
+        private final InputStream in;
+
+        /**
+         * The number of bytes that may still be read.
+         */
+        private int remaining;
+
+        /**
+         * Creates a bounded stream.
+         *
+         * @param in the stream to read from
+         * @param length the number of bytes that may be read
+         */
+        BoundedInputStream(InputStream in, int length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+
+            int read = in.read(b, off, Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        /**
+         * Skips the bytes of the message that were not consumed by the parser.
+         *
+         * @throws IOException if the bytes cannot be skipped
+         */
+        void skipRemaining() throws IOException {
+            while (remaining > 0) {
+                long skipped = in.skip(remaining);
+                if (skipped <= 0) {
+                    if (in.read() < 0) {
+                        return;
+                    }
+                    skipped = 1;
+                }
+                remaining -= (int) skipped;
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package socket;
+
+import model.PlayerStats;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Models the server's response to a GET_LEADERBOARD request in the TicTacToe game: one page of
+ * the players ranked by number of wins, ties broken by username.
+ * <p>
+ * When more players are left, {@link #getNextCursor()} is the cursor to send in the
+ * {@link PageOptions} of the request for the next page.
+ */
+public class LeaderboardResponse extends Response {
+
+    /**
+     * The results of the players of the page, best first.
+     */
+    private List<PlayerStats> players;
+
+    /**
+     * The cursor of the next page, or null if this is the last page.
+     */
+    private String nextCursor;
+
+    /**
+     * Default constructor that creates a {@code LeaderboardResponse} with no players.
+     */
+    public LeaderboardResponse() {
+        this(Collections.emptyList(), null);
+    }
+
+    /**
+     * Creates a new instance of {@code LeaderboardResponse}.
+     *
+     * @param players the results of the players of the page, best first
+     * @param nextCursor the cursor of the next page, or null if this is the last page
+     */
+    public LeaderboardResponse(List<PlayerStats> players, String nextCursor) {
+        super();
+        this.players = players;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Returns the results of the players of the page.
+     *
+     * @return the players, best first
+     */
+    public List<PlayerStats> getPlayers() {
+        return this.players;
+    }
+
+    /**
+     * Returns the cursor of the next page.
+     *
+     * @return the cursor, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return this.nextCursor;
+    }
+
+    /**
+     * Sets the results of the players of the page.
+     *
+     * @param players the players to set, best first
+     */
+    public void setPlayers(List<PlayerStats> players) {
+        this.players = players;
+    }
+
+    /**
+     * Sets the cursor of the next page.
+     *
+     * @param nextCursor the cursor to set, or null if this is the last page
+     */
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,54 @@
+package socket;
+
+import model.Event;
+
+/**
+ * Models the server's response to a JOIN_QUEUE or LEAVE_QUEUE request in the TicTacToe game.
+ * <p>
+ * Once an opponent is found, {@link #getGame()} is the game the server started between the two
+ * players, already in PLAYING status, and the session plays it with SEND_MOVE and REQUEST_MOVE
+ * as if the invitation handshake had taken place. The sender of the game was queued first and
+ * makes the first move.
+ */
+public class MatchResponse extends Response {
+
+    /**
+     * The game started with the opponent found, or null while still waiting for an opponent.
+     */
+    private Event game;
+
+    /**
+     * Default constructor that creates a {@code MatchResponse} still waiting for an opponent.
+     */
+    public MatchResponse() {
+        this(null);
+    }
+
+    /**
+     * Creates a new instance of {@code MatchResponse}.
+     *
+     * @param game the game started with the opponent found, or null while still waiting
+     */
+    public MatchResponse(Event game) {
+        super();
+        this.game = game;
+    }
+
+    /**
+     * Returns the game started with the opponent found.
+     *
+     * @return the game, or null while still waiting for an opponent
+     */
+    public Event getGame() {
+        return this.game;
+    }
+
+    /**
+     * Sets the game started with the opponent found.
+     *
+     * @param game the game to set, or null while still waiting for an opponent
+     */
+    public void setGame(Event game) {
+        this.game = game;
+    }
+}
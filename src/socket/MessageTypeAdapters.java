@@ -0,0 +1,984 @@
+package socket;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import model.Event;
+import model.PlayerStats;
+import model.User;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-written Gson {@link TypeAdapter}s for every message exchanged with clients, registered by
+ * {@link GsonProvider}. They produce the same JSON as Gson's reflective adapters, with the same
+ * field names and order and nulls serialized, and accept the same input: unknown fields are
+ * skipped, missing fields keep the value set by the no-argument constructor, and unknown enum
+ * constants are read as null. Unlike reflective adapters they need no reflection to create, read
+ * or write objects, which makes them cheap to build and fast to run.
+ * <p>
+ * A field added to one of these classes must also be added to its adapter, or it will not be sent.
+ */
+final class MessageTypeAdapters {
+
+    /**
+     * A private constructor, the adapters are nested classes
+     */
+    private MessageTypeAdapters() {
+    }
+
+    /**
+     * Adapter for {@link Request}.
+     */
+    static final class RequestAdapter extends TypeAdapter<Request> {
+
+        @Override
+        public void write(JsonWriter out, Request request) throws IOException {
+            if (request == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("type").value(request.getType() == null ? null : request.getType().name());
+            out.name("data").value(request.getData());
+            if (request.getId() != null) {
+                out.name("id").value(request.getId());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public Request read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            Request request = new Request();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "type":
+                        request.setType(readEnum(in, Request.RequestType.class));
+                        break;
+                    case "data":
+                        request.setData(readString(in));
+                        break;
+                    case "id":
+                        request.setId(readInteger(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return request;
+        }
+    }
+
+    /**
+     * Adapter for {@link PollOptions}.
+     */
+    static final class PollOptionsAdapter extends TypeAdapter<PollOptions> {
+
+        @Override
+        public void write(JsonWriter out, PollOptions options) throws IOException {
+            if (options == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("timeout").value(options.getTimeout());
+            out.name("revision").value(options.getRevision());
+            out.endObject();
+        }
+
+        @Override
+        public PollOptions read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            PollOptions options = new PollOptions();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "timeout":
+                        options.setTimeout(readLong(in, options.getTimeout()));
+                        break;
+                    case "revision":
+                        options.setRevision(readLong(in, options.getRevision()));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return options;
+        }
+    }
+
+    /**
+     * Adapter for {@link PageOptions}.
+     */
+    static final class PageOptionsAdapter extends TypeAdapter<PageOptions> {
+
+        @Override
+        public void write(JsonWriter out, PageOptions options) throws IOException {
+            if (options == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("username").value(options.getUsername());
+            out.name("cursor").value(options.getCursor());
+            out.name("limit").value(options.getLimit());
+            out.endObject();
+        }
+
+        @Override
+        public PageOptions read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            PageOptions options = new PageOptions();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "username":
+                        options.setUsername(readString(in));
+                        break;
+                    case "cursor":
+                        options.setCursor(readString(in));
+                        break;
+                    case "limit":
+                        options.setLimit(readInt(in, options.getLimit()));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return options;
+        }
+    }
+
+    /**
+     * Adapter for {@link Response}.
+     */
+    static final class ResponseAdapter extends TypeAdapter<Response> {
+
+        @Override
+        public void write(JsonWriter out, Response response) throws IOException {
+            if (response == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            writeStatus(out, response);
+            out.endObject();
+        }
+
+        @Override
+        public Response read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            Response response = new Response();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (!readStatus(in, name, response)) {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return response;
+        }
+    }
+
+    /**
+     * Adapter for {@link GamingResponse}.
+     */
+    static final class GamingResponseAdapter extends TypeAdapter<GamingResponse> {
+
+        @Override
+        public void write(JsonWriter out, GamingResponse response) throws IOException {
+            if (response == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("move").value(response.getMove());
+            out.name("active").value(response.getActive());
+            out.name("board").value(response.getBoard());
+            writeStatus(out, response);
+            out.endObject();
+        }
+
+        @Override
+        public GamingResponse read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            GamingResponse response = new GamingResponse();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                switch (name) {
+                    case "move":
+                        response.setMove(readInt(in, response.getMove()));
+                        break;
+                    case "active":
+                        response.setActive(readBoolean(in, response.getActive()));
+                        break;
+                    case "board":
+                        response.setBoard(readInt(in, response.getBoard()));
+                        break;
+                    default:
+                        if (!readStatus(in, name, response)) {
+                            in.skipValue();
+                        }
+                }
+            }
+            in.endObject();
+            return response;
+        }
+    }
+
+    /**
+     * Adapter for {@link PairingResponse}.
+     */
+    static final class PairingResponseAdapter extends TypeAdapter<PairingResponse> {
+
+        /**
+         * Adapter for the users of the lobby.
+         */
+        private final UserAdapter userAdapter = new UserAdapter();
+
+        /**
+         * Adapter for the invitation and invitation response.
+         */
+        private final EventAdapter eventAdapter = new EventAdapter();
+
+        @Override
+        public void write(JsonWriter out, PairingResponse response) throws IOException {
+            if (response == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("availableUsers");
+            writeUsers(out, response.getAvailableUsers());
+            out.name("revision").value(response.getRevision());
+            out.name("addedUsers");
+            writeUsers(out, response.getAddedUsers());
+            out.name("removedUsers");
+            if (response.getRemovedUsers() == null) {
+                out.nullValue();
+            } else {
+                out.beginArray();
+                for (String username : response.getRemovedUsers()) {
+                    out.value(username);
+                }
+                out.endArray();
+            }
+            out.name("invitation");
+            eventAdapter.write(out, response.getInvitation());
+            out.name("invitationResponse");
+            eventAdapter.write(out, response.getInvitationResponse());
+            writeStatus(out, response);
+            out.endObject();
+        }
+
+        @Override
+        public PairingResponse read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            PairingResponse response = new PairingResponse();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                switch (name) {
+                    case "availableUsers":
+                        response.setAvailableUsers(readUsers(in));
+                        break;
+                    case "revision":
+                        response.setRevision(readLong(in, response.getRevision()));
+                        break;
+                    case "addedUsers":
+                        response.setAddedUsers(readUsers(in));
+                        break;
+                    case "removedUsers":
+                        response.setRemovedUsers(readStrings(in));
+                        break;
+                    case "invitation":
+                        response.setInvitation(eventAdapter.read(in));
+                        break;
+                    case "invitationResponse":
+                        response.setInvitationResponse(eventAdapter.read(in));
+                        break;
+                    default:
+                        if (!readStatus(in, name, response)) {
+                            in.skipValue();
+                        }
+                }
+            }
+            in.endObject();
+            return response;
+        }
+
+        /**
+         * Writes a nullable list of users.
+         *
+         * @param out the writer
+         * @param users the users, or null
+         * @throws IOException if the users cannot be written
+         */
+        private void writeUsers(JsonWriter out, List<User> users) throws IOException {
+            if (users == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginArray();
+            for (User user : users) {
+                userAdapter.write(out, user);
+            }
+            out.endArray();
+        }
+
+        /**
+         * Reads a nullable list of users.
+         *
+         * @param in the reader
+         * @return the users, or null
+         * @throws IOException if the users cannot be read
+         */
+        private List<User> readUsers(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            List<User> users = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                users.add(userAdapter.read(in));
+            }
+            in.endArray();
+            return users;
+        }
+    }
+
+    /**
+     * Adapter for {@link BatchResponse}.
+     */
+    static final class BatchResponseAdapter extends TypeAdapter<BatchResponse> {
+
+        @Override
+        public void write(JsonWriter out, BatchResponse response) throws IOException {
+            if (response == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("responses");
+            if (response.getResponses() == null) {
+                out.nullValue();
+            } else {
+                out.beginArray();
+                for (String serializedResponse : response.getResponses()) {
+                    out.value(serializedResponse);
+                }
+                out.endArray();
+            }
+            writeStatus(out, response);
+            out.endObject();
+        }
+
+        @Override
+        public BatchResponse read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            BatchResponse response = new BatchResponse();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (name.equals("responses")) {
+                    response.setResponses(readStrings(in));
+                } else if (!readStatus(in, name, response)) {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return response;
+        }
+    }
+
+    /**
+     * Adapter for {@link MatchResponse}.
+     */
+    static final class MatchResponseAdapter extends TypeAdapter<MatchResponse> {
+
+        /**
+         * Adapter for the game started.
+         */
+        private final EventAdapter eventAdapter = new EventAdapter();
+
+        @Override
+        public void write(JsonWriter out, MatchResponse response) throws IOException {
+            if (response == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("game");
+            eventAdapter.write(out, response.getGame());
+            writeStatus(out, response);
+            out.endObject();
+        }
+
+        @Override
+        public MatchResponse read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            MatchResponse response = new MatchResponse();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (name.equals("game")) {
+                    response.setGame(eventAdapter.read(in));
+                } else if (!readStatus(in, name, response)) {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return response;
+        }
+    }
+
+    /**
+     * Adapter for {@link HistoryResponse}.
+     */
+    static final class HistoryResponseAdapter extends TypeAdapter<HistoryResponse> {
+
+        /**
+         * Adapter for the games of the page.
+         */
+        private final EventAdapter eventAdapter = new EventAdapter();
+
+        @Override
+        public void write(JsonWriter out, HistoryResponse response) throws IOException {
+            if (response == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("games");
+            if (response.getGames() == null) {
+                out.nullValue();
+            } else {
+                out.beginArray();
+                for (Event game : response.getGames()) {
+                    eventAdapter.write(out, game);
+                }
+                out.endArray();
+            }
+            out.name("nextCursor").value(response.getNextCursor());
+            writeStatus(out, response);
+            out.endObject();
+        }
+
+        @Override
+        public HistoryResponse read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            HistoryResponse response = new HistoryResponse();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                switch (name) {
+                    case "games":
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                            response.setGames(null);
+                        } else {
+                            List<Event> games = new ArrayList<>();
+                            in.beginArray();
+                            while (in.hasNext()) {
+                                games.add(eventAdapter.read(in));
+                            }
+                            in.endArray();
+                            response.setGames(games);
+                        }
+                        break;
+                    case "nextCursor":
+                        response.setNextCursor(readString(in));
+                        break;
+                    default:
+                        if (!readStatus(in, name, response)) {
+                            in.skipValue();
+                        }
+                }
+            }
+            in.endObject();
+            return response;
+        }
+    }
+
+    /**
+     * Adapter for {@link LeaderboardResponse}.
+     */
+    static final class LeaderboardResponseAdapter extends TypeAdapter<LeaderboardResponse> {
+
+        /**
+         * Adapter for the players of the page.
+         */
+        private final PlayerStatsAdapter playerStatsAdapter = new PlayerStatsAdapter();
+
+        @Override
+        public void write(JsonWriter out, LeaderboardResponse response) throws IOException {
+            if (response == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("players");
+            if (response.getPlayers() == null) {
+                out.nullValue();
+            } else {
+                out.beginArray();
+                for (PlayerStats player : response.getPlayers()) {
+                    playerStatsAdapter.write(out, player);
+                }
+                out.endArray();
+            }
+            out.name("nextCursor").value(response.getNextCursor());
+            writeStatus(out, response);
+            out.endObject();
+        }
+
+        @Override
+        public LeaderboardResponse read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            LeaderboardResponse response = new LeaderboardResponse();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                switch (name) {
+                    case "players":
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                            response.setPlayers(null);
+                        } else {
+                            List<PlayerStats> players = new ArrayList<>();
+                            in.beginArray();
+                            while (in.hasNext()) {
+                                players.add(playerStatsAdapter.read(in));
+                            }
+                            in.endArray();
+                            response.setPlayers(players);
+                        }
+                        break;
+                    case "nextCursor":
+                        response.setNextCursor(readString(in));
+                        break;
+                    default:
+                        if (!readStatus(in, name, response)) {
+                            in.skipValue();
+                        }
+                }
+            }
+            in.endObject();
+            return response;
+        }
+    }
+
+    /**
+     * Adapter for {@link User}.
+     */
+    static final class UserAdapter extends TypeAdapter<User> {
+
+        @Override
+        public void write(JsonWriter out, User user) throws IOException {
+            if (user == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("username").value(user.getUsername());
+            out.name("password").value(user.getPassword());
+            out.name("displayName").value(user.getDisplayName());
+            out.name("online").value(user.isOnline());
+            out.endObject();
+        }
+
+        @Override
+        public User read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            User user = new User();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "username":
+                        user.setUsername(readString(in));
+                        break;
+                    case "password":
+                        user.setPassword(readString(in));
+                        break;
+                    case "displayName":
+                        user.setDisplayName(readString(in));
+                        break;
+                    case "online":
+                        user.setOnline(readBoolean(in, user.isOnline()));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return user;
+        }
+    }
+
+    /**
+     * Adapter for {@link Event}.
+     */
+    static final class EventAdapter extends TypeAdapter<Event> {
+
+        @Override
+        public void write(JsonWriter out, Event event) throws IOException {
+            if (event == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("eventId").value(event.getEventId());
+            out.name("sender").value(event.getSender());
+            out.name("opponent").value(event.getOpponent());
+            out.name("status").value(event.getStatus() == null ? null : event.getStatus().name());
+            out.name("turn").value(event.getTurn());
+            out.name("move").value(event.getMove());
+            out.name("board").value(event.getBoard());
+            out.endObject();
+        }
+
+        @Override
+        public Event read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            Event event = new Event();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "eventId":
+                        event.setEventId(readInt(in, event.getEventId()));
+                        break;
+                    case "sender":
+                        event.setSender(readString(in));
+                        break;
+                    case "opponent":
+                        event.setOpponent(readString(in));
+                        break;
+                    case "status":
+                        event.setStatus(readEnum(in, Event.EventStatus.class));
+                        break;
+                    case "turn":
+                        event.setTurn(readString(in));
+                        break;
+                    case "move":
+                        event.setMove(readInt(in, event.getMove()));
+                        break;
+                    case "board":
+                        event.setBoard(readInt(in, event.getBoard()));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return event;
+        }
+    }
+
+    /**
+     * Adapter for {@link PlayerStats}.
+     */
+    static final class PlayerStatsAdapter extends TypeAdapter<PlayerStats> {
+
+        @Override
+        public void write(JsonWriter out, PlayerStats stats) throws IOException {
+            if (stats == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("username").value(stats.getUsername());
+            out.name("displayName").value(stats.getDisplayName());
+            out.name("wins").value(stats.getWins());
+            out.name("losses").value(stats.getLosses());
+            out.name("draws").value(stats.getDraws());
+            out.name("aborts").value(stats.getAborts());
+            out.name("rating").value(stats.getRating());
+            out.endObject();
+        }
+
+        @Override
+        public PlayerStats read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            PlayerStats stats = new PlayerStats();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "username":
+                        stats.setUsername(readString(in));
+                        break;
+                    case "displayName":
+                        stats.setDisplayName(readString(in));
+                        break;
+                    case "wins":
+                        stats.setWins(readInt(in, stats.getWins()));
+                        break;
+                    case "losses":
+                        stats.setLosses(readInt(in, stats.getLosses()));
+                        break;
+                    case "draws":
+                        stats.setDraws(readInt(in, stats.getDraws()));
+                        break;
+                    case "aborts":
+                        stats.setAborts(readInt(in, stats.getAborts()));
+                        break;
+                    case "rating":
+                        stats.setRating(readInt(in, stats.getRating()));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return stats;
+        }
+    }
+
+    /**
+     * Writes the fields declared by {@link Response}, after the fields of a subclass as Gson does.
+     * The correlation ID is only written when set, so clients that do not use it see no change.
+     *
+     * @param out the writer
+     * @param response the response
+     * @throws IOException if the fields cannot be written
+     */
+    private static void writeStatus(JsonWriter out, Response response) throws IOException {
+        out.name("status").value(response.getStatus() == null ? null : response.getStatus().name());
+        out.name("message").value(response.getMessage());
+        if (response.getId() != null) {
+            out.name("id").value(response.getId());
+        }
+    }
+
+    /**
+     * Reads a field declared by {@link Response}.
+     *
+     * @param in the reader, positioned on the value of the field
+     * @param name the name of the field
+     * @param response the response to fill
+     * @return true if the field was read, false if it is not a field of {@link Response}
+     * @throws IOException if the field cannot be read
+     */
+    private static boolean readStatus(JsonReader in, String name, Response response) throws IOException {
+        switch (name) {
+            case "status":
+                response.setStatus(readEnum(in, Response.ResponseStatus.class));
+                return true;
+            case "message":
+                response.setMessage(readString(in));
+                return true;
+            case "id":
+                response.setId(readInteger(in));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Reads a nullable string, accepting numbers and booleans as Gson does.
+     *
+     * @param in the reader
+     * @return the string, or null
+     * @throws IOException if the value is not a string
+     */
+    private static String readString(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case NULL:
+                in.nextNull();
+                return null;
+            case BOOLEAN:
+                return Boolean.toString(in.nextBoolean());
+            default:
+                return in.nextString();
+        }
+    }
+
+    /**
+     * Reads a nullable list of strings.
+     *
+     * @param in the reader
+     * @return the strings, or null
+     * @throws IOException if the value is not an array of strings
+     */
+    private static List<String> readStrings(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        List<String> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            values.add(readString(in));
+        }
+        in.endArray();
+        return values;
+    }
+
+    /**
+     * Reads an int, keeping the current value when the JSON value is null.
+     *
+     * @param in the reader
+     * @param current the current value of the field
+     * @return the value read
+     * @throws IOException if the value is not a number
+     */
+    private static int readInt(JsonReader in, int current) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return current;
+        }
+        return in.nextInt();
+    }
+
+    /**
+     * Reads a nullable Integer.
+     *
+     * @param in the reader
+     * @return the value read, or null
+     * @throws IOException if the value is not a number
+     */
+    private static Integer readInteger(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextInt();
+    }
+
+    /**
+     * Reads a long, keeping the current value when the JSON value is null.
+     *
+     * @param in the reader
+     * @param current the current value of the field
+     * @return the value read
+     * @throws IOException if the value is not a number
+     */
+    private static long readLong(JsonReader in, long current) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return current;
+        }
+        return in.nextLong();
+    }
+
+    /**
+     * Reads a boolean, keeping the current value when the JSON value is null.
+     *
+     * @param in the reader
+     * @param current the current value of the field
+     * @return the value read
+     * @throws IOException if the value is not a boolean
+     */
+    private static boolean readBoolean(JsonReader in, boolean current) throws IOException {
+        switch (in.peek()) {
+            case NULL:
+                in.nextNull();
+                return current;
+            case STRING:
+                return Boolean.parseBoolean(in.nextString());
+            default:
+                return in.nextBoolean();
+        }
+    }
+
+    /**
+     * Reads an enum constant by name.
+     *
+     * @param in the reader
+     * @param type the enum class
+     * @param <E> the enum type
+     * @return the constant, or null if the value is null or not a constant of the enum
+     * @throws IOException if the value cannot be read
+     */
+    private static <E extends Enum<E>> E readEnum(JsonReader in, Class<E> type) throws IOException {
+        String name = readString(in);
+        if (name == null) {
+            return null;
+        }
+
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
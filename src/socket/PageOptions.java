@@ -0,0 +1,106 @@
+package socket;
+
+/**
+ * Models the optional data of a GET_HISTORY or GET_LEADERBOARD request, selecting the page of
+ * results to return.
+ * <p>
+ * Pages are chained with cursors rather than offsets: every page carries the cursor of the
+ * next one, which the client sends back unchanged to continue where the page ended. Finding
+ * the start of a page then costs the same however deep it is, and games ending meanwhile
+ * neither skip nor repeat entries.
+ * <p>
+ * Requests sent without data return the first page of the default size.
+ */
+public class PageOptions {
+
+    /**
+     * The username of the player whose games are returned by GET_HISTORY. A null value
+     * returns the games of the user sending the request. Ignored by GET_LEADERBOARD.
+     */
+    private String username;
+
+    /**
+     * The cursor of the page to return, as received in the previous page, or null for the first page.
+     */
+    private String cursor;
+
+    /**
+     * The maximum number of entries to return. A value of 0 or less returns the default page
+     * size, and the server caps larger values.
+     */
+    private int limit;
+
+    /**
+     * Default constructor that creates PageOptions for the first page of the default size.
+     */
+    public PageOptions() {
+        this(null, null, 0);
+    }
+
+    /**
+     * Creates PageOptions for a specific page.
+     *
+     * @param username the username of the player whose games are returned, or null for the current user
+     * @param cursor the cursor of the page, or null for the first page
+     * @param limit the maximum number of entries to return, or 0 for the default page size
+     */
+    public PageOptions(String username, String cursor, int limit) {
+        this.username = username;
+        this.cursor = cursor;
+        this.limit = limit;
+    }
+
+    /**
+     * Returns the username of the player whose games are returned.
+     *
+     * @return the username, or null for the user sending the request
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Sets the username of the player whose games are returned.
+     *
+     * @param username the username, or null for the user sending the request
+     */
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    /**
+     * Returns the cursor of the page to return.
+     *
+     * @return the cursor, or null for the first page
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Sets the cursor of the page to return.
+     *
+     * @param cursor the cursor received with the previous page, or null for the first page
+     */
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * Returns the maximum number of entries to return.
+     *
+     * @return the limit, or 0 or less for the default page size
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Sets the maximum number of entries to return.
+     *
+     * @param limit the limit, or 0 for the default page size
+     */
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+}
@@ -8,6 +8,11 @@ import java.util.List;
 
 /**
  * Models the server's response to an UPDATE_PAIRING request in the TicTacToe game.
+ * <p>
+ * The lobby is sent either in full, in {@link #getAvailableUsers()}, or, when the request
+ * carried a lobby revision the server can still diff against, as the users added and removed
+ * since that revision, in which case {@link #getAvailableUsers()} is null. Either way the
+ * client keeps {@link #getRevision()} to send with its next request.
  */
 public class PairingResponse extends Response {
 
@@ -16,6 +21,21 @@ public class PairingResponse extends Response {
      */
     private List<User> availableUsers;
 
+    /**
+     * Represents the lobby revision this response brings the client up to.
+     */
+    private long revision;
+
+    /**
+     * Represents players that became available since the revision sent by the client.
+     */
+    private List<User> addedUsers;
+
+    /**
+     * Represents the usernames of players that are no longer available since the revision sent by the client.
+     */
+    private List<String> removedUsers;
+
     /**
      * Represents a game invitation from another user.
      */
@@ -56,6 +76,33 @@ public class PairingResponse extends Response {
         return this.availableUsers;
     }
 
+    /**
+     * Returns the lobby revision this response brings the client up to.
+     *
+     * @return the lobby revision
+     */
+    public long getRevision() {
+        return this.revision;
+    }
+
+    /**
+     * Returns the users that became available since the revision sent by the client.
+     *
+     * @return the added users, or null if the full lobby is sent
+     */
+    public List<User> getAddedUsers() {
+        return this.addedUsers;
+    }
+
+    /**
+     * Returns the usernames of the users no longer available since the revision sent by the client.
+     *
+     * @return the removed usernames, or null if the full lobby is sent
+     */
+    public List<String> getRemovedUsers() {
+        return this.removedUsers;
+    }
+
     /**
      * Returns the game invitation from another user.
      *
@@ -83,6 +130,33 @@ public class PairingResponse extends Response {
         this.availableUsers = availableUsers;
     }
 
+    /**
+     * Sets the lobby revision this response brings the client up to.
+     *
+     * @param revision the lobby revision to set
+     */
+    public void setRevision(long revision) {
+        this.revision = revision;
+    }
+
+    /**
+     * Sets the users that became available since the revision sent by the client.
+     *
+     * @param addedUsers the added users to set
+     */
+    public void setAddedUsers(List<User> addedUsers) {
+        this.addedUsers = addedUsers;
+    }
+
+    /**
+     * Sets the usernames of the users no longer available since the revision sent by the client.
+     *
+     * @param removedUsers the removed usernames to set
+     */
+    public void setRemovedUsers(List<String> removedUsers) {
+        this.removedUsers = removedUsers;
+    }
+
     /**
      * Sets the game invitation from another user.
      *
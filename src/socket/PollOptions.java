@@ -0,0 +1,89 @@
+package socket;
+
+/**
+ * Models the optional data of an UPDATE_PAIRING or REQUEST_MOVE request that turns it into
+ * a long-poll. Instead of answering immediately, the server holds the request until the
+ * requested information changes or the timeout elapses, whichever comes first.
+ * <p>
+ * Requests sent without data keep the original behavior and are answered immediately.
+ * <p>
+ * For UPDATE_PAIRING, the options also carry the last lobby revision the client has seen, so
+ * the server only sends the users that joined or left the lobby since.
+ */
+public class PollOptions {
+
+    /**
+     * The maximum time in milliseconds the server may hold the request waiting for a change.
+     * A value of 0 or less answers immediately.
+     */
+    private long timeout;
+
+    /**
+     * The last lobby revision the client has seen, from {@code PairingResponse#getRevision()}.
+     * A negative value requests the full list of available users.
+     */
+    private long revision;
+
+    /**
+     * Default constructor that creates PollOptions that answer immediately.
+     */
+    public PollOptions() {
+        this(0);
+    }
+
+    /**
+     * Creates PollOptions with a specific timeout.
+     *
+     * @param timeout the maximum time in milliseconds to wait for a change
+     */
+    public PollOptions(long timeout) {
+        this(timeout, -1);
+    }
+
+    /**
+     * Creates PollOptions with a specific timeout and last seen lobby revision.
+     *
+     * @param timeout the maximum time in milliseconds to wait for a change
+     * @param revision the last lobby revision the client has seen, or -1 for the full lobby
+     */
+    public PollOptions(long timeout, long revision) {
+        this.timeout = timeout;
+        this.revision = revision;
+    }
+
+    /**
+     * Returns the maximum time the server may hold the request.
+     *
+     * @return the timeout in milliseconds
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets the maximum time the server may hold the request.
+     *
+     * @param timeout the timeout in milliseconds
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Returns the last lobby revision the client has seen.
+     *
+     * @return the revision, or a negative value for the full lobby
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Sets the last lobby revision the client has seen.
+     *
+     * @param revision the revision, or -1 for the full lobby
+     */
+    public void setRevision(long revision) {
+        this.revision = revision;
+    }
+}
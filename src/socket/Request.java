@@ -26,6 +26,14 @@ public class Request {
      */
     private String data;
 
+    /**
+     * An optional correlation ID chosen by the client. Clients may pipeline requests, sending
+     * several without waiting for their responses: the server answers them in the order they
+     * were sent and copies the ID to each response, so the client can match them.
+     * Null when the client does not need it.
+     */
+    private Integer id;
+
     /**
      * Default constructor that creates a Request with null type and data.
      * Used for initialization before setting specific request parameters.
@@ -63,6 +71,24 @@ public class Request {
         return data;
     }
 
+    /**
+     * Returns the correlation ID of this request.
+     *
+     * @return the correlation ID, or null if none was set
+     */
+    public Integer getId() {
+        return id;
+    }
+
+    /**
+     * Sets the correlation ID of this request.
+     *
+     * @param id the correlation ID, or null for none
+     */
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
     /**
      * Sets the type of this request.
      *
@@ -99,7 +125,9 @@ public class Request {
         REGISTER,
 
         /**
-         * Sent periodically after login to request pairing updates (available players, invitations, responses). Data is null.
+         * Sent periodically after login to request pairing updates (available players, invitations, responses). Data is null,
+         * or a serialized PollOptions to long-poll: the server then holds the request until the pairing information changes.
+         * PollOptions may also carry the last lobby revision seen, so only the players added and removed since are sent.
          * Server responds with PairingResponse containing all pairing updates.
          */
         UPDATE_PAIRING,
@@ -129,14 +157,18 @@ public class Request {
         ACKNOWLEDGE_RESPONSE,
 
         /**
-         * Sent periodically during gameplay to request the opponent's move. Data is null.
-         * Server responds with GamingResponse containing opponent's move and game active status.
+         * Sent periodically during gameplay to request the opponent's move. Data is null, or a serialized PollOptions
+         * to long-poll: the server then holds the request until the opponent moves or the game ends.
+         * Server responds with GamingResponse containing opponent's move, game active status and the board. The opponent's
+         * move that ends the game is returned with active set to false.
          */
         REQUEST_MOVE,
 
         /**
          * Sent during gameplay to submit a player's move. Data contains serialized Integer (0-8) representing the grid cell selected.
-         * Server responds with standard Response indicating success/failure.
+         * Server rejects cells out of range or already played, and responds with GamingResponse echoing the move, with the
+         * board after it and active set to false if the move won the game or filled the board. Server then updates Event
+         * status from PLAYING to COMPLETED itself.
          */
         SEND_MOVE,
 
@@ -148,8 +180,63 @@ public class Request {
 
         /**
          * Sent when a game is over after receiving a final move. Data is null.
-         * Server updates Event status from PLAYING to COMPLETED and responds with standard Response.
+         * Server updates Event status from PLAYING to COMPLETED and responds with standard Response. A game the server
+         * already completed after its final move is acknowledged with SUCCESS.
+         */
+        COMPLETE_GAME,
+
+        /**
+         * Sent after login by clients that want the opponent's moves pushed instead of polling with REQUEST_MOVE. Data is null.
+         * Server responds with standard Response. From then on, the server writes a GamingResponse to the client as soon as
+         * the opponent's move is saved or the game is aborted or completed by the opponent, in between regular responses.
+         */
+        SUBSCRIBE_MOVES,
+
+        /**
+         * Sent to switch the connection to another WireProtocol. Data contains the protocol name: JSON, BINARY or JSON_STREAM.
+         * Server responds with standard Response in the current protocol, then uses the new protocol for every later message.
+         */
+        SET_PROTOCOL,
+
+        /**
+         * Sent to have several requests processed in a single round trip. Data contains a serialized list of Request objects,
+         * processed in order as if they had been sent one by one. Server responds with BatchResponse containing the
+         * serialized response of every request, in the same order. A batch cannot contain another batch.
+         */
+        BATCH,
+
+        /**
+         * Sent to fetch the finished games of a player, most recent first. Data is null, or a serialized PageOptions
+         * selecting the player and the page. Server responds with HistoryResponse containing the games of the page and
+         * the cursor of the next page.
+         */
+        GET_HISTORY,
+
+        /**
+         * Sent to fetch the players ranked by number of wins. Data is null, or a serialized PageOptions selecting the page.
+         * Server responds with LeaderboardResponse containing the results of the players of the page and the cursor of
+         * the next page.
+         */
+        GET_LEADERBOARD,
+
+        /**
+         * Sent to be paired with the next player looking for a game, instead of inviting an opponent from the lobby.
+         * Data is null, or a serialized PollOptions to hold the request until an opponent is found. Sent again while
+         * queued, it only checks whether an opponent was found. Server responds with MatchResponse containing the game,
+         * already in PLAYING status, or no game while still waiting.
+         */
+        JOIN_QUEUE,
+
+        /**
+         * Sent to stop looking for an opponent after JOIN_QUEUE or JOIN_RATED_QUEUE. Data is null. Server responds with
+         * Response, or with a failed MatchResponse containing the game if an opponent was already found.
+         */
+        LEAVE_QUEUE,
+
+        /**
+         * Sent like JOIN_QUEUE, to be paired only with a player of a similar rating. The accepted difference of rating
+         * widens the longer the player waits. Server responds with MatchResponse.
          */
-        COMPLETE_GAME
+        JOIN_RATED_QUEUE
     }
 }
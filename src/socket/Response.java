@@ -26,6 +26,13 @@ public class Response {
      */
     private String message;
 
+    /**
+     * The correlation ID of the request this response answers, copied from {@link Request#getId()}.
+     * Null when the request had none, and for messages the server pushes outside of the
+     * request/response cycle, which lets clients that pipeline requests tell them apart.
+     */
+    private Integer id;
+
     /**
      * Default constructor that creates a Response with null status and message.
      * Used for initialization before setting specific response values.
@@ -63,6 +70,15 @@ public class Response {
         return message;
     }
 
+    /**
+     * Returns the correlation ID of the request this response answers.
+     *
+     * @return the correlation ID, or null if there is none
+     */
+    public Integer getId() {
+        return id;
+    }
+
     /**
      * Sets the status of this response.
      *
@@ -81,6 +97,15 @@ public class Response {
         this.message = message;
     }
 
+    /**
+     * Sets the correlation ID of the request this response answers.
+     *
+     * @param id the correlation ID, or null for none
+     */
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
     /**
      * Enumeration defining the possible status values for server responses.
      * These statuses indicate the overall outcome of client request processing.
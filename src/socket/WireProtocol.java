@@ -0,0 +1,78 @@
+package socket;
+
+/**
+ * Enumeration of the encodings a connection can use for its requests and responses.
+ * <p>
+ * Every connection starts with {@link #JSON}. A client switches to another protocol by sending
+ * a SET_PROTOCOL request with the protocol name as data: the server answers that request in the
+ * current protocol, and every later request and response on the connection, including pushed
+ * messages, uses the new one. The client must wait for that response before sending any request
+ * in the new protocol.
+ * <p>
+ * Every message is sent as a frame: a big-endian length prefix of {@link #getHeaderSize()} bytes
+ * followed by the encoded message.
+ */
+public enum WireProtocol {
+    /**
+     * Gson-serialized {@link Request} and {@link Response} objects written with
+     * {@link java.io.DataOutputStream#writeUTF(String)}, limited to 65535 bytes per message.
+     * The default protocol.
+     */
+    JSON(2, 0xFFFF),
+
+    /**
+     * Compact binary messages encoded by {@link BinaryCodec}.
+     */
+    BINARY(4, WireProtocol.MAX_PAYLOAD_SIZE),
+
+    /**
+     * Gson-serialized messages in UTF-8, encoded and decoded by {@link JsonStreamCodec}
+     * without the size limit of {@link #JSON}.
+     */
+    JSON_STREAM(4, WireProtocol.MAX_PAYLOAD_SIZE);
+
+    /**
+     * The largest message accepted by the protocols with a 4-byte length prefix, which protects
+     * the server from allocating a buffer for a corrupt or malicious length.
+     */
+    public static final int MAX_PAYLOAD_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The size of the length prefix of every frame, in bytes.
+     */
+    private final int headerSize;
+
+    /**
+     * The largest message a frame can carry, in bytes.
+     */
+    private final int maxPayloadSize;
+
+    /**
+     * Creates a protocol.
+     *
+     * @param headerSize the size of the length prefix of every frame
+     * @param maxPayloadSize the largest message a frame can carry
+     */
+    WireProtocol(int headerSize, int maxPayloadSize) {
+        this.headerSize = headerSize;
+        this.maxPayloadSize = maxPayloadSize;
+    }
+
+    /**
+     * Returns the size of the length prefix of every frame.
+     *
+     * @return the header size in bytes, 2 or 4
+     */
+    public int getHeaderSize() {
+        return headerSize;
+    }
+
+    /**
+     * Returns the largest message a frame can carry.
+     *
+     * @return the maximum payload size in bytes
+     */
+    public int getMaxPayloadSize() {
+        return maxPayloadSize;
+    }
+}